@@ -0,0 +1,104 @@
+package com.glovoapp.backender.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.benchmark.SyntheticCity;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.ClusterTopology;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.BoxRequirementClassifier;
+import com.glovoapp.backender.service.ClusterClient;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierOrdersCache;
+import com.glovoapp.backender.service.CourierOrdersFeed;
+import com.glovoapp.backender.service.CourierService;
+import com.glovoapp.backender.service.DistanceCalculator;
+import com.glovoapp.backender.service.OrderMetrics;
+import com.glovoapp.backender.service.OrderService;
+import com.glovoapp.backender.service.OrderService.RankingDistance;
+import com.glovoapp.backender.service.OrderService.SlotPriority;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the order endpoints, with the same Jackson setup Spring Boot uses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderControllerBenchmark {
+    @Param({"1000", "100000"})
+    private int orders;
+
+    @Param({"10"})
+    private double spread;
+
+    @Param({"40", "400"})
+    private int descriptionLength;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private OrderController orderController;
+    private String courierId;
+
+    @Setup
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42, spread);
+        OrderRepository orderRepository = new OrderRepository(city.orders(orders, descriptionLength));
+        CourierRepository courierRepository = new CourierRepository(city.couriers(1));
+        DistanceCalculator distanceCalculator = new DistanceCalculator();
+        new BoxRequirementClassifier(orderRepository, ImmutableList.of("pizza", "cake", "flamingo"));
+        OrderService orderService = new OrderService(orderRepository,
+                courierRepository,
+                distanceCalculator,
+                new CourierOrdersCache(orderRepository, distanceCalculator, 0, 5000, 0.05),
+                new OrderMetrics(new SimpleMeterRegistry()),
+                ImmutableMap.of(Vehicle.MOTORCYCLE, 500d, Vehicle.BICYCLE, 500d, Vehicle.ELECTRIC_SCOOTER, 500d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL),
+                RankingDistance.PICKUP);
+        orderController = new OrderController(orderService,
+                new ClusterRouter(ClusterTopology.standalone(),
+                        new ClusterClient(new RestTemplateBuilder(), 2000),
+                        orderService,
+                        new CourierService(courierRepository),
+                        courierRepository),
+                new CourierOrdersFeed(orderRepository, courierRepository, orderService),
+                objectMapper,
+                new OrderFragments(orderRepository, objectMapper),
+                new OrderMetrics(new SimpleMeterRegistry()));
+        courierId = SyntheticCity.COURIER_ID_PREFIX + 0;
+    }
+
+    @Benchmark
+    public byte[] orders() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        orderController.orders(null, null).getBody().writeTo(output);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] ordersForCourier() {
+        return orderController.orders(courierId, null, null).getBody();
+    }
+}
@@ -0,0 +1,96 @@
+package com.glovoapp.backender.benchmark;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic, city-scale data sets for benchmarks.
+ * <p>
+ * Everything is generated from a seed, so the same parameters always produce the same orders and couriers and
+ * runs on different branches can be compared.
+ */
+public class SyntheticCity {
+    public static final Location CENTER = new Location(41.3965463, 2.1963997);
+    public static final String COURIER_ID_PREFIX = "courier-";
+    private static final double EARTH_RADIUS = 6371;
+    private static final String[] WORDS = {
+            "pizza", "cake", "flamingo", "burger", "sushi", "salad", "chairs", "keys", "flowers", "medicine",
+            "groceries", "documents", "with", "and", "extra", "cheese", "please", "ring", "twice", "small", "large"
+    };
+
+    private final long seed;
+    private final double spread;
+
+    /**
+     * @param seed   seed of every random choice
+     * @param spread radius of the city, in kilometers
+     */
+    public SyntheticCity(long seed, double spread) {
+        this.seed = seed;
+        this.spread = spread;
+    }
+
+    /**
+     * @param descriptionLength approximate length of the descriptions, in characters
+     */
+    public List<Order> orders(int count, int descriptionLength) {
+        Random random = new Random(seed);
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(Order.builder()
+                    .id("order-" + i)
+                    .description(description(random, descriptionLength))
+                    .food(random.nextDouble() < 0.6)
+                    .vip(random.nextDouble() < 0.1)
+                    .pickup(location(random))
+                    .delivery(location(random))
+                    .build());
+        }
+        return orders;
+    }
+
+    public List<Courier> couriers(int count) {
+        Random random = new Random(~seed);
+        Vehicle[] vehicles = Vehicle.values();
+        List<Courier> couriers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            couriers.add(Courier.builder()
+                    .id(COURIER_ID_PREFIX + i)
+                    .name("Courier " + i)
+                    .box(random.nextBoolean())
+                    .vehicle(vehicles[random.nextInt(vehicles.length)])
+                    .location(location(random))
+                    .build());
+        }
+        return couriers;
+    }
+
+    /**
+     * Uniformly distributed over the disc of the city
+     */
+    private Location location(Random random) {
+        double distance = spread * Math.sqrt(random.nextDouble());
+        double bearing = 2 * Math.PI * random.nextDouble();
+        double lat = CENTER.getLat() + Math.toDegrees(distance * Math.cos(bearing) / EARTH_RADIUS);
+        double lon = CENTER.getLon() + Math.toDegrees(distance * Math.sin(bearing) / EARTH_RADIUS)
+                / Math.cos(Math.toRadians(CENTER.getLat()));
+        return new Location(lat, lon);
+    }
+
+    private static String description(Random random, int length) {
+        StringBuilder description = new StringBuilder(length + 16);
+        while (description.length() < length) {
+            if (description.length() > 0) {
+                description.append(' ');
+            }
+            description.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.benchmark.SyntheticCity;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distances from the city center to every pickup of the city, one pair at a time and in batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceCalculatorBenchmark {
+    @Param({"10000"})
+    private int points;
+
+    @Param({"10"})
+    private double spread;
+
+    @Param({"5", "500"})
+    private double maxDistance;
+
+    private final DistanceCalculator distanceCalculator = new DistanceCalculator();
+    private Location[] locations;
+    private double[] lats;
+    private double[] lons;
+    private double[] cosLats;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        List<Order> orders = new SyntheticCity(42, spread).orders(points, 0);
+        locations = new Location[points];
+        lats = new double[points];
+        lons = new double[points];
+        cosLats = new double[points];
+        distances = new double[points];
+        for (int i = 0; i < points; i++) {
+            locations[i] = orders.get(i).getPickup();
+            lats[i] = Math.toRadians(locations[i].getLat());
+            lons[i] = Math.toRadians(locations[i].getLon());
+            cosLats[i] = Math.cos(lats[i]);
+        }
+    }
+
+    @Benchmark
+    public void calculateDistance(Blackhole blackhole) {
+        for (Location location : locations) {
+            blackhole.consume(distanceCalculator.calculateDistance(SyntheticCity.CENTER, location));
+        }
+    }
+
+    @Benchmark
+    public double[] calculateDistances() {
+        distanceCalculator.calculateDistances(SyntheticCity.CENTER, lats, lons, cosLats, points, maxDistance, distances);
+        return distances;
+    }
+}
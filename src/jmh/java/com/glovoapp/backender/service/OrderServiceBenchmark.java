@@ -0,0 +1,114 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.benchmark.SyntheticCity;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.OrderService.RankingDistance;
+import com.glovoapp.backender.service.OrderService.SlotPriority;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ranking of the orders available for the couriers of the city, one at a time or in batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderServiceBenchmark {
+    @Param({"1000", "100000"})
+    private int orders;
+
+    @Param({"1000"})
+    private int couriers;
+
+    @Param({"10"})
+    private double spread;
+
+    @Param({"40"})
+    private int descriptionLength;
+
+    @Param({"20", "2147483647"})
+    private int limit;
+
+    /**
+     * 0 disables the cache, to measure the ranking itself
+     */
+    @Param({"0"})
+    private long cacheSize;
+
+    @Param({"false"})
+    private boolean offHeap;
+
+    /**
+     * Degrees, 0.5 keeps the whole city in one region, 0.02 splits it into regions ranked in parallel
+     */
+    @Param({"0.5", "0.02"})
+    private double shardSize;
+
+    @Param({"PICKUP", "TOTAL_TRIP"})
+    private RankingDistance rankingDistance;
+
+    private OrderService orderService;
+    private String[] courierIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42, spread);
+        OrderRepository orderRepository = new OrderRepository(city.orders(orders, descriptionLength), offHeap, shardSize);
+        CourierRepository courierRepository = new CourierRepository(city.couriers(couriers));
+        DistanceCalculator distanceCalculator = new DistanceCalculator();
+        new BoxRequirementClassifier(orderRepository, ImmutableList.of("pizza", "cake", "flamingo"));
+        orderService = new OrderService(orderRepository,
+                courierRepository,
+                distanceCalculator,
+                new CourierOrdersCache(orderRepository, distanceCalculator, cacheSize, 5000, 0.05),
+                new OrderMetrics(new SimpleMeterRegistry()),
+                ImmutableMap.of(Vehicle.MOTORCYCLE, 500d, Vehicle.BICYCLE, 5d, Vehicle.ELECTRIC_SCOOTER, 500d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL),
+                rankingDistance);
+        courierIds = new String[couriers];
+        for (int i = 0; i < couriers; i++) {
+            courierIds[i] = SyntheticCity.COURIER_ID_PREFIX + i;
+        }
+    }
+
+    @Benchmark
+    public List<Order> ordersForCourier() {
+        String courierId = courierIds[next];
+        next = next + 1 == courierIds.length ? 0 : next + 1;
+        return orderService.ordersForCourier(courierId, limit, null).getOrders();
+    }
+
+    /**
+     * A dispatcher tick: the first page of every courier of the city, in a single batch
+     */
+    @Benchmark
+    public void ordersForCouriers(Blackhole blackhole) {
+        orderService.ordersForCouriers(Arrays.asList(courierIds), limit)
+                .forEach((courierId, page) -> blackhole.consume(page));
+    }
+}
@@ -0,0 +1,33 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.AssignmentVM;
+import com.glovoapp.backender.service.AssignmentEngine;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@AllArgsConstructor
+@Controller
+class AssignmentController {
+    private final AssignmentEngine assignmentEngine;
+
+    /**
+     * Retrieves the order assigned to every busy courier in the last tick of the assignment engine
+     */
+    @GetMapping("/assignments")
+    @ResponseBody
+    List<AssignmentVM> assignments() {
+        return assignmentEngine
+                .assignments()
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(assignment -> new AssignmentVM(assignment.getKey(), assignment.getValue()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,21 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.service.InvalidRequestException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Invalid parameters, like a non-positive limit or a malformed cursor, are rejected by the services with an
+ * {@link InvalidRequestException}: they're the client's fault, so they're answered with a 400 and the reason instead
+ * of a 500. Other exceptions, like an {@link IllegalArgumentException} from a bug, keep their default handling. It
+ * applies to every controller, in both servlet and reactive applications.
+ */
+@ControllerAdvice
+class BadRequestHandler {
+    @ExceptionHandler(InvalidRequestException.class)
+    ResponseEntity<String> badRequest(InvalidRequestException e) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+}
@@ -0,0 +1,83 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierService;
+import com.glovoapp.backender.service.OrderService;
+import com.glovoapp.backender.service.ResourceNotFoundException;
+import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.function.Supplier;
+
+/**
+ * Internal endpoints called by the other nodes of the cluster, with the entities as JSON in the same format as the
+ * write-ahead logs. They're served by this node without routing them again, and unknown entities are a 404 so the
+ * caller can tell them from failures. They must not be reachable from outside the cluster.
+ */
+@AllArgsConstructor
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class ClusterController {
+    private static final Gson GSON = new Gson();
+
+    private final ClusterRouter clusterRouter;
+    private final OrderService orderService;
+    private final CourierService courierService;
+
+    /**
+     * The page of orders of a courier of this node, forwarded by a node that doesn't own them
+     */
+    @GetMapping("/cluster/couriers/{courierId}/orders")
+    ResponseEntity<String> orders(@PathVariable String courierId,
+                                  @RequestParam int limit,
+                                  @RequestParam(required = false) String cursor) {
+        return toResponse(() -> clusterRouter.ordersForOwnCourier(courierId, limit, cursor));
+    }
+
+    /**
+     * The best orders of this node for a courier of another node, with their cursors, to be merged by it
+     */
+    @PostMapping("/cluster/rankings")
+    ResponseEntity<String> rank(@RequestBody String courier,
+                                @RequestParam int limit,
+                                @RequestParam(required = false) String cursor) {
+        return toResponse(() -> orderService.rankNear(GSON.fromJson(courier, Courier.class), limit, cursor));
+    }
+
+    @PostMapping("/cluster/orders")
+    ResponseEntity<String> create(@RequestBody String order) {
+        return toResponse(() -> orderService.create(GSON.fromJson(order, Order.class)));
+    }
+
+    @DeleteMapping("/cluster/orders/{orderId}")
+    ResponseEntity<String> cancel(@PathVariable String orderId) {
+        return toResponse(() -> orderService.cancel(orderId));
+    }
+
+    @PutMapping("/cluster/couriers/{courierId}/location")
+    ResponseEntity<String> updateLocation(@PathVariable String courierId, @RequestBody String location) {
+        return toResponse(() -> courierService.updateLocation(courierId, GSON.fromJson(location, Location.class)));
+    }
+
+    static ResponseEntity<String> toResponse(Supplier<?> result) {
+        try {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(GSON.toJson(result.get()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
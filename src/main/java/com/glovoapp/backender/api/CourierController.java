@@ -0,0 +1,29 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.LocationVM;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.service.ClusterRouter;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@AllArgsConstructor
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class CourierController {
+    private final ClusterRouter clusterRouter;
+
+    /**
+     * Receives the GPS pings of the couriers' apps
+     */
+    @PutMapping("/couriers/{courierId}/location")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    void updateLocation(@PathVariable String courierId, @RequestBody LocationVM location) {
+        clusterRouter.updateLocation(courierId, new Location(location.getLat(), location.getLon()));
+    }
+}
@@ -1,48 +1,173 @@
 package com.glovoapp.backender.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.api.model.AvailableOrdersRequestVM;
+import com.glovoapp.backender.api.model.CourierOrdersVM;
+import com.glovoapp.backender.api.model.CourierVM;
+import com.glovoapp.backender.api.model.NewOrderVM;
 import com.glovoapp.backender.api.model.OrderVM;
 import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.service.AvailableOrders;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierOrdersFeed;
+import com.glovoapp.backender.service.OrderMetrics;
+import com.glovoapp.backender.service.OrderPage;
 import com.glovoapp.backender.service.OrderService;
 import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @AllArgsConstructor
 @Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class OrderController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String ORDERS_EVENT = "orders";
+
     private final OrderService orderService;
+    private final ClusterRouter clusterRouter;
+    private final CourierOrdersFeed ordersFeed;
+    private final ObjectMapper objectMapper;
+    private final OrderFragments orderFragments;
+    private final OrderMetrics orderMetrics;
 
-    @RequestMapping("/orders")
-    @ResponseBody
-    List<OrderVM> orders() {
-        return orderService
-                .orders()
-                .stream()
-                .map(this::toOrderVM)
-                .collect(Collectors.toList());
+    /**
+     * Retrieves all the orders, streamed straight from the repository. With a {@code limit}, they're paged like
+     * {@link #orders(String, Integer, String)}, in the order they were published.
+     */
+    @GetMapping("/orders")
+    ResponseEntity<StreamingResponseBody> orders(@RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String cursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (limit == null && cursor == null) {
+            Collection<Order> orders = orderService.orders();
+            return response.body(output -> orderFragments.write(orders, output));
+        }
+        OrderPage page = orderService.orders(limit == null ? Integer.MAX_VALUE : limit, cursor);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(output -> orderFragments.write(page.getOrders(), output));
     }
 
     /**
      * Retrieves the list of orders that are available for a particular courier
      * Candidate note: Personally, I'd prefer to use this mapping to retrieve an order based on the id.
      * I'd push against this API and use /orders?availableForCourierId=:courierId, that's much more REST IMO
+     * <p>
+     * With a {@code limit}, the cursor of the next page (if any) is returned in the {@value NEXT_CURSOR_HEADER}
+     * header, and is passed back as the {@code cursor} parameter.
+     * <p>
+     * In a cluster, the orders are ranked by the node owning the courier, with the ones of the nodes around them.
      */
-    @RequestMapping("/orders/{courierId}")
+    @GetMapping("/orders/{courierId}")
+    ResponseEntity<byte[]> orders(@PathVariable String courierId,
+                          @RequestParam(required = false) Integer limit,
+                          @RequestParam(required = false) String cursor) {
+        OrderPage page = clusterRouter.ordersForCourier(courierId, limit == null ? Integer.MAX_VALUE : limit, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        long start = System.nanoTime();
+        byte[] body = orderFragments.toJson(page.getOrders());
+        orderMetrics.record(OrderMetrics.Phase.SERIALIZE, start);
+        return response.body(body);
+    }
+
+    /**
+     * Retrieves the couriers that can see an order, closest to its pickup first, to notify them
+     */
+    @GetMapping("/orders/{orderId}/couriers")
     @ResponseBody
-    List<OrderVM> orders(@PathVariable String courierId) {
-        return orderService
-                .ordersForCourier(courierId)
+    List<CourierVM> couriers(@PathVariable String orderId) {
+        return orderService.couriersForOrder(orderId)
                 .stream()
-                .map(this::toOrderVM)
+                .map(OrderViews::toCourierVM)
                 .collect(Collectors.toList());
     }
 
-    private OrderVM toOrderVM(Order order) {
-        return new OrderVM(order.getId(), order.getDescription());
+    /**
+     * Streams the changes of the orders available to a courier as server-sent events, instead of polling them: first
+     * all of them, then the orders that appear or change, the ones no longer available and the new ranking, as ids.
+     * A client falling behind has its stream completed, to connect again.
+     */
+    @GetMapping(path = "/orders/{courierId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter stream(@PathVariable String courierId, @RequestParam(required = false) Integer limit) {
+        SseEmitter emitter = new SseEmitter();
+        CourierOrdersFeed.Subscription subscription = ordersFeed.subscribe(courierId,
+                limit == null ? Integer.MAX_VALUE : limit,
+                delta -> {
+                    try {
+                        emitter.send(SseEmitter.event().name(ORDERS_EVENT).data(OrderViews.toOrdersDeltaVM(delta)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                emitter::complete);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        return emitter;
+    }
+
+    /**
+     * Retrieves the first page of available orders of many couriers at once, for dispatchers.
+     * The result is a JSON array streamed one courier at a time, in no particular order.
+     */
+    @PostMapping("/orders/available")
+    ResponseEntity<StreamingResponseBody> available(@RequestBody AvailableOrdersRequestVM request) {
+        AvailableOrders availableOrders = orderService.ordersForCouriers(request.getCourierIds(),
+                request.getLimit() == null ? Integer.MAX_VALUE : request.getLimit());
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                availableOrders.forEach((courierId, page) -> {
+                    CourierOrdersVM courierOrders = new CourierOrdersVM(courierId, page.getOrders()
+                            .stream()
+                            .map(OrderViews::toOrderVM)
+                            .collect(Collectors.toList()));
+                    synchronized (generator) {
+                        try {
+                            generator.writeObject(courierOrders);
+                            generator.flush();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+    }
+
+    @PostMapping("/orders")
+    @ResponseBody
+    OrderVM create(@RequestBody NewOrderVM newOrder) {
+        return OrderViews.toOrderVM(clusterRouter.create(OrderViews.toOrder(newOrder)));
+    }
+
+    @DeleteMapping("/orders/{orderId}")
+    @ResponseBody
+    OrderVM cancel(@PathVariable String orderId) {
+        return OrderViews.toOrderVM(clusterRouter.cancel(orderId));
     }
 }
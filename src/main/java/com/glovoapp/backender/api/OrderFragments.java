@@ -0,0 +1,111 @@
+package com.glovoapp.backender.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The {@link OrderVM} of every order, serialized once when the order is first read, so responses are assembled by
+ * concatenating bytes instead of serializing the same orders again for every courier.
+ * <p>
+ * Orders are immutable and a new instance is stored on every change, so fragments are cached by order instance, with
+ * weak keys: a fragment goes away with the last reference to its version of the order. Changes only drop the fragment
+ * of the previous version, as they're notified while the order is locked.
+ */
+@Component
+class OrderFragments {
+    private static final byte[] START = {'['};
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] END = {']'};
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Order, byte[]> fragments = CacheBuilder.newBuilder()
+            .weakKeys()
+            .recordStats()
+            .build();
+
+    OrderFragments(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        orderRepository.addChangeListener((previous, current) -> {
+            if (previous != null && previous != current) {
+                fragments.invalidate(previous);
+            }
+        });
+    }
+
+    /**
+     * Returns the orders as a JSON array of {@link OrderVM}
+     */
+    byte[] toJson(List<Order> orders) {
+        byte[][] parts = new byte[orders.size()][];
+        int length = START.length + END.length + Math.max(orders.size() - 1, 0) * SEPARATOR.length;
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = fragment(orders.get(i));
+            length += parts[i].length;
+        }
+        byte[] json = new byte[length];
+        int position = append(json, 0, START);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                position = append(json, position, SEPARATOR);
+            }
+            position = append(json, position, parts[i]);
+        }
+        append(json, position, END);
+        return json;
+    }
+
+    /**
+     * Writes the orders as a JSON array of {@link OrderVM}, one order at a time
+     */
+    void write(Iterable<Order> orders, OutputStream output) throws IOException {
+        output.write(START);
+        boolean first = true;
+        for (Order order : orders) {
+            if (!first) {
+                output.write(SEPARATOR);
+            }
+            output.write(fragment(order));
+            first = false;
+        }
+        output.write(END);
+        output.flush();
+    }
+
+    CacheStats stats() {
+        return fragments.stats();
+    }
+
+    private byte[] fragment(Order order) {
+        byte[] fragment = fragments.getIfPresent(order);
+        if (fragment == null) {
+            fragment = serialize(order);
+            fragments.put(order, fragment);
+        }
+        return fragment;
+    }
+
+    private byte[] serialize(Order order) {
+        try {
+            return objectMapper.writeValueAsBytes(OrderViews.toOrderVM(order));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int append(byte[] json, int position, byte[] part) {
+        System.arraycopy(part, 0, json, position, part.length);
+        return position + part.length;
+    }
+}
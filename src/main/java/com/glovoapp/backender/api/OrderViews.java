@@ -0,0 +1,50 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.CourierVM;
+import com.glovoapp.backender.api.model.LocationVM;
+import com.glovoapp.backender.api.model.NewOrderVM;
+import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.api.model.OrdersDeltaVM;
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.service.OrdersDelta;
+
+import java.util.stream.Collectors;
+
+/**
+ * Mapping between orders and their views, shared by the servlet and the reactive controllers
+ */
+final class OrderViews {
+    private OrderViews() {
+    }
+
+    static OrderVM toOrderVM(Order order) {
+        return new OrderVM(order.getId(), order.getDescription());
+    }
+
+    static CourierVM toCourierVM(Courier courier) {
+        return new CourierVM(courier.getId(), courier.getName());
+    }
+
+    static OrdersDeltaVM toOrdersDeltaVM(OrdersDelta delta) {
+        return new OrdersDeltaVM(delta.getAdded().stream().map(OrderViews::toOrderVM).collect(Collectors.toList()),
+                delta.getRemoved(),
+                delta.getRanking());
+    }
+
+    static Order toOrder(NewOrderVM newOrder) {
+        return Order.builder()
+                .id(newOrder.getId())
+                .description(newOrder.getDescription())
+                .food(newOrder.getFood())
+                .vip(newOrder.getVip())
+                .pickup(toLocation(newOrder.getPickup()))
+                .delivery(toLocation(newOrder.getDelivery()))
+                .build();
+    }
+
+    private static Location toLocation(LocationVM location) {
+        return location == null ? null : new Location(location.getLat(), location.getLon());
+    }
+}
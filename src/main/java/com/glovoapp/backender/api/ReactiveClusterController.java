@@ -0,0 +1,73 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierService;
+import com.glovoapp.backender.service.OrderService;
+import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Supplier;
+
+/**
+ * The internal endpoints of {@link ClusterController} for the reactive mode. Rankings and writes may block on the
+ * repositories or another node, so every call runs outside of the event loop.
+ */
+@AllArgsConstructor
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveClusterController {
+    private static final Gson GSON = new Gson();
+
+    private final ClusterRouter clusterRouter;
+    private final OrderService orderService;
+    private final CourierService courierService;
+
+    @GetMapping("/cluster/couriers/{courierId}/orders")
+    Mono<ResponseEntity<String>> orders(@PathVariable String courierId,
+                                        @RequestParam int limit,
+                                        @RequestParam(required = false) String cursor) {
+        return toResponse(() -> clusterRouter.ordersForOwnCourier(courierId, limit, cursor));
+    }
+
+    @PostMapping("/cluster/rankings")
+    Mono<ResponseEntity<String>> rank(@RequestBody String courier,
+                                      @RequestParam int limit,
+                                      @RequestParam(required = false) String cursor) {
+        return toResponse(() -> orderService.rankNear(GSON.fromJson(courier, Courier.class), limit, cursor));
+    }
+
+    @PostMapping("/cluster/orders")
+    Mono<ResponseEntity<String>> create(@RequestBody String order) {
+        return toResponse(() -> orderService.create(GSON.fromJson(order, Order.class)));
+    }
+
+    @DeleteMapping("/cluster/orders/{orderId}")
+    Mono<ResponseEntity<String>> cancel(@PathVariable String orderId) {
+        return toResponse(() -> orderService.cancel(orderId));
+    }
+
+    @PutMapping("/cluster/couriers/{courierId}/location")
+    Mono<ResponseEntity<String>> updateLocation(@PathVariable String courierId, @RequestBody String location) {
+        return toResponse(() -> courierService.updateLocation(courierId, GSON.fromJson(location, Location.class)));
+    }
+
+    private static Mono<ResponseEntity<String>> toResponse(Supplier<?> result) {
+        return Mono.fromCallable(() -> ClusterController.toResponse(result))
+                .subscribeOn(Schedulers.elastic());
+    }
+}
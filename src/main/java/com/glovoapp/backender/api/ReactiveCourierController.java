@@ -0,0 +1,37 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.LocationVM;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.service.ClusterRouter;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The courier endpoints of {@link CourierController} for the reactive mode. Updates may block on another node, so
+ * they run outside of the event loop.
+ */
+@AllArgsConstructor
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveCourierController {
+    private final ClusterRouter clusterRouter;
+
+    /**
+     * Receives the GPS pings of the couriers' apps
+     */
+    @PutMapping("/couriers/{courierId}/location")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    Mono<Void> updateLocation(@PathVariable String courierId, @RequestBody LocationVM location) {
+        return Mono.fromCallable(() -> clusterRouter.updateLocation(courierId, new Location(location.getLat(), location.getLon())))
+                .subscribeOn(Schedulers.elastic())
+                .then();
+    }
+}
@@ -0,0 +1,142 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.AvailableOrdersRequestVM;
+import com.glovoapp.backender.api.model.CourierOrdersVM;
+import com.glovoapp.backender.api.model.CourierVM;
+import com.glovoapp.backender.api.model.NewOrderVM;
+import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.api.model.OrdersDeltaVM;
+import com.glovoapp.backender.service.AvailableOrders;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierOrdersFeed;
+import com.glovoapp.backender.service.OrderPage;
+import com.glovoapp.backender.service.OrderService;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.stream.Collectors;
+
+/**
+ * The order endpoints of {@link OrderController} for the reactive mode, on Netty, with
+ * {@code spring.main.web-application-type: reactive}.
+ * <p>
+ * Lists are emitted as the client reads them: {@code application/stream+json} clients get one order per line as soon
+ * as it's written, with backpressure, while {@code application/json} ones still get a single array.
+ */
+@AllArgsConstructor
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveOrderController {
+    private static final int MAX_BUFFERED_DELTAS = 16;
+
+    private final OrderService orderService;
+    private final ClusterRouter clusterRouter;
+    private final CourierOrdersFeed ordersFeed;
+
+    /**
+     * Retrieves all the orders, or a page of them with a {@code limit}, like {@link OrderController}
+     */
+    @GetMapping(path = "/orders", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    ResponseEntity<Flux<OrderVM>> orders(@RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(Flux.defer(() -> Flux.fromIterable(orderService.orders())).map(OrderViews::toOrderVM));
+        }
+        return toResponse(orderService.orders(limit == null ? Integer.MAX_VALUE : limit, cursor));
+    }
+
+    /**
+     * Retrieves the list of orders that are available for a particular courier, like {@link OrderController}. It may
+     * block on another node, so it runs outside of the event loop, like the changes of orders below.
+     */
+    @GetMapping(path = "/orders/{courierId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    Mono<ResponseEntity<Flux<OrderVM>>> orders(@PathVariable String courierId,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String cursor) {
+        int pageLimit = limit == null ? Integer.MAX_VALUE : limit;
+        return Mono.fromCallable(() -> clusterRouter.ordersForCourier(courierId, pageLimit, cursor))
+                .subscribeOn(Schedulers.elastic())
+                .map(ReactiveOrderController::toResponse);
+    }
+
+    @GetMapping(path = "/orders/{orderId}/couriers", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    @ResponseBody
+    Flux<CourierVM> couriers(@PathVariable String orderId) {
+        return Flux.fromIterable(orderService.couriersForOrder(orderId)).map(OrderViews::toCourierVM);
+    }
+
+    /**
+     * Streams the changes of the orders available to a courier, like {@link OrderController}. Up to
+     * {@value #MAX_BUFFERED_DELTAS} changes wait for a slow client, beyond which its stream fails, to connect again.
+     */
+    @GetMapping(path = "/orders/{courierId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    Flux<ServerSentEvent<OrdersDeltaVM>> stream(@PathVariable String courierId,
+                                                @RequestParam(required = false) Integer limit) {
+        return Flux.<ServerSentEvent<OrdersDeltaVM>>create(sink -> {
+            CourierOrdersFeed.Subscription subscription = ordersFeed.subscribe(courierId,
+                    limit == null ? Integer.MAX_VALUE : limit,
+                    delta -> sink.next(ServerSentEvent.builder(OrderViews.toOrdersDeltaVM(delta))
+                            .event(OrderController.ORDERS_EVENT)
+                            .build()),
+                    sink::complete);
+            sink.onDispose(subscription::cancel);
+        }).onBackpressureBuffer(MAX_BUFFERED_DELTAS);
+    }
+
+    /**
+     * Retrieves the first page of available orders of many couriers at once, for dispatchers, one courier at a time
+     * in no particular order. Ranking blocks, so it runs outside of the event loop.
+     */
+    @PostMapping(path = "/orders/available", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    @ResponseBody
+    Flux<CourierOrdersVM> available(@RequestBody AvailableOrdersRequestVM request) {
+        AvailableOrders availableOrders = orderService.ordersForCouriers(request.getCourierIds(),
+                request.getLimit() == null ? Integer.MAX_VALUE : request.getLimit());
+        return Flux.<CourierOrdersVM>create(sink -> {
+            availableOrders.forEach((courierId, page) -> sink.next(new CourierOrdersVM(courierId, page.getOrders()
+                    .stream()
+                    .map(OrderViews::toOrderVM)
+                    .collect(Collectors.toList()))));
+            sink.complete();
+        }).subscribeOn(Schedulers.elastic());
+    }
+
+    @PostMapping("/orders")
+    @ResponseBody
+    Mono<OrderVM> create(@RequestBody NewOrderVM newOrder) {
+        return Mono.fromCallable(() -> clusterRouter.create(OrderViews.toOrder(newOrder)))
+                .subscribeOn(Schedulers.elastic())
+                .map(OrderViews::toOrderVM);
+    }
+
+    @DeleteMapping("/orders/{orderId}")
+    @ResponseBody
+    Mono<OrderVM> cancel(@PathVariable String orderId) {
+        return Mono.fromCallable(() -> clusterRouter.cancel(orderId))
+                .subscribeOn(Schedulers.elastic())
+                .map(OrderViews::toOrderVM);
+    }
+
+    private static ResponseEntity<Flux<OrderVM>> toResponse(OrderPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(OrderController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(Flux.fromIterable(page.getOrders()).map(OrderViews::toOrderVM));
+    }
+}
@@ -0,0 +1,12 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.Value;
+
+/**
+ * To be used for exposing which order a courier should pick up next
+ */
+@Value
+public class AssignmentVM {
+    String courierId;
+    String orderId;
+}
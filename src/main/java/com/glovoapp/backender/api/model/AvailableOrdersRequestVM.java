@@ -0,0 +1,18 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * To be used for receiving batches of couriers whose available orders are requested at once
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableOrdersRequestVM {
+    List<String> courierIds;
+    Integer limit;
+}
@@ -0,0 +1,14 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * To be used for exposing the orders available for one of the couriers of a batch
+ */
+@Value
+public class CourierOrdersVM {
+    String courierId;
+    List<OrderVM> orders;
+}
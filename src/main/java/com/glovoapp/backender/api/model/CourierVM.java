@@ -0,0 +1,12 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.Value;
+
+/**
+ * To be used for exposing courier information through the API
+ */
+@Value
+public class CourierVM {
+    String id;
+    String name;
+}
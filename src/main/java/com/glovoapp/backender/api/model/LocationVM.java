@@ -0,0 +1,16 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * To be used for receiving locations through the API
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationVM {
+    Double lat;
+    Double lon;
+}
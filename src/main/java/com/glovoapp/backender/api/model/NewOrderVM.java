@@ -0,0 +1,20 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * To be used for receiving new orders through the API
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewOrderVM {
+    String id;
+    String description;
+    Boolean food;
+    Boolean vip;
+    LocationVM pickup;
+    LocationVM delivery;
+}
@@ -0,0 +1,15 @@
+package com.glovoapp.backender.api.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * To be used for pushing what changed in the orders available to a courier
+ */
+@Value
+public class OrdersDeltaVM {
+    List<OrderVM> added;
+    List<String> removed;
+    List<String> ranking;
+}
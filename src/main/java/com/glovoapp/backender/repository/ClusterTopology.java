@@ -0,0 +1,140 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The nodes of the cluster and the data every one of them owns.
+ * <p>
+ * The map is divided into square regions, and an order belongs to the node owning the region of its pickup, while a
+ * courier belongs to the node owning its id, wherever they are: both are assigned by consistent hashing, so a new
+ * node only takes over a share of the regions and couriers of the others. Without nodes, the node is standalone and
+ * owns everything.
+ */
+@Component
+public class ClusterTopology {
+    private static final int VIRTUAL_NODES = 128;
+    private static final double EARTH_RADIUS = 6371;
+    // Queries spanning more regions than this just ask every node
+    private static final long MAX_REGIONS = 1024;
+
+    private final String self;
+    private final List<String> nodes;
+    private final double regionSize;
+    private final HashRing ring;
+
+    /**
+     * @param nodes      base URLs of every node, comma separated, empty for a standalone node
+     * @param self       base URL of this node, one of the nodes
+     * @param regionSize side of every region, in degrees
+     */
+    public ClusterTopology(@Value("${backender.cluster_nodes}") String nodes,
+                           @Value("${backender.cluster_self}") String self,
+                           @Value("${backender.cluster_region_size}") double regionSize) {
+        this.nodes = ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(nodes));
+        this.self = self.trim();
+        this.regionSize = regionSize;
+        if (!(regionSize > 0)) {
+            throw new IllegalArgumentException("The region size must be positive: " + regionSize);
+        }
+        if (this.nodes.isEmpty()) {
+            this.ring = null;
+        } else if (this.nodes.contains(this.self)) {
+            this.ring = new HashRing(this.nodes, VIRTUAL_NODES);
+        } else {
+            throw new IllegalArgumentException("This node '" + self + "' isn't one of the cluster nodes " + nodes);
+        }
+    }
+
+    /**
+     * A node owning everything, for tests and tools
+     */
+    public static ClusterTopology standalone() {
+        return new ClusterTopology("", "", 1);
+    }
+
+    public boolean isStandalone() {
+        return ring == null;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The node owning the region of the pickup, or the id of orders without pickup
+     */
+    public String ownerOfOrder(Order order) {
+        if (isStandalone()) {
+            return self;
+        }
+        Location pickup = order.getPickup();
+        return pickup == null
+                ? ring.nodeOf("order:" + order.getId())
+                : ring.nodeOf(regionKey(cell(pickup.getLat()), cell(pickup.getLon())));
+    }
+
+    public String ownerOfCourier(String courierId) {
+        return isStandalone() ? self : ring.nodeOf("courier:" + courierId);
+    }
+
+    public boolean ownsOrder(Order order) {
+        return self.equals(ownerOfOrder(order));
+    }
+
+    public boolean ownsCourier(String courierId) {
+        return self.equals(ownerOfCourier(courierId));
+    }
+
+    /**
+     * The nodes owning any region that overlaps the circle of the given radius (in kilometers) around the location,
+     * and maybe a few more. Without location or with a negative radius nothing is near, and only this node is asked.
+     */
+    public Set<String> ownersNear(Location location, double distance) {
+        if (isStandalone() || location == null || distance < 0) {
+            return ImmutableSet.of(self);
+        }
+        double latDelta = Math.toDegrees(distance / EARTH_RADIUS);
+        double widestLat = Math.min(Math.abs(location.getLat()) + latDelta, 90);
+        // Over-estimates the longitude span, which is widest at the latitude of the circle closest to a pole
+        double lonDelta = latDelta / Math.cos(Math.toRadians(widestLat));
+        if (Math.abs(location.getLon()) + lonDelta >= 180) {
+            return ImmutableSet.copyOf(nodes);
+        }
+        long minRow = cell(location.getLat() - latDelta);
+        long maxRow = cell(location.getLat() + latDelta);
+        long minColumn = cell(location.getLon() - lonDelta);
+        long maxColumn = cell(location.getLon() + lonDelta);
+        if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > MAX_REGIONS) {
+            return ImmutableSet.copyOf(nodes);
+        }
+        Set<String> owners = new HashSet<>();
+        for (long row = minRow; row <= maxRow && owners.size() < nodes.size(); row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                owners.add(ring.nodeOf(regionKey(row, column)));
+            }
+        }
+        return owners;
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / regionSize);
+    }
+
+    private static String regionKey(long row, long column) {
+        return "region:" + row + ":" + column;
+    }
+}
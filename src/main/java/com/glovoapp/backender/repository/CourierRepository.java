@@ -1,40 +1,208 @@
 package com.glovoapp.backender.repository;
 
 import com.glovoapp.backender.model.Courier;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Vehicle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.lang.reflect.Type;
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 
 @Repository
 public class CourierRepository {
-    private static final String COURIERS_FILE = "/couriers.json";
-    private static final List<Courier> couriers;
+    private static final String COURIERS_FILE = JsonArrayLoader.CLASSPATH_PREFIX + "/couriers.json";
+    private static final double INDEX_CELL_SIZE = 0.05; // degrees, roughly 5km of latitude
 
-    static {
-        try (Reader reader = new InputStreamReader(CourierRepository.class.getResourceAsStream(COURIERS_FILE))) {
-            Type type = new TypeToken<List<Courier>>() {
-            }.getType();
-            couriers = new Gson().fromJson(reader, type);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private final DenseEntityStore<Courier> couriers = new DenseEntityStore<>(Courier::getId, this::changed);
+    private final List<BiConsumer<Courier, Courier>> listeners = new CopyOnWriteArrayList<>();
+    // One index of locations per vehicle and box, as couriers only see the orders their vehicle and box allow
+    private final List<GridIndex<Courier>> locationIndexes = new ArrayList<>();
+    private final Path snapshotFile;
+    // Opened once the couriers are recovered, so they aren't logged again
+    private volatile WriteAheadLog<Courier> log;
+
+    public CourierRepository() {
+        this(COURIERS_FILE, "", "", 0, ClusterTopology.standalone());
+    }
+
+    /**
+     * @param couriersFile    JSON array of the initial couriers, streamed into the repository
+     * @param snapshotFile    binary snapshot written on shutdown and loaded instead of the couriers file when it
+     *                        exists, none if empty
+     * @param logFile         log of the changes since the snapshot, replayed on top of it, none if empty
+     * @param compactionBytes size of the log, in bytes, over which it's compacted into a new snapshot
+     * @param cluster         only the couriers owned by this node are loaded from the couriers file, the snapshot
+     *                        and the log of a node only have its own
+     */
+    @Autowired
+    public CourierRepository(@Value("${backender.couriers_file}") String couriersFile,
+                             @Value("${backender.couriers_snapshot}") String snapshotFile,
+                             @Value("${backender.couriers_log}") String logFile,
+                             @Value("${backender.log_compaction_bytes}") long compactionBytes,
+                             ClusterTopology cluster) {
+        this(Collections.emptyList(), snapshotFile.isEmpty() ? null : Paths.get(snapshotFile));
+        if (!logFile.isEmpty() && this.snapshotFile == null) {
+            throw new IllegalArgumentException("The couriers log needs a couriers snapshot to be compacted into");
+        }
+        if (this.snapshotFile != null && Files.exists(this.snapshotFile)) {
+            Snapshot.readCouriers(this.snapshotFile, this::save);
+        } else {
+            JsonArrayLoader.load(couriersFile, Courier.class, courier -> {
+                if (cluster.ownsCourier(courier.getId())) {
+                    save(courier);
+                }
+            });
+        }
+        if (!logFile.isEmpty()) {
+            Path path = Paths.get(logFile);
+            // Couriers are never removed
+            WriteAheadLog.replay(path, Courier.class, this::save, id -> {
+            });
+            log = new WriteAheadLog<>(path, this::writeSnapshot, compactionBytes);
+        }
+    }
+
+    public CourierRepository(Collection<Courier> initialCouriers) {
+        this(initialCouriers, null);
+    }
+
+    private CourierRepository(Collection<Courier> initialCouriers, Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        for (int partition = 0; partition < Vehicle.values().length * 2; partition++) {
+            locationIndexes.add(new GridIndex<>(INDEX_CELL_SIZE, Courier::getLocation));
         }
+        initialCouriers.forEach(this::save);
     }
 
     public Optional<Courier> findById(String courierId) {
-        return couriers.stream()
-                .filter(courier -> courierId.equals(courier.getId()))
-                .findFirst();
+        return couriers.find(courierId);
     }
 
-    public List<Courier> findAll() {
-        return new ArrayList<>(couriers);
+    /**
+     * Returns a read-only, live view of all the couriers, in insertion order.
+     * Iterating it through {@code forEach} doesn't allocate anything.
+     */
+    public Collection<Courier> findAll() {
+        return couriers.values();
+    }
+
+    /**
+     * Returns the couriers with the given vehicle and box within the distance (in kilometers) of the location, and
+     * maybe some a bit further away: the exact distance must be checked by the caller. Couriers without vehicle or
+     * location are never returned.
+     */
+    public List<Courier> findNear(Location location, double distance, Vehicle vehicle, boolean box) {
+        return locationIndexes.get(partitionOf(vehicle, box)).findNear(location, distance);
+    }
+
+    /**
+     * Stores a new courier or replaces the one with the same id
+     */
+    public void save(Courier courier) {
+        checkWritable();
+        couriers.put(courier);
+        sync();
+    }
+
+    /**
+     * Writes the binary snapshot of the couriers, if configured, so the next start doesn't parse the couriers file
+     */
+    public void writeSnapshot() {
+        if (snapshotFile != null) {
+            Snapshot.writeCouriers(snapshotFile, findAll());
+        }
+    }
+
+    /**
+     * Flushes the log into a final snapshot, or just writes the snapshot without log
+     */
+    @PreDestroy
+    public void close() {
+        WriteAheadLog<Courier> log = this.log;
+        if (log != null) {
+            this.log = null;
+            log.close();
+        } else {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Moves the courier, returning its updated version or empty if the courier doesn't exist
+     */
+    public Optional<Courier> updateLocation(String courierId, Location location) {
+        checkWritable();
+        Optional<Courier> updated = couriers.update(courierId, courier -> courier.toBuilder().location(location).build());
+        sync();
+        return updated;
+    }
+
+    /**
+     * Registers a listener called with the previous (null when absent) and the current version of every courier that
+     * changes, once the change is visible. The current version is null when a new courier is removed again, because
+     * it couldn't be logged.
+     */
+    public void addChangeListener(BiConsumer<Courier, Courier> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Logs the change before indexing it, so a change that can't be logged is never visible, and one that fails to
+     * reach the disk later is undone
+     */
+    private void changed(Courier previous, Courier current) {
+        WriteAheadLog<Courier> log = this.log;
+        if (log != null) {
+            log.put(current, () -> couriers.restore(current.getId(), current, previous, this::indexed));
+        }
+        indexed(previous, current);
+    }
+
+    /**
+     * @param current null when a courier that couldn't be logged is removed again
+     */
+    private void indexed(Courier previous, Courier current) {
+        if (previous != null && previous.getVehicle() != null) {
+            locationIndexes.get(partitionOf(previous.getVehicle(), Boolean.TRUE.equals(previous.getBox()))).remove(previous);
+        }
+        if (current != null && current.getVehicle() != null) {
+            locationIndexes.get(partitionOf(current.getVehicle(), Boolean.TRUE.equals(current.getBox()))).add(current);
+        }
+        listeners.forEach(listener -> listener.accept(previous, current));
+    }
+
+    private static int partitionOf(Vehicle vehicle, boolean box) {
+        return vehicle.ordinal() * 2 + (box ? 1 : 0);
+    }
+
+    /**
+     * Rejects a change before it's applied when it couldn't be logged
+     */
+    private void checkWritable() {
+        WriteAheadLog<Courier> log = this.log;
+        if (log != null) {
+            log.checkWritable();
+        }
+    }
+
+    /**
+     * Waits until the changes made so far are logged, as they're logged while the changed courier is locked
+     */
+    private void sync() {
+        WriteAheadLog<Courier> log = this.log;
+        if (log != null) {
+            log.sync();
+        }
     }
 }
@@ -0,0 +1,192 @@
+package com.glovoapp.backender.repository;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe, in-memory store for long-lived entities that are never removed, like couriers.
+ * <p>
+ * Every id is interned into a compact slot number the first time it's stored, and entities live in fixed-size
+ * chunks indexed by slot, so lookups are a single hash probe plus an array read. Chunks are only ever appended,
+ * which lets writes to different ids run concurrently without locks and reads never copy anything.
+ */
+class DenseEntityStore<T> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << 12;
+
+    private final Function<T, String> idOf;
+    private final BiConsumer<T, T> onChange;
+    private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final Collection<T> view = new View();
+
+    /**
+     * @param idOf     extracts the id of an entity
+     * @param onChange called with the previous (null when absent) and the current version of an entity while the
+     *                 entity is still locked, so secondary indexes can be kept consistent. If it throws, the change is
+     *                 undone in the store and the exception passed on.
+     */
+    DenseEntityStore(Function<T, String> idOf, BiConsumer<T, T> onChange) {
+        this.idOf = idOf;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Returns the slot of the entity, or -1 if it was never stored
+     */
+    int slotOf(String id) {
+        Integer slot = slots.get(id);
+        return slot == null ? -1 : slot;
+    }
+
+    T get(int slot) {
+        AtomicReferenceArray<T> chunk = chunks.get(slot >>> CHUNK_BITS);
+        return chunk == null ? null : chunk.get(slot & CHUNK_MASK);
+    }
+
+    Optional<T> find(String id) {
+        int slot = slotOf(id);
+        return slot < 0 ? Optional.empty() : Optional.ofNullable(get(slot));
+    }
+
+    /**
+     * Read-only, live view of the store in insertion order. Its {@code forEach} and {@code size} don't allocate.
+     */
+    Collection<T> values() {
+        return view;
+    }
+
+    /**
+     * Inserts the entity or replaces the one with the same id, which keeps its slot
+     */
+    void put(T entity) {
+        slots.compute(idOf.apply(entity), (id, slot) -> {
+            int position = slot != null ? slot : allocate();
+            T previous = chunk(position).getAndSet(position & CHUNK_MASK, entity);
+            try {
+                onChange.accept(previous, entity);
+            } catch (RuntimeException e) {
+                chunk(position).set(position & CHUNK_MASK, previous);
+                throw e;
+            }
+            return position;
+        });
+    }
+
+    Optional<T> update(String id, UnaryOperator<T> change) {
+        AtomicReference<T> updated = new AtomicReference<>();
+        slots.computeIfPresent(id, (ignored, slot) -> {
+            T previous = get(slot);
+            T current = change.apply(previous);
+            chunk(slot).set(slot & CHUNK_MASK, current);
+            try {
+                onChange.accept(previous, current);
+            } catch (RuntimeException e) {
+                chunk(slot).set(slot & CHUNK_MASK, previous);
+                throw e;
+            }
+            updated.set(current);
+            return slot;
+        });
+        return Optional.ofNullable(updated.get());
+    }
+
+    /**
+     * Puts back the previous version (null when absent) of an entity, if the given version is still the current one,
+     * passing both to the given callback instead of the change listener, as when undoing a change that couldn't be
+     * logged. An entity that didn't exist is left out again, its slot unused.
+     */
+    void restore(String id, T expected, T previous, BiConsumer<T, T> onRestore) {
+        slots.computeIfPresent(id, (ignored, slot) -> {
+            if (get(slot) != expected || expected == previous) {
+                return slot;
+            }
+            chunk(slot).set(slot & CHUNK_MASK, previous);
+            onRestore.accept(expected, previous);
+            return previous == null ? null : slot;
+        });
+    }
+
+    private int allocate() {
+        int slot = allocated.getAndIncrement();
+        if (slot >>> CHUNK_BITS >= MAX_CHUNKS) {
+            allocated.decrementAndGet();
+            throw new IllegalStateException("The store can't hold more than " + MAX_CHUNKS * CHUNK_SIZE + " entities");
+        }
+        return slot;
+    }
+
+    private AtomicReferenceArray<T> chunk(int slot) {
+        int index = slot >>> CHUNK_BITS;
+        AtomicReferenceArray<T> chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private class View extends AbstractCollection<T> {
+        @Override
+        public int size() {
+            return slots.size();
+        }
+
+        @Override
+        public void forEach(Consumer<? super T> action) {
+            int end = allocated.get();
+            for (int slot = 0; slot < end; slot++) {
+                T entity = get(slot);
+                if (entity != null) {
+                    action.accept(entity);
+                }
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private final int end = allocated.get();
+                private int slot = advance(0);
+
+                private int advance(int from) {
+                    int next = from;
+                    while (next < end && get(next) == null) {
+                        next++;
+                    }
+                    return next;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < end;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T entity = get(slot);
+                    slot = advance(slot + 1);
+                    return entity;
+                }
+            };
+        }
+    }
+}
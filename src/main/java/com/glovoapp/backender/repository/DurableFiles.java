@@ -0,0 +1,40 @@
+package com.glovoapp.backender.repository;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files so the new contents survive a power loss: a rename alone is atomic, but until the renamed file and
+ * its directory are forced to disk, it may come back empty or not at all.
+ */
+final class DurableFiles {
+    private DurableFiles() {
+    }
+
+    /**
+     * Moves a file already forced to disk over the target, and forces the directory holding both
+     */
+    static void replace(Path temporary, Path file) throws IOException {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Platforms that can't open directories, like Windows, don't need it nor allow it
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.glovoapp.backender.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe, in-memory store of entities keyed by id, keeping them in insertion order.
+ * <p>
+ * Writes to the same id are serialized, writes to different ids run concurrently. Reads never lock nor copy:
+ * {@link #values()} is a live, weakly consistent view of the store.
+ */
+class EntityStore<T> {
+    private final Function<T, String> idOf;
+    private final BiConsumer<T, T> onChange;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<String, Long> sequences = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, T> entities = new ConcurrentSkipListMap<>();
+    private final Collection<T> view = Collections.unmodifiableCollection(entities.values());
+
+    /**
+     * @param idOf     extracts the id of an entity
+     * @param onChange called with the previous and the current version of an entity (null when absent) while
+     *                 the entity is still locked, so secondary indexes can be kept consistent. If it throws, the
+     *                 change is undone in the store and the exception passed on.
+     */
+    EntityStore(Function<T, String> idOf, BiConsumer<T, T> onChange) {
+        this.idOf = idOf;
+        this.onChange = onChange;
+    }
+
+    Optional<T> find(String id) {
+        Long key = sequences.get(id);
+        return key == null ? Optional.empty() : Optional.ofNullable(entities.get(key));
+    }
+
+    Collection<T> values() {
+        return view;
+    }
+
+    /**
+     * Returns up to {@code limit} entities inserted after the given position, 0 being the start of the store.
+     * Positions never move, so slices stay consistent while entities are inserted or removed.
+     */
+    Slice<T> slice(long after, int limit) {
+        List<T> slice = new ArrayList<>(Math.min(limit, 1024));
+        long last = after;
+        Iterator<Map.Entry<Long, T>> entries = entities.tailMap(after, false).entrySet().iterator();
+        while (slice.size() < limit && entries.hasNext()) {
+            Map.Entry<Long, T> entry = entries.next();
+            slice.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Slice<>(slice, entries.hasNext() ? last : -1);
+    }
+
+    /**
+     * Inserts the entity or replaces the one with the same id, which keeps its position
+     */
+    void put(T entity) {
+        sequences.compute(idOf.apply(entity), (id, key) -> {
+            long position = key != null ? key : sequence.incrementAndGet();
+            T previous = entities.put(position, entity);
+            try {
+                onChange.accept(previous, entity);
+            } catch (RuntimeException e) {
+                set(position, previous);
+                throw e;
+            }
+            return position;
+        });
+    }
+
+    Optional<T> update(String id, UnaryOperator<T> change) {
+        AtomicReference<T> updated = new AtomicReference<>();
+        sequences.computeIfPresent(id, (ignored, key) -> {
+            T previous = entities.get(key);
+            T current = change.apply(previous);
+            entities.put(key, current);
+            try {
+                onChange.accept(previous, current);
+            } catch (RuntimeException e) {
+                entities.put(key, previous);
+                throw e;
+            }
+            updated.set(current);
+            return key;
+        });
+        return Optional.ofNullable(updated.get());
+    }
+
+    Optional<T> remove(String id) {
+        AtomicReference<T> removed = new AtomicReference<>();
+        sequences.computeIfPresent(id, (ignored, key) -> {
+            T previous = entities.remove(key);
+            try {
+                onChange.accept(previous, null);
+            } catch (RuntimeException e) {
+                entities.put(key, previous);
+                throw e;
+            }
+            removed.set(previous);
+            return null;
+        });
+        return Optional.ofNullable(removed.get());
+    }
+
+    /**
+     * Puts back the previous version (null when absent) of an entity, if the given version is still the current one
+     * (null when absent), passing both to the given callback instead of the change listener, as when undoing a change
+     * that couldn't be logged. An entity put back after its removal goes to the end of the store.
+     */
+    void restore(String id, T expected, T previous, BiConsumer<T, T> onRestore) {
+        sequences.compute(id, (ignored, key) -> {
+            T current = key == null ? null : entities.get(key);
+            if (current != expected || current == previous) {
+                return key;
+            }
+            Long position = previous == null ? null : key != null ? key : sequence.incrementAndGet();
+            if (key != null) {
+                entities.remove(key);
+            }
+            if (position != null) {
+                entities.put(position, previous);
+            }
+            onRestore.accept(current, previous);
+            return position;
+        });
+    }
+
+    private void set(long position, T entity) {
+        if (entity == null) {
+            entities.remove(position);
+        } else {
+            entities.put(position, entity);
+        }
+    }
+}
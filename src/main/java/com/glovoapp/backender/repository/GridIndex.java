@@ -0,0 +1,147 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static java.lang.Math.*;
+
+/**
+ * Buckets items into fixed-size latitude/longitude cells, so a radius query only visits the cells
+ * overlapping the search area instead of the whole data set.
+ * <p>
+ * Queries return a superset of the items in range: callers still have to compute the exact distance.
+ * The index can be updated concurrently with queries, which see a weakly consistent state.
+ */
+class GridIndex<T> {
+    private static final double EARTH_RADIUS = 6371;
+    private static final double EPSILON = 1e-9;
+
+    private final double cellSize;
+    private final Function<T, Location> locator;
+    private final ConcurrentMap<Long, Set<T>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * @param cellSize side of every cell, in degrees
+     * @param locator  extracts the indexed location from an item
+     */
+    GridIndex(double cellSize, Function<T, Location> locator) {
+        this.cellSize = cellSize;
+        this.locator = locator;
+    }
+
+    /**
+     * Items without location can't be placed in any cell, so they are never returned by {@link #findNear}
+     */
+    void add(T item) {
+        Location location = locator.apply(item);
+        if (location == null) {
+            return;
+        }
+        cells.compute(key(location), (key, cell) -> {
+            Set<T> items = cell != null ? cell : ConcurrentHashMap.newKeySet();
+            items.add(item);
+            return items;
+        });
+    }
+
+    void remove(T item) {
+        Location location = locator.apply(item);
+        if (location == null) {
+            return;
+        }
+        cells.computeIfPresent(key(location), (key, cell) -> {
+            cell.remove(item);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    /**
+     * Returns the items whose cell overlaps the circle of the given radius (in kilometers) around the center
+     */
+    List<T> findNear(Location center, double radius) {
+        if (radius < 0 || cells.isEmpty()) {
+            return Collections.emptyList();
+        }
+        double angle = radius / EARTH_RADIUS;
+        double latDelta = toDegrees(angle) + EPSILON;
+        int minRow = row(center.getLat() - latDelta);
+        int maxRow = row(center.getLat() + latDelta);
+
+        int minColumn;
+        int maxColumn;
+        double lonDelta = longitudeDelta(center.getLat(), angle);
+        if (Double.isNaN(lonDelta) || abs(center.getLon()) + lonDelta >= 180) {
+            // The circle contains a pole or crosses the antimeridian: every longitude may be in range
+            minColumn = Integer.MIN_VALUE;
+            maxColumn = Integer.MAX_VALUE;
+        } else {
+            minColumn = column(center.getLon() - lonDelta);
+            maxColumn = column(center.getLon() + lonDelta);
+        }
+
+        long visitedCells = ((long) maxRow - minRow + 1) * ((long) maxColumn - minColumn + 1);
+        return visitedCells < cells.size()
+                ? collectCells(minRow, maxRow, minColumn, maxColumn)
+                : filterCells(minRow, maxRow, minColumn, maxColumn);
+    }
+
+    /**
+     * Widest longitude difference (in degrees) reachable inside a spherical cap of the given angular radius,
+     * or NaN if the cap contains a pole
+     */
+    private static double longitudeDelta(double lat, double angle) {
+        double ratio = sin(angle) / cos(toRadians(lat));
+        if (angle >= PI / 2 || abs(lat) + toDegrees(angle) >= 90 || ratio >= 1) {
+            return Double.NaN;
+        }
+        return toDegrees(asin(ratio)) + EPSILON;
+    }
+
+    private List<T> collectCells(int minRow, int maxRow, int minColumn, int maxColumn) {
+        List<T> found = new ArrayList<>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                Set<T> cell = cells.get(key(row, column));
+                if (cell != null) {
+                    found.addAll(cell);
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<T> filterCells(int minRow, int maxRow, int minColumn, int maxColumn) {
+        List<T> found = new ArrayList<>();
+        cells.forEach((key, cell) -> {
+            int row = (int) (key >> 32);
+            int column = (int) (long) key;
+            if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn) {
+                found.addAll(cell);
+            }
+        });
+        return found;
+    }
+
+    private long key(Location location) {
+        return key(row(location.getLat()), column(location.getLon()));
+    }
+
+    private int row(double lat) {
+        return (int) floor(lat / cellSize);
+    }
+
+    private int column(double lon) {
+        return (int) floor(lon / cellSize);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
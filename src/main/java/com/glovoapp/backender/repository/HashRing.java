@@ -0,0 +1,44 @@
+package com.glovoapp.backender.repository;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of keys to nodes: every node is placed at many points of a ring of 64-bit hashes, and a key
+ * belongs to the first node found clockwise from its own hash. Adding or removing a node only moves the keys of the
+ * segments of the ring it takes or leaves, spread evenly over the other nodes thanks to the virtual points.
+ */
+final class HashRing {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param virtualNodes points of the ring per node
+     */
+    HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        for (String node : nodes) {
+            for (int point = 0; point < virtualNodes; point++) {
+                ring.put(hash(node + "#" + point), node);
+            }
+        }
+    }
+
+    String nodeOf(String key) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    private static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,91 @@
+package com.glovoapp.backender.repository;
+
+import com.google.common.io.CountingInputStream;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a JSON array one at a time, so loading a file never holds more than one parsed record on top
+ * of where they're stored.
+ * <p>
+ * Locations are either paths on the filesystem or classpath resources prefixed with {@value #CLASSPATH_PREFIX}.
+ */
+@Slf4j
+final class JsonArrayLoader {
+    static final String CLASSPATH_PREFIX = "classpath:";
+    private static final long PROGRESS_INTERVAL = 100_000;
+    private static final Gson GSON = new Gson();
+
+    private JsonArrayLoader() {
+    }
+
+    /**
+     * Passes every record of the array to the consumer, in file order, logging the progress along the way
+     *
+     * @return the number of records loaded
+     */
+    static <T> long load(String location, Class<T> type, Consumer<? super T> consumer) {
+        long size = sizeOf(location);
+        try (CountingInputStream input = new CountingInputStream(open(location));
+             JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)))) {
+            long records = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                consumer.accept(GSON.fromJson(reader, type));
+                if (++records % PROGRESS_INTERVAL == 0) {
+                    log.info("Loaded {} {} records, {}", records, type.getSimpleName(), progress(input.getCount(), size));
+                }
+            }
+            reader.endArray();
+            log.info("Loaded {} {} records from {}", records, type.getSimpleName(), location);
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load " + location, e);
+        }
+    }
+
+    private static InputStream open(String location) throws IOException {
+        if (location.startsWith(CLASSPATH_PREFIX)) {
+            InputStream resource = JsonArrayLoader.class.getResourceAsStream(location.substring(CLASSPATH_PREFIX.length()));
+            if (resource == null) {
+                throw new IllegalArgumentException("Resource not found: " + location);
+            }
+            return resource;
+        }
+        return Files.newInputStream(Paths.get(location));
+    }
+
+    /**
+     * Size in bytes of a file, or -1 for classpath resources
+     */
+    private static long sizeOf(String location) {
+        if (location.startsWith(CLASSPATH_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Files.size(Paths.get(location));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load " + location, e);
+        }
+    }
+
+    private static String progress(long read, long size) {
+        return size > 0 ? String.format("%d%% of %d bytes", read * 100 / size, size) : read + " bytes";
+    }
+}
@@ -0,0 +1,75 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Order;
+import lombok.Getter;
+
+/**
+ * Primitive, struct-of-arrays copy of a few orders, as returned by {@link OrderRepository#findNear}.
+ * <p>
+ * Pickup coordinates are in radians, with the cosine of the latitude precomputed, ready for
+ * {@code DistanceCalculator.calculateDistances}, and the delivery leg of every order, from pickup to delivery, is
+ * computed once when the order is stored. The orders themselves are only needed to build the final response.
+ */
+@Getter
+public class OrderBatch {
+    public static final int FOOD = 1;
+    public static final int VIP = 1 << 1;
+    public static final int NEEDS_BOX = 1 << 2;
+    /**
+     * Number of distinct values of {@link #getFlags()}, for tables indexed by them
+     */
+    public static final int FLAG_COMBINATIONS = 1 << 3;
+
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] cosLats;
+    /**
+     * Distance from pickup to delivery in kilometers, as measured when the order was stored, 0 when not measured
+     */
+    private final double[] deliveryLegs;
+    private final int[] flags;
+    private final Order[] orders;
+    private int size;
+
+    OrderBatch(int capacity) {
+        lats = new double[capacity];
+        lons = new double[capacity];
+        cosLats = new double[capacity];
+        deliveryLegs = new double[capacity];
+        flags = new int[capacity];
+        orders = new Order[capacity];
+    }
+
+    /**
+     * The flags stated by the order itself, without {@link #NEEDS_BOX}, which is derived when it's stored
+     */
+    public static int flagsOf(Order order) {
+        return (Boolean.TRUE.equals(order.getFood()) ? FOOD : 0)
+                | (Boolean.TRUE.equals(order.getVip()) ? VIP : 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean has(int index, int flag) {
+        return (flags[index] & flag) != 0;
+    }
+
+    public Order getOrder(int index) {
+        return orders[index];
+    }
+
+    void add(double lat, double lon, double cosLat, double deliveryLeg, int flags, Order order) {
+        this.lats[size] = lat;
+        this.lons[size] = lon;
+        this.cosLats[size] = cosLat;
+        this.deliveryLegs[size] = deliveryLeg;
+        this.flags[size] = flags;
+        this.orders[size++] = order;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -1,33 +1,262 @@
 package com.glovoapp.backender.repository;
 
+import com.glovoapp.backender.model.Location;
 import com.glovoapp.backender.model.Order;
-import com.google.common.collect.ImmutableList;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.lang.reflect.Type;
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
 @Repository
 public class OrderRepository {
-    private static final String ORDERS_FILE = "/orders.json";
-    private static final List<Order> orders;
+    private static final String ORDERS_FILE = JsonArrayLoader.CLASSPATH_PREFIX + "/orders.json";
+    private static final double SHARD_SIZE = 0.5; // degrees, roughly 50km of latitude
 
-    static {
-        try (Reader reader = new InputStreamReader(OrderRepository.class.getResourceAsStream(ORDERS_FILE))) {
-            Type type = new TypeToken<List<Order>>() {
-            }.getType();
-            orders = new Gson().fromJson(reader, type);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private final OrderShards shards;
+    private final Path snapshotFile;
+    private final EntityStore<Order> orders = new EntityStore<>(Order::getId, this::reindex);
+    private final List<BiConsumer<Order, Order>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Predicate<Order> boxClassifier = order -> false;
+    private volatile ToDoubleFunction<Order> deliveryLegs = order -> 0;
+    // Opened once the orders are recovered, so they aren't logged again
+    private volatile WriteAheadLog<Order> log;
+
+    public OrderRepository() {
+        this(false, SHARD_SIZE, ORDERS_FILE, "", "", 0, ClusterTopology.standalone());
+    }
+
+    /**
+     * @param offHeap         whether the columns used for matching are stored outside the java heap
+     * @param shardSize       side, in degrees, of the regions the orders are partitioned into for matching
+     * @param ordersFile      JSON array of the initial orders, streamed into the repository
+     * @param snapshotFile    binary snapshot written on shutdown and loaded instead of the orders file when it exists,
+     *                        none if empty
+     * @param logFile         log of the changes since the snapshot, replayed on top of it, none if empty
+     * @param compactionBytes size of the log, in bytes, over which it's compacted into a new snapshot
+     * @param cluster         only the orders of the regions owned by this node are loaded from the orders file, the
+     *                        snapshot and the log of a node only have its own
+     */
+    @Autowired
+    public OrderRepository(@Value("${backender.orders_off_heap}") boolean offHeap,
+                           @Value("${backender.orders_shard_size}") double shardSize,
+                           @Value("${backender.orders_file}") String ordersFile,
+                           @Value("${backender.orders_snapshot}") String snapshotFile,
+                           @Value("${backender.orders_log}") String logFile,
+                           @Value("${backender.log_compaction_bytes}") long compactionBytes,
+                           ClusterTopology cluster) {
+        this(Collections.emptyList(), offHeap, shardSize, snapshotFile.isEmpty() ? null : Paths.get(snapshotFile));
+        if (!logFile.isEmpty() && this.snapshotFile == null) {
+            throw new IllegalArgumentException("The orders log needs an orders snapshot to be compacted into");
+        }
+        if (this.snapshotFile != null && Files.exists(this.snapshotFile)) {
+            Snapshot.readOrders(this.snapshotFile, this::save);
+        } else {
+            JsonArrayLoader.load(ordersFile, Order.class, order -> {
+                if (cluster.ownsOrder(order)) {
+                    save(order);
+                }
+            });
         }
+        if (!logFile.isEmpty()) {
+            Path path = Paths.get(logFile);
+            WriteAheadLog.replay(path, Order.class, this::save, this::delete);
+            log = new WriteAheadLog<>(path, this::writeSnapshot, compactionBytes);
+        }
+    }
+
+    public OrderRepository(Collection<Order> initialOrders) {
+        this(initialOrders, false);
+    }
+
+    public OrderRepository(Collection<Order> initialOrders, boolean offHeap) {
+        this(initialOrders, offHeap, SHARD_SIZE, null);
+    }
+
+    public OrderRepository(Collection<Order> initialOrders, boolean offHeap, double shardSize) {
+        this(initialOrders, offHeap, shardSize, null);
+    }
+
+    private OrderRepository(Collection<Order> initialOrders, boolean offHeap, double shardSize, Path snapshotFile) {
+        this.shards = new OrderShards(shardSize, offHeap);
+        this.snapshotFile = snapshotFile;
+        initialOrders.forEach(this::save);
+    }
+
+    public Optional<Order> findById(String orderId) {
+        return orders.find(orderId);
+    }
+
+    /**
+     * Returns a read-only, live view of all the orders, in insertion order
+     */
+    public Collection<Order> findAll() {
+        return orders.values();
+    }
+
+    /**
+     * Returns up to {@code limit} orders in insertion order, starting after the given position of a previous slice, or
+     * 0 for the first one
+     */
+    public Slice<Order> findAll(long after, int limit) {
+        return orders.slice(after, limit);
+    }
+
+    /**
+     * Returns the orders that may be picked up within the given distance (in kilometers) of the location,
+     * in columnar form, one batch per region they're partitioned into. The result can include some orders a bit
+     * further away, the exact distance must be checked by the caller.
+     */
+    public List<OrderBatch> findNear(Location location, double distance) {
+        return shards.findNear(location, distance);
     }
 
-    public List<Order> findAll() {
-        return ImmutableList.copyOf(orders);
+    /**
+     * Stores a new order or replaces the one with the same id
+     */
+    public void save(Order order) {
+        checkWritable();
+        orders.put(order);
+        sync();
+    }
+
+    public Optional<Order> delete(String orderId) {
+        checkWritable();
+        Optional<Order> deleted = orders.remove(orderId);
+        sync();
+        return deleted;
+    }
+
+    /**
+     * Sets how the box requirement used for matching is derived from the orders stored from now on, and classifies
+     * the ones already stored with it. It's only kept for matching, as it's not part of the order data.
+     */
+    public void setBoxClassifier(Predicate<Order> boxClassifier) {
+        this.boxClassifier = boxClassifier;
+        findAll().forEach(order -> updateNeedsBox(order.getId(), boxClassifier.test(order)));
+    }
+
+    /**
+     * Sets how the delivery leg used for matching, from pickup to delivery in kilometers, is measured for the orders
+     * stored from now on, and measures the ones already stored with it
+     */
+    public void setDeliveryLegs(ToDoubleFunction<Order> deliveryLegs) {
+        this.deliveryLegs = deliveryLegs;
+        findAll().forEach(order -> updateDeliveryLeg(order.getId(), deliveryLegs.applyAsDouble(order)));
+    }
+
+    /**
+     * Refreshes the delivery leg used for matching, after the order has been measured again
+     */
+    public void updateDeliveryLeg(String orderId, double deliveryLeg) {
+        if (shards.setDeliveryLeg(orderId, deliveryLeg)) {
+            findById(orderId).ifPresent(order -> listeners.forEach(listener -> listener.accept(order, order)));
+        }
+    }
+
+    /**
+     * Whether the order must be carried in a box, as classified when it was stored
+     */
+    public boolean needsBox(String orderId) {
+        return shards.hasFlag(orderId, OrderBatch.NEEDS_BOX);
+    }
+
+    /**
+     * Refreshes the box requirement used for matching, after the order has been reclassified
+     */
+    public void updateNeedsBox(String orderId, boolean needsBox) {
+        if (shards.setFlag(orderId, OrderBatch.NEEDS_BOX, needsBox)) {
+            findById(orderId).ifPresent(order -> listeners.forEach(listener -> listener.accept(order, order)));
+        }
+    }
+
+    /**
+     * Writes the binary snapshot of the orders, if configured, so the next start doesn't parse the orders file
+     */
+    public void writeSnapshot() {
+        if (snapshotFile != null) {
+            Snapshot.writeOrders(snapshotFile, findAll());
+        }
+    }
+
+    /**
+     * Flushes the log into a final snapshot, or just writes the snapshot without log
+     */
+    @PreDestroy
+    public void close() {
+        WriteAheadLog<Order> log = this.log;
+        if (log != null) {
+            this.log = null;
+            log.close();
+        } else {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Registers a listener called with the previous and the current version of every order that changes (null when
+     * absent), once the change is visible to {@link #findNear}. Orders reclassified or measured again are passed as both
+     * versions.
+     */
+    public void addChangeListener(BiConsumer<Order, Order> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Logs the change before indexing it, so a change that can't be logged is never visible, and one that fails to
+     * reach the disk later is undone
+     */
+    private void reindex(Order previous, Order current) {
+        WriteAheadLog<Order> log = this.log;
+        if (log != null) {
+            String id = current != null ? current.getId() : previous.getId();
+            Runnable undo = () -> orders.restore(id, current, previous, this::indexed);
+            if (current != null) {
+                log.put(current, undo);
+            } else {
+                log.delete(id, undo);
+            }
+        }
+        indexed(previous, current);
+    }
+
+    private void indexed(Order previous, Order current) {
+        if (current != null) {
+            shards.put(current, boxClassifier.test(current), deliveryLegs.applyAsDouble(current));
+        } else {
+            shards.remove(previous.getId());
+        }
+        listeners.forEach(listener -> listener.accept(previous, current));
+    }
+
+    /**
+     * Rejects a change before it's applied when it couldn't be logged
+     */
+    private void checkWritable() {
+        WriteAheadLog<Order> log = this.log;
+        if (log != null) {
+            log.checkWritable();
+        }
+    }
+
+    /**
+     * Waits until the changes made so far are logged, as they're logged while the changed order is locked
+     */
+    private void sync() {
+        WriteAheadLog<Order> log = this.log;
+        if (log != null) {
+            log.sync();
+        }
     }
 }
@@ -0,0 +1,119 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The orders used for matching, partitioned by pickup into square regions of the map, each one with its own
+ * {@link OrderTable}.
+ * <p>
+ * Writes to different regions don't contend on the same lock, and queries only copy the orders of the regions
+ * overlapping their circle, one batch per region, so they can be ranked in parallel. An order whose pickup moves to
+ * another region moves to its table: queries racing the move may miss it, but never see it twice.
+ */
+class OrderShards {
+    private final double shardSize;
+    private final boolean offHeap;
+    private final ConcurrentMap<Long, Shard> shards = new ConcurrentHashMap<>();
+    private final GridIndex<Shard> shardIndex;
+    private final ConcurrentMap<String, Shard> shardOfOrder = new ConcurrentHashMap<>();
+    // Orders without pickup can't be near anything, but their flags are still kept
+    private final Shard unlocated;
+
+    /**
+     * @param shardSize side of every region, in degrees
+     */
+    OrderShards(double shardSize, boolean offHeap) {
+        if (!(shardSize > 0)) {
+            throw new IllegalArgumentException("The shard size must be positive: " + shardSize);
+        }
+        this.shardSize = shardSize;
+        this.offHeap = offHeap;
+        this.shardIndex = new GridIndex<>(shardSize, shard -> shard.center);
+        this.unlocated = new Shard(null, offHeap);
+    }
+
+    /**
+     * Stores the order in the table of its region, removing it from the previous one if it moved. Writes of the same
+     * order must be serialized by the caller.
+     */
+    void put(Order order, boolean needsBox, double deliveryLeg) {
+        Shard shard = shardOf(order.getPickup());
+        Shard previous = shardOfOrder.put(order.getId(), shard);
+        if (previous != null && previous != shard) {
+            previous.table.remove(order.getId());
+        }
+        shard.table.put(order, needsBox, deliveryLeg);
+    }
+
+    void remove(String orderId) {
+        Shard shard = shardOfOrder.remove(orderId);
+        if (shard != null) {
+            shard.table.remove(orderId);
+        }
+    }
+
+    boolean hasFlag(String orderId, int flag) {
+        Shard shard = shardOfOrder.get(orderId);
+        return shard != null && shard.table.hasFlag(orderId, flag);
+    }
+
+    /**
+     * Returns whether the flag of the order changed
+     */
+    boolean setFlag(String orderId, int flag, boolean value) {
+        Shard shard = shardOfOrder.get(orderId);
+        return shard != null && shard.table.setFlag(orderId, flag, value);
+    }
+
+    /**
+     * Returns whether the delivery leg of the order changed
+     */
+    boolean setDeliveryLeg(String orderId, double deliveryLeg) {
+        Shard shard = shardOfOrder.get(orderId);
+        return shard != null && shard.table.setDeliveryLeg(orderId, deliveryLeg);
+    }
+
+    /**
+     * Copies the orders that may be picked up within the given distance (in kilometers) of the location, one batch
+     * per region, skipping the ones without any
+     */
+    List<OrderBatch> findNear(Location location, double distance) {
+        List<OrderBatch> batches = new ArrayList<>();
+        for (Shard shard : shardIndex.findNear(location, distance)) {
+            OrderBatch batch = shard.table.findNear(location, distance);
+            if (batch.size() > 0) {
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    private Shard shardOf(Location pickup) {
+        if (pickup == null) {
+            return unlocated;
+        }
+        int row = (int) Math.floor(pickup.getLat() / shardSize);
+        int column = (int) Math.floor(pickup.getLon() / shardSize);
+        return shards.computeIfAbsent(((long) row << 32) | (column & 0xffffffffL), key -> {
+            Shard shard = new Shard(new Location((row + 0.5) * shardSize, (column + 0.5) * shardSize), offHeap);
+            shardIndex.add(shard);
+            return shard;
+        });
+    }
+
+    private static final class Shard {
+        private final Location center;
+        private final OrderTable table;
+
+        Shard(Location center, boolean offHeap) {
+            this.center = center;
+            this.table = new OrderTable(offHeap);
+        }
+    }
+}
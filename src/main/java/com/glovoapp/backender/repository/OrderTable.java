@@ -0,0 +1,265 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Columnar layout of the orders used for matching: one row (slot) per order, with parallel columns of pickup
+ * coordinates, delivery legs and bitsets of flags, so couriers can be matched scanning primitives only.
+ * <p>
+ * Coordinates and flags can live off-heap, in direct buffers, to keep big order books out of the garbage collector's
+ * way. Slots of cancelled orders are reused. Writes are serialized, reads are lock-free unless they race a write.
+ */
+class OrderTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double INDEX_CELL_SIZE = 0.05; // degrees, roughly 5km of latitude
+
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final GridIndex<Integer> pickupIndex = new GridIndex<>(INDEX_CELL_SIZE, this::pickupOf);
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int usedSlots;
+    private volatile Columns columns;
+
+    OrderTable(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.columns = new Columns(INITIAL_CAPACITY, offHeap);
+    }
+
+    /**
+     * Stores the order in a new row, or in the row of the order with the same id
+     *
+     * @param deliveryLeg distance from the pickup to the delivery, in kilometers
+     */
+    void put(Order order, boolean needsBox, double deliveryLeg) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.get(order.getId());
+            if (slot != null) {
+                pickupIndex.remove(slot);
+            } else {
+                slot = allocate();
+                slots.put(order.getId(), slot);
+            }
+            columns.write(slot, order, needsBox, deliveryLeg);
+            pickupIndex.add(slot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String orderId) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.remove(orderId);
+            if (slot != null) {
+                pickupIndex.remove(slot);
+                columns.clear(slot);
+                release(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns whether the order is stored with the flag
+     */
+    boolean hasFlag(String orderId, int flag) {
+        long stamp = lock.readLock();
+        try {
+            Integer slot = slots.get(orderId);
+            return slot != null && columns.hasFlag(slot, flag);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns whether the flag of the order changed
+     */
+    boolean setFlag(String orderId, int flag, boolean value) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.get(orderId);
+            return slot != null && columns.setFlag(slot, flag, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns whether the delivery leg of the order changed
+     */
+    boolean setDeliveryLeg(String orderId, double deliveryLeg) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.get(orderId);
+            return slot != null && columns.setDeliveryLeg(slot, deliveryLeg);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the rows of the orders that may be picked up within the given distance (in kilometers) of the location
+     */
+    OrderBatch findNear(Location location, double distance) {
+        long stamp = lock.tryOptimisticRead();
+        OrderBatch batch = stamp != 0 ? copyNear(location, distance) : null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                batch = copyNear(location, distance);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return batch;
+    }
+
+    private OrderBatch copyNear(Location location, double distance) {
+        List<Integer> candidates = pickupIndex.findNear(location, distance);
+        Columns current = columns;
+        OrderBatch batch = new OrderBatch(candidates.size());
+        for (int slot : candidates) {
+            // A racing write may have moved things around, the caller will validate and retry
+            if (slot < current.capacity && current.orders[slot] != null) {
+                current.read(slot, batch);
+            }
+        }
+        return batch;
+    }
+
+    private Location pickupOf(int slot) {
+        Order order = columns.orders[slot];
+        return order == null ? null : order.getPickup();
+    }
+
+    private int allocate() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (usedSlots == columns.capacity) {
+            columns = columns.grow(columns.capacity * 2, offHeap);
+        }
+        return usedSlots++;
+    }
+
+    private void release(int slot) {
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private static final class Columns {
+        private final int capacity;
+        private final DoubleBuffer lats;
+        private final DoubleBuffer lons;
+        private final DoubleBuffer cosLats;
+        private final DoubleBuffer deliveryLegs;
+        private final LongBuffer food;
+        private final LongBuffer vip;
+        private final LongBuffer needsBox;
+        private final Order[] orders;
+
+        Columns(int capacity, boolean offHeap) {
+            this.capacity = capacity;
+            this.lats = allocate(capacity * Double.BYTES, offHeap).asDoubleBuffer();
+            this.lons = allocate(capacity * Double.BYTES, offHeap).asDoubleBuffer();
+            this.cosLats = allocate(capacity * Double.BYTES, offHeap).asDoubleBuffer();
+            this.deliveryLegs = allocate(capacity * Double.BYTES, offHeap).asDoubleBuffer();
+            this.food = allocate(capacity / Byte.SIZE, offHeap).asLongBuffer();
+            this.vip = allocate(capacity / Byte.SIZE, offHeap).asLongBuffer();
+            this.needsBox = allocate(capacity / Byte.SIZE, offHeap).asLongBuffer();
+            this.orders = new Order[capacity];
+        }
+
+        private static ByteBuffer allocate(int bytes, boolean offHeap) {
+            return offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        }
+
+        Columns grow(int newCapacity, boolean offHeap) {
+            Columns grown = new Columns(newCapacity, offHeap);
+            // Bulk copies go through duplicates so no buffer position ever moves away from 0
+            grown.lats.duplicate().put(lats.duplicate());
+            grown.lons.duplicate().put(lons.duplicate());
+            grown.cosLats.duplicate().put(cosLats.duplicate());
+            grown.deliveryLegs.duplicate().put(deliveryLegs.duplicate());
+            grown.food.duplicate().put(food.duplicate());
+            grown.vip.duplicate().put(vip.duplicate());
+            grown.needsBox.duplicate().put(needsBox.duplicate());
+            System.arraycopy(orders, 0, grown.orders, 0, capacity);
+            return grown;
+        }
+
+        void write(int slot, Order order, boolean needsBox, double deliveryLeg) {
+            Location pickup = order.getPickup();
+            double lat = pickup == null ? Double.NaN : Math.toRadians(pickup.getLat());
+            lats.put(slot, lat);
+            lons.put(slot, pickup == null ? Double.NaN : Math.toRadians(pickup.getLon()));
+            cosLats.put(slot, Math.cos(lat));
+            deliveryLegs.put(slot, deliveryLeg);
+            int flags = OrderBatch.flagsOf(order);
+            setBit(food, slot, (flags & OrderBatch.FOOD) != 0);
+            setBit(vip, slot, (flags & OrderBatch.VIP) != 0);
+            setBit(this.needsBox, slot, needsBox);
+            orders[slot] = order;
+        }
+
+        void clear(int slot) {
+            setBit(food, slot, false);
+            setBit(vip, slot, false);
+            setBit(needsBox, slot, false);
+            orders[slot] = null;
+        }
+
+        boolean hasFlag(int slot, int flag) {
+            return getBit(bitsOf(flag), slot);
+        }
+
+        boolean setFlag(int slot, int flag, boolean value) {
+            return setBit(bitsOf(flag), slot, value);
+        }
+
+        boolean setDeliveryLeg(int slot, double deliveryLeg) {
+            double previous = deliveryLegs.get(slot);
+            deliveryLegs.put(slot, deliveryLeg);
+            return Double.compare(previous, deliveryLeg) != 0;
+        }
+
+        private LongBuffer bitsOf(int flag) {
+            return flag == OrderBatch.FOOD ? food : flag == OrderBatch.VIP ? vip : needsBox;
+        }
+
+        void read(int slot, OrderBatch batch) {
+            int flags = (getBit(food, slot) ? OrderBatch.FOOD : 0)
+                    | (getBit(vip, slot) ? OrderBatch.VIP : 0)
+                    | (getBit(needsBox, slot) ? OrderBatch.NEEDS_BOX : 0);
+            batch.add(lats.get(slot), lons.get(slot), cosLats.get(slot), deliveryLegs.get(slot), flags, orders[slot]);
+        }
+
+        private static boolean getBit(LongBuffer bits, int index) {
+            return (bits.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        private static boolean setBit(LongBuffer bits, int index, boolean value) {
+            long word = bits.get(index >>> 6);
+            long updated = value ? word | (1L << index) : word & ~(1L << index);
+            bits.put(index >>> 6, updated);
+            return updated != word;
+        }
+    }
+}
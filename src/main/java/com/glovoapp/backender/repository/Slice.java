@@ -0,0 +1,17 @@
+package com.glovoapp.backender.repository;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A run of entities of a store, in insertion order
+ */
+@Value
+public class Slice<T> {
+    private final List<T> entities;
+    /**
+     * Position to continue after, or -1 if there are no more entities
+     */
+    private final long next;
+}
@@ -0,0 +1,273 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary snapshot of the orders or the couriers, to restart without parsing JSON.
+ * <p>
+ * The file starts with a header (magic, format version, kind of records and record count) followed by one column per
+ * field: strings are dictionary encoded, booleans and the presence of nullable fields are packed into a byte of flags
+ * per record, and coordinates are raw doubles, NaN when null. Snapshots are read from a memory-mapped file, so
+ * loading only decodes each distinct string once and copies coordinates straight out of the page cache.
+ */
+final class Snapshot {
+    private static final int MAGIC = 0x424b534e; // "BKSN"
+    private static final int VERSION = 1;
+    private static final int ORDERS = 1;
+    private static final int COURIERS = 2;
+
+    private static final int HAS_FOOD = 1;
+    private static final int FOOD = 1 << 1;
+    private static final int HAS_VIP = 1 << 2;
+    private static final int VIP = 1 << 3;
+    private static final int HAS_BOX = HAS_FOOD;
+    private static final int BOX = FOOD;
+    private static final int HAS_PICKUP = 1 << 4;
+    private static final int HAS_DELIVERY = 1 << 5;
+    private static final int HAS_LOCATION = HAS_PICKUP;
+
+    private Snapshot() {
+    }
+
+    static void writeOrders(Path file, Collection<Order> orders) {
+        List<Order> rows = ImmutableList.copyOf(orders);
+        write(file, ORDERS, rows.size(), out -> {
+            writeStrings(out, rows, Order::getId);
+            writeStrings(out, rows, Order::getDescription);
+            writeFlags(out, rows, order -> flag(order.getFood(), HAS_FOOD, FOOD)
+                    | flag(order.getVip(), HAS_VIP, VIP)
+                    | (order.getPickup() != null ? HAS_PICKUP : 0)
+                    | (order.getDelivery() != null ? HAS_DELIVERY : 0));
+            writeLocations(out, rows, Order::getPickup);
+            writeLocations(out, rows, Order::getDelivery);
+        });
+    }
+
+    static void writeCouriers(Path file, Collection<Courier> couriers) {
+        List<Courier> rows = ImmutableList.copyOf(couriers);
+        write(file, COURIERS, rows.size(), out -> {
+            writeStrings(out, rows, Courier::getId);
+            writeStrings(out, rows, Courier::getName);
+            writeStrings(out, rows, courier -> courier.getVehicle() == null ? null : courier.getVehicle().name());
+            writeFlags(out, rows, courier -> flag(courier.getBox(), HAS_BOX, BOX)
+                    | (courier.getLocation() != null ? HAS_LOCATION : 0));
+            writeLocations(out, rows, Courier::getLocation);
+        });
+    }
+
+    /**
+     * Passes every order of the snapshot to the consumer, in the order they were written
+     */
+    static void readOrders(Path file, Consumer<Order> consumer) {
+        read(file, ORDERS, (buffer, count) -> {
+            String[] ids = readStrings(buffer, count);
+            String[] descriptions = readStrings(buffer, count);
+            byte[] flags = readFlags(buffer, count);
+            Location[] pickups = readLocations(buffer, count, flags, HAS_PICKUP);
+            Location[] deliveries = readLocations(buffer, count, flags, HAS_DELIVERY);
+            for (int row = 0; row < count; row++) {
+                consumer.accept(Order.builder()
+                        .id(ids[row])
+                        .description(descriptions[row])
+                        .food(booleanOf(flags[row], HAS_FOOD, FOOD))
+                        .vip(booleanOf(flags[row], HAS_VIP, VIP))
+                        .pickup(pickups[row])
+                        .delivery(deliveries[row])
+                        .build());
+            }
+        });
+    }
+
+    /**
+     * Passes every courier of the snapshot to the consumer, in the order they were written
+     */
+    static void readCouriers(Path file, Consumer<Courier> consumer) {
+        read(file, COURIERS, (buffer, count) -> {
+            String[] ids = readStrings(buffer, count);
+            String[] names = readStrings(buffer, count);
+            String[] vehicles = readStrings(buffer, count);
+            byte[] flags = readFlags(buffer, count);
+            Location[] locations = readLocations(buffer, count, flags, HAS_LOCATION);
+            for (int row = 0; row < count; row++) {
+                consumer.accept(Courier.builder()
+                        .id(ids[row])
+                        .name(names[row])
+                        .vehicle(vehicles[row] == null ? null : Vehicle.valueOf(vehicles[row]))
+                        .box(booleanOf(flags[row], HAS_BOX, BOX))
+                        .location(locations[row])
+                        .build());
+            }
+        });
+    }
+
+    /**
+     * Writes to a temporary file replacing the snapshot once complete and forced to disk, so a crash never leaves a
+     * partial snapshot
+     */
+    private static void write(Path file, int kind, int count, ColumnsWriter columns) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(kind);
+                out.writeInt(count);
+                columns.write(out);
+                out.flush();
+                channel.force(true);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            DurableFiles.replace(temporary, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    private static void read(Path file, int kind, ColumnsReader columns) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported snapshot version " + version + ": " + file);
+            }
+            if (buffer.getInt() != kind) {
+                throw new IllegalStateException("Unexpected kind of records in snapshot " + file);
+            }
+            columns.read(buffer, buffer.getInt());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalStateException("Truncated or corrupt snapshot " + file, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Distinct values, then the index of the value of every record, -1 for null
+     */
+    private static <T> void writeStrings(DataOutputStream out, List<T> rows, Function<T, String> column) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] codes = new int[rows.size()];
+        List<String> values = new ArrayList<>();
+        for (int row = 0; row < codes.length; row++) {
+            String value = column.apply(rows.get(row));
+            codes[row] = value == null ? -1 : dictionary.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (int code : codes) {
+            out.writeInt(code);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        String[] dictionary = new String[buffer.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        String[] values = new String[count];
+        for (int row = 0; row < count; row++) {
+            int code = buffer.getInt();
+            values[row] = code < 0 ? null : dictionary[code];
+        }
+        return values;
+    }
+
+    private static <T> void writeFlags(DataOutputStream out, List<T> rows, Function<T, Integer> flags) throws IOException {
+        for (T row : rows) {
+            out.writeByte(flags.apply(row));
+        }
+    }
+
+    private static byte[] readFlags(ByteBuffer buffer, int count) {
+        byte[] flags = new byte[count];
+        buffer.get(flags);
+        return flags;
+    }
+
+    /**
+     * Latitudes, then longitudes
+     */
+    private static <T> void writeLocations(DataOutputStream out, List<T> rows, Function<T, Location> column) throws IOException {
+        for (T row : rows) {
+            Location location = column.apply(row);
+            out.writeDouble(location == null || location.getLat() == null ? Double.NaN : location.getLat());
+        }
+        for (T row : rows) {
+            Location location = column.apply(row);
+            out.writeDouble(location == null || location.getLon() == null ? Double.NaN : location.getLon());
+        }
+    }
+
+    private static Location[] readLocations(ByteBuffer buffer, int count, byte[] flags, int presence) {
+        Location[] locations = new Location[count];
+        int lons = buffer.position() + count * Double.BYTES;
+        for (int row = 0; row < count; row++) {
+            double lat = buffer.getDouble();
+            double lon = buffer.getDouble(lons + row * Double.BYTES);
+            if ((flags[row] & presence) != 0) {
+                locations[row] = new Location(Double.isNaN(lat) ? null : lat, Double.isNaN(lon) ? null : lon);
+            }
+        }
+        buffer.position(lons + count * Double.BYTES);
+        return locations;
+    }
+
+    private static int flag(Boolean value, int presence, int flag) {
+        return value == null ? 0 : presence | (value ? flag : 0);
+    }
+
+    private static Boolean booleanOf(byte flags, int presence, int flag) {
+        return (flags & presence) == 0 ? null : (flags & flag) != 0;
+    }
+
+    @FunctionalInterface
+    private interface ColumnsWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ColumnsReader {
+        void read(ByteBuffer buffer, int count);
+    }
+}
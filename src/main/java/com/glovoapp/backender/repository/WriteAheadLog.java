@@ -0,0 +1,370 @@
+package com.glovoapp.backender.repository;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the entities stored and deleted since the last snapshot, replayed on top of it when starting.
+ * <p>
+ * Every entry is a frame of payload length, CRC32, kind of mutation and payload: the entity as JSON or the deleted
+ * id. Entries are queued by the writers and written by a single thread in batches, forced to disk once per batch, so
+ * concurrent writers share the cost of {@link FileChannel#force} (group commit). Once the log grows past the
+ * compaction size, a snapshot is written in the background and the entries it covers are dropped, once the snapshot
+ * is on disk.
+ * <p>
+ * Once an entry can't be written, the log is failed for good: the repository must {@linkplain #checkWritable check}
+ * before every mutation, and every entry not on disk yet is undone in memory, newest first, before its writer's
+ * {@link #sync} fails, so no change that isn't logged stays visible.
+ * <p>
+ * Entries must be appended while the mutation is applied, before it's visible to readers, and in the same order as
+ * mutations of the same entity: then every entry older than a snapshot is covered by it, and replaying entries again
+ * is harmless.
+ */
+@Slf4j
+final class WriteAheadLog<T> implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + 1;
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final Runnable snapshot;
+    private final long compactionBytes;
+    private final Object queueLock = new Object();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor;
+    private final Thread writer;
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private List<Runnable> pendingUndos = new ArrayList<>();
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean undone;
+    private boolean closed;
+    private FileChannel channel;
+
+    /**
+     * Opens the log for appending, after it has been {@linkplain #replay replayed}
+     *
+     * @param snapshot        writes a snapshot of the repository and forces it to disk, throwing if it can't
+     * @param compactionBytes size of the log, in bytes, over which it's compacted
+     */
+    WriteAheadLog(Path file, Runnable snapshot, long compactionBytes) {
+        this.file = file;
+        this.snapshot = snapshot;
+        this.compactionBytes = compactionBytes;
+        this.channel = open(file);
+        this.compactor = Executors.newSingleThreadExecutor(task -> daemon(task, "log-compactor-" + file.getFileName()));
+        this.writer = daemon(this::writeBatches, "log-writer-" + file.getFileName());
+        this.writer.start();
+    }
+
+    /**
+     * Passes the entries of the log to the consumers, in the order they were appended. A torn or corrupt tail, left
+     * by a crash while writing, ends the log and is truncated.
+     */
+    static <T> void replay(Path file, Class<T> type, Consumer<T> put, Consumer<String> delete) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long entries = 0;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                byte kind = buffer.get();
+                if (length < 0 || length > buffer.remaining()) {
+                    buffer.position(start);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if (checksum != checksum(kind, payload) || (kind != PUT && kind != DELETE)) {
+                    buffer.position(start);
+                    break;
+                }
+                String json = new String(payload, StandardCharsets.UTF_8);
+                if (kind == PUT) {
+                    put.accept(GSON.fromJson(json, type));
+                } else {
+                    delete.accept(json);
+                }
+                entries++;
+            }
+            if (buffer.hasRemaining()) {
+                log.warn("Truncating {} bytes of torn entries at the end of {}", buffer.remaining(), file);
+                channel.truncate(buffer.position());
+                channel.force(true);
+            }
+            log.info("Replayed {} entries of {}", entries, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replay " + file, e);
+        }
+    }
+
+    /**
+     * @param undo reverts the mutation in memory, if the entry doesn't make it to disk
+     */
+    void put(T entity, Runnable undo) {
+        append(PUT, GSON.toJson(entity), undo);
+    }
+
+    /**
+     * @param undo reverts the mutation in memory, if the entry doesn't make it to disk
+     */
+    void delete(String id, Runnable undo) {
+        append(DELETE, id, undo);
+    }
+
+    /**
+     * Fails if entries can no longer be appended, because the log is closed or failed to write
+     */
+    void checkWritable() {
+        synchronized (queueLock) {
+            checkWritableLocked();
+        }
+    }
+
+    /**
+     * Waits until every entry appended so far, by any thread, is on disk, or failing once they have been undone
+     */
+    void sync() {
+        synchronized (queueLock) {
+            long target = appended;
+            while (durable < target && !undone) {
+                try {
+                    queueLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while syncing " + file, e);
+                }
+            }
+            if (durable < target) {
+                throw new UncheckedIOException("Unable to write " + file, failure);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot and drops the entries it covers
+     */
+    void compact() {
+        long covered;
+        fileLock.lock();
+        try {
+            covered = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact " + file, e);
+        } finally {
+            fileLock.unlock();
+        }
+
+        // The covered entries are only dropped once the snapshot is durable, otherwise a crash loses them both
+        try {
+            snapshot.run();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Snapshot failed, " + file + " kept as it is", e);
+        }
+
+        fileLock.lock();
+        try {
+            Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                long position = covered;
+                while (position < channel.size()) {
+                    position += channel.transferTo(position, channel.size() - position, compacted);
+                }
+                compacted.force(true);
+            }
+            channel.close();
+            DurableFiles.replace(temporary, file);
+            channel = open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact " + file, e);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the pending entries, then a snapshot covering the whole log, which is left empty
+     */
+    @Override
+    public void close() {
+        synchronized (queueLock) {
+            closed = true;
+            queueLock.notifyAll();
+        }
+        try {
+            writer.join();
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        compact();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close " + file, e);
+        }
+    }
+
+    private void append(byte kind, String value, Runnable undo) {
+        byte[] payload = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt(checksum(kind, payload)).put(kind).put(payload).flip();
+        synchronized (queueLock) {
+            checkWritableLocked();
+            pending.add(frame);
+            pendingUndos.add(undo);
+            appended++;
+            queueLock.notifyAll();
+        }
+    }
+
+    private void checkWritableLocked() {
+        if (failure != null) {
+            throw new UncheckedIOException("Log failed, no longer writable: " + file, failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Log closed: " + file);
+        }
+    }
+
+    private void writeBatches() {
+        while (true) {
+            List<ByteBuffer> batch;
+            List<Runnable> batchUndos;
+            long last;
+            synchronized (queueLock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                batchUndos = pendingUndos;
+                last = appended;
+                pending = new ArrayList<>();
+                pendingUndos = new ArrayList<>();
+            }
+            long size;
+            fileLock.lock();
+            try {
+                ByteBuffer[] frames = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer frame : frames) {
+                    remaining += frame.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(frames);
+                }
+                channel.force(false);
+                size = channel.size();
+            } catch (IOException e) {
+                fail(e, batchUndos);
+                return;
+            } finally {
+                fileLock.unlock();
+            }
+            synchronized (queueLock) {
+                durable = last;
+                queueLock.notifyAll();
+            }
+            if (size > compactionBytes && compacting.compareAndSet(false, true)) {
+                compactor.execute(this::compactInBackground);
+            }
+        }
+    }
+
+    /**
+     * Rejects new entries, then undoes the ones that won't make it to disk, newest first, so every entity is back to
+     * its last logged version, and only then fails the writers waiting for them
+     */
+    private void fail(IOException e, List<Runnable> batchUndos) {
+        List<Runnable> undos = new ArrayList<>(batchUndos);
+        synchronized (queueLock) {
+            failure = e;
+            undos.addAll(pendingUndos);
+            pending = new ArrayList<>();
+            pendingUndos = new ArrayList<>();
+        }
+        log.error("Unable to write {}, undoing {} changes", file, undos.size(), e);
+        Collections.reverse(undos);
+        for (Runnable undo : undos) {
+            try {
+                undo.run();
+            } catch (RuntimeException undoFailure) {
+                log.error("Unable to undo a change not written to {}", file, undoFailure);
+            }
+        }
+        synchronized (queueLock) {
+            undone = true;
+            queueLock.notifyAll();
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Unable to compact {}", file, e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private static FileChannel open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            return channel;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open " + file, e);
+        }
+    }
+
+    private static int checksum(byte kind, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(kind);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,117 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.service.MinCostMatching.Edge;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns open orders to couriers every tick, aiming for the most couriers busy with the shortest pickups overall,
+ * instead of showing every order to every courier that can see it.
+ * <p>
+ * Couriers only compete for the best orders they can see, as ranked for them, which keeps the candidate graph
+ * sparse. Its connected components are independent regions, solved in parallel with a {@link MinCostMatching}, and
+ * the regions that didn't change since the previous tick keep their previous assignments without being solved again.
+ */
+@Service
+public class AssignmentEngine {
+    private final CourierRepository courierRepository;
+    private final OrderService orderService;
+    private final int candidatesPerCourier;
+    private final double priorityCost;
+    private volatile Map<String, String> assignments = Collections.emptyMap();
+    private Map<List<Edge>, Map<String, String>> solvedRegions = Collections.emptyMap();
+
+    /**
+     * @param candidatesPerCourier how many of the best orders of each courier they compete for
+     * @param priorityCost         kilometers a courier would go further to pick up an order one slot priority higher
+     */
+    public AssignmentEngine(CourierRepository courierRepository,
+                            OrderService orderService,
+                            @Value("${backender.assignment_candidates}") int candidatesPerCourier,
+                            @Value("${backender.distance_slot_range}") double priorityCost) {
+        this.courierRepository = courierRepository;
+        this.orderService = orderService;
+        this.candidatesPerCourier = candidatesPerCourier;
+        this.priorityCost = priorityCost;
+    }
+
+    /**
+     * Returns the order assigned to each courier in the last tick, by courier id. Idle couriers are missing.
+     */
+    public Map<String, String> assignments() {
+        return assignments;
+    }
+
+    @Scheduled(fixedDelayString = "${backender.assignment_tick_ms}")
+    public synchronized void tick() {
+        List<Edge> edges = new ArrayList<>();
+        orderService.eligibility(courierRepository.findAll(), candidatesPerCourier).forEach(eligibility ->
+                edges.add(new Edge(eligibility.getCourier().getId(), eligibility.getOrder().getId(),
+                        eligibility.getDistance() + eligibility.getPriority() * priorityCost)));
+
+        Map<List<Edge>, Map<String, String>> previousRegions = solvedRegions;
+        Map<List<Edge>, Map<String, String>> regions = new ConcurrentHashMap<>();
+        regionsOf(edges).parallelStream().forEach(region -> {
+            Map<String, String> previous = previousRegions.get(region);
+            regions.put(region, previous != null ? previous : MinCostMatching.solve(region));
+        });
+
+        Map<String, String> assigned = new HashMap<>();
+        regions.values().forEach(assigned::putAll);
+        solvedRegions = regions;
+        assignments = Collections.unmodifiableMap(assigned);
+    }
+
+    /**
+     * Splits the edges into connected components, each one sorted so equal regions are equal lists
+     */
+    private static List<List<Edge>> regionsOf(List<Edge> edges) {
+        Map<String, Integer> courierNodes = new HashMap<>();
+        Map<String, Integer> orderNodes = new HashMap<>();
+        for (Edge edge : edges) {
+            courierNodes.putIfAbsent(edge.getCourierId(), courierNodes.size());
+        }
+        for (Edge edge : edges) {
+            orderNodes.putIfAbsent(edge.getOrderId(), courierNodes.size() + orderNodes.size());
+        }
+        int[] parents = new int[courierNodes.size() + orderNodes.size()];
+        for (int node = 0; node < parents.length; node++) {
+            parents[node] = node;
+        }
+        for (Edge edge : edges) {
+            int courierRoot = root(parents, courierNodes.get(edge.getCourierId()));
+            int orderRoot = root(parents, orderNodes.get(edge.getOrderId()));
+            parents[courierRoot] = orderRoot;
+        }
+
+        Map<Integer, List<Edge>> regions = new HashMap<>();
+        for (Edge edge : edges) {
+            regions.computeIfAbsent(root(parents, courierNodes.get(edge.getCourierId())), root -> new ArrayList<>())
+                    .add(edge);
+        }
+        regions.values().forEach(Collections::sort);
+        return new ArrayList<>(regions.values());
+    }
+
+    private static int root(int[] parents, int node) {
+        int root = node;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[node] != root) {
+            int next = parents[node];
+            parents[node] = root;
+            node = next;
+        }
+        return root;
+    }
+}
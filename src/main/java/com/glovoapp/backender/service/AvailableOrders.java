@@ -0,0 +1,15 @@
+package com.glovoapp.backender.service;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The orders available for a batch of couriers, ranked while they are consumed
+ */
+@FunctionalInterface
+public interface AvailableOrders {
+    /**
+     * Ranks the first page of every courier and passes it along with the courier id, as soon as it's ready.
+     * Pages are ranked in parallel, so the action may be called concurrently and in any order.
+     */
+    void forEach(BiConsumer<String, OrderPage> action);
+}
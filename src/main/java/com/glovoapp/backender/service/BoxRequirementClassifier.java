@@ -0,0 +1,29 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Decides which orders must be carried in a Glovo box, based on the foods in their description.
+ * <p>
+ * Orders are classified once, when they are stored, and the result is kept by the {@link OrderRepository} with the
+ * rest of the columns used for matching, so matching couriers never has to scan descriptions.
+ */
+@Component
+public class BoxRequirementClassifier {
+    private final KeywordMatcher boxableFoods;
+
+    public BoxRequirementClassifier(OrderRepository orderRepository,
+                                    @Value("#{'${backender.boxable_foods}'.split(',')}") List<String> boxableFoods) {
+        this.boxableFoods = new KeywordMatcher(boxableFoods);
+        orderRepository.setBoxClassifier(this::classify);
+    }
+
+    public boolean classify(Order order) {
+        return boxableFoods.matches(order.getDescription());
+    }
+}
@@ -0,0 +1,109 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Calls the internal {@code /cluster} endpoints of the other nodes, exchanging the entities as JSON in the same format
+ * as the write-ahead logs, so nothing but the nodes themselves needs to know about them
+ */
+@Component
+public class ClusterClient {
+    private static final Gson GSON = new Gson();
+    private static final Type RANKING = new TypeToken<List<RankedOrder>>() {
+    }.getType();
+
+    private final RestTemplate restTemplate;
+
+    public ClusterClient(RestTemplateBuilder restTemplateBuilder, @Value("${backender.cluster_timeout_ms}") int timeoutMs) {
+        this.restTemplate = restTemplateBuilder.setConnectTimeout(timeoutMs).setReadTimeout(timeoutMs).build();
+    }
+
+    /**
+     * The orders of a courier owned by the node, ranked by it
+     */
+    OrderPage ordersForCourier(String node, String courierId, int limit, String cursor) {
+        URI uri = uri(node, "/cluster/couriers/{id}/orders", courierId, limit, cursor);
+        return this.<OrderPage>exchange(HttpMethod.GET, uri, null, OrderPage.class)
+                .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId));
+    }
+
+    /**
+     * The best orders of the node for a courier, with their cursors
+     */
+    List<RankedOrder> rank(String node, Courier courier, int limit, String cursor) {
+        URI uri = uri(node, "/cluster/rankings", null, limit, cursor);
+        return this.<List<RankedOrder>>exchange(HttpMethod.POST, uri, courier, RANKING)
+                .orElseThrow(() -> new IllegalStateException("No ranking from " + node));
+    }
+
+    Order create(String node, Order order) {
+        return this.<Order>exchange(HttpMethod.POST, uri(node, "/cluster/orders", null, null, null), order, Order.class)
+                .orElseThrow(() -> new IllegalStateException("Order '" + order.getId() + "' not created by " + node));
+    }
+
+    /**
+     * The order cancelled by the node, or empty if it didn't have it
+     */
+    Optional<Order> cancel(String node, String orderId) {
+        return exchange(HttpMethod.DELETE, uri(node, "/cluster/orders/{id}", orderId, null, null), null, Order.class);
+    }
+
+    Courier updateLocation(String node, String courierId, Location location) {
+        URI uri = uri(node, "/cluster/couriers/{id}/location", courierId, null, null);
+        return this.<Courier>exchange(HttpMethod.PUT, uri, location, Courier.class)
+                .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId));
+    }
+
+    private static URI uri(String node, String path, String id, Integer limit, String cursor) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node).path(path);
+        if (limit != null) {
+            uri.queryParam("limit", limit);
+        }
+        if (cursor != null) {
+            uri.queryParam("cursor", cursor);
+        }
+        return (id == null ? uri.build() : uri.buildAndExpand(id)).encode().toUri();
+    }
+
+    /**
+     * Sends the body as JSON and parses the response, empty when the node doesn't have the entity. Requests the node
+     * rejects as invalid fail like they would locally.
+     */
+    private <T> Optional<T> exchange(HttpMethod method, URI uri, Object body, Type type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        try {
+            String response = restTemplate.exchange(uri, method,
+                    new HttpEntity<>(body == null ? null : GSON.toJson(body), headers), String.class).getBody();
+            return Optional.ofNullable(GSON.fromJson(response, type));
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return Optional.empty();
+            }
+            if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                throw new InvalidRequestException(e.getResponseBodyAsString(), e);
+            }
+            throw e;
+        }
+    }
+}
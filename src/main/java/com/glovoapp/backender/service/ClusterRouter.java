@@ -0,0 +1,197 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.ClusterTopology;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Serves the requests about orders and couriers on the nodes owning them, as assigned by the
+ * {@link ClusterTopology}, so any node can take any request. A standalone node serves everything itself.
+ * <p>
+ * Couriers near regions of other nodes get the orders of all of them: every node ranks its own orders for the courier
+ * in parallel (scatter), and their best ones are merged by the same ranking (gather).
+ */
+@Service
+public class ClusterRouter {
+    private final ClusterTopology cluster;
+    private final ClusterClient clusterClient;
+    private final OrderService orderService;
+    private final CourierService courierService;
+    private final CourierRepository courierRepository;
+    private final ExecutorService scatter = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("cluster-scatter-%d")
+            .setDaemon(true)
+            .build());
+
+    public ClusterRouter(ClusterTopology cluster,
+                         ClusterClient clusterClient,
+                         OrderService orderService,
+                         CourierService courierService,
+                         CourierRepository courierRepository) {
+        this.cluster = cluster;
+        this.clusterClient = clusterClient;
+        this.orderService = orderService;
+        this.courierService = courierService;
+        this.courierRepository = courierRepository;
+    }
+
+    /**
+     * Same as {@link OrderService#ordersForCourier(String, int, String)}, ranked by the node owning the courier
+     */
+    public OrderPage ordersForCourier(String courierId, int limit, String cursor) {
+        if (!cluster.ownsCourier(courierId)) {
+            return clusterClient.ordersForCourier(cluster.ownerOfCourier(courierId), courierId, limit, cursor);
+        }
+        return ordersForOwnCourier(courierId, limit, cursor);
+    }
+
+    /**
+     * Ranks the orders of a courier of this node, gathering the ones of every node owning regions within their range.
+     * It never forwards the request, so nodes disagreeing on the owner of the courier can't bounce it forever.
+     */
+    public OrderPage ordersForOwnCourier(String courierId, int limit, String cursor) {
+        Courier courier = courierRepository.findById(courierId)
+                .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId));
+        Set<String> owners = cluster.ownersNear(courier.getLocation(), orderService.rangeOf(courier));
+        if (owners.size() == 1 && owners.contains(cluster.getSelf())) {
+            return orderService.ordersForCourier(courierId, limit, cursor);
+        }
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive, but was " + limit);
+        }
+        if (cursor != null) {
+            RankCursor.decode(cursor);
+        }
+        // One more order than the page tells whether there's a next one
+        int requested = limit == Integer.MAX_VALUE ? limit : limit + 1;
+        List<CompletableFuture<List<RankedOrder>>> remoteRankings = owners.stream()
+                .filter(node -> !node.equals(cluster.getSelf()))
+                .map(node -> CompletableFuture.supplyAsync(
+                        () -> clusterClient.rank(node, courier, requested, cursor), scatter))
+                .collect(Collectors.toList());
+        List<List<RankedOrder>> rankings = new ArrayList<>();
+        if (owners.contains(cluster.getSelf())) {
+            rankings.add(orderService.rankNear(courier, requested, cursor));
+        }
+        for (CompletableFuture<List<RankedOrder>> ranking : remoteRankings) {
+            try {
+                rankings.add(ranking.join());
+            } catch (CompletionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+        return merge(rankings, limit);
+    }
+
+    /**
+     * Publishes the order on the node owning its pickup, assigning it an id if it doesn't have one. An order saved
+     * again may have moved to the region of another node, so its copies on the other nodes are dropped once it's
+     * published.
+     */
+    public Order create(Order order) {
+        if (order.getId() == null) {
+            return publish(order.toBuilder().id(UUID.randomUUID().toString()).build());
+        }
+        Order created = publish(order);
+        dropCopies(order.getId(), cluster.ownerOfOrder(order));
+        return created;
+    }
+
+    public Order cancel(String orderId) {
+        try {
+            return orderService.cancel(orderId);
+        } catch (ResourceNotFoundException e) {
+            // The id doesn't tell the region of the order, so the other nodes are asked one by one
+            for (String node : cluster.getNodes()) {
+                if (!node.equals(cluster.getSelf())) {
+                    Optional<Order> cancelled = clusterClient.cancel(node, orderId);
+                    if (cancelled.isPresent()) {
+                        return cancelled.get();
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    public Courier updateLocation(String courierId, Location location) {
+        return cluster.ownsCourier(courierId)
+                ? courierService.updateLocation(courierId, location)
+                : clusterClient.updateLocation(cluster.ownerOfCourier(courierId), courierId, location);
+    }
+
+    private Order publish(Order order) {
+        String owner = cluster.ownerOfOrder(order);
+        return owner.equals(cluster.getSelf())
+                ? orderService.create(order)
+                : clusterClient.create(owner, order);
+    }
+
+    /**
+     * The id doesn't tell the region the order was in before, so every other node is asked to drop it
+     */
+    private void dropCopies(String orderId, String owner) {
+        for (String node : cluster.getNodes()) {
+            if (node.equals(owner)) {
+                continue;
+            }
+            if (node.equals(cluster.getSelf())) {
+                try {
+                    orderService.cancel(orderId);
+                } catch (ResourceNotFoundException e) {
+                    // No copy here
+                }
+            } else {
+                clusterClient.cancel(node, orderId);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scatter.shutdownNow();
+    }
+
+    /**
+     * Merges the rankings of the nodes, each one sorted and with at least one more order than the page unless it has
+     * no more, into a page of at most {@code limit} orders
+     */
+    private static OrderPage merge(List<List<RankedOrder>> rankings, int limit) {
+        TreeMap<RankCursor, Order> merged = new TreeMap<>();
+        for (List<RankedOrder> ranking : rankings) {
+            for (RankedOrder ranked : ranking) {
+                merged.put(RankCursor.decode(ranked.getCursor()), ranked.getOrder());
+            }
+        }
+        List<Order> page = new ArrayList<>(Math.min(merged.size(), limit));
+        RankCursor last = null;
+        for (Map.Entry<RankCursor, Order> entry : merged.entrySet()) {
+            if (page.size() == limit) {
+                return new OrderPage(page, last.encode());
+            }
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new OrderPage(page, null);
+    }
+}
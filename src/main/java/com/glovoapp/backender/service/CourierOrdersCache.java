@@ -0,0 +1,242 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the order pages ranked for couriers, as their apps keep polling the same pages.
+ * <p>
+ * A page is dropped as soon as an order within its courier's range is created, cancelled or reclassified. It's
+ * ranked again once the courier has moved further than the configured drift from where it was ranked, or has
+ * changed vehicle or box.
+ * <p>
+ * Order changes are numbered, and the pages they reach are dropped in the background rather than by the writer, which
+ * holds the order's lock. Meanwhile, the changes not handled yet are kept by grid cell of their pickup, with the
+ * number of the last one, and a page isn't served while one of those cells it reaches changed after its ranking, so
+ * a stale page never is while unrelated changes don't stop the others from being served. Cells are few in a city, so
+ * pending changes are bounded without dropping every page.
+ */
+@Component
+public class CourierOrdersCache {
+    private static final double CELL_SIZE = 0.01; // degrees, roughly 1km
+    // Kilometers from the center of a cell to its farthest corner, at most
+    private static final double CELL_RADIUS = 0.8;
+    // Ranges are never longer than the straight line, so reaching a pickup in a straight line is conservative
+    private static final DistanceCalculator STRAIGHT_LINES = new DistanceCalculator();
+
+    private final DistanceCalculator distanceCalculator;
+    private final double maxCourierDrift;
+    private final Cache<PageKey, CachedPage> pages;
+    private final ExecutorService invalidator;
+    private final AtomicLong orderChanges = new AtomicLong();
+    // Every change up to this one has dropped the pages it reaches
+    private volatile long handledChanges;
+    // Last change of every cell not handled yet, by cell, then the ones being handled, guarded by this
+    private Map<Long, Long> pendingCells = new HashMap<>();
+    private Map<Long, Long> handlingCells = Collections.emptyMap();
+    private boolean invalidationScheduled;
+
+    /**
+     * @param maximumSize     maximum number of cached pages
+     * @param timeToLive      milliseconds a page is cached for, even if nothing changes
+     * @param maxCourierDrift kilometers a courier can move and still get the page ranked for their previous location
+     */
+    @Autowired
+    public CourierOrdersCache(OrderRepository orderRepository,
+                              DistanceCalculator distanceCalculator,
+                              @Value("${backender.orders_cache_size}") long maximumSize,
+                              @Value("${backender.orders_cache_ttl_ms}") long timeToLive,
+                              @Value("${backender.orders_cache_courier_drift}") double maxCourierDrift) {
+        this(orderRepository, distanceCalculator, maximumSize, timeToLive, maxCourierDrift,
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("orders-cache-invalidator-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    /**
+     * @param invalidator runs the invalidation of the pages reached by order changes
+     */
+    CourierOrdersCache(OrderRepository orderRepository,
+                       DistanceCalculator distanceCalculator,
+                       long maximumSize,
+                       long timeToLive,
+                       double maxCourierDrift,
+                       ExecutorService invalidator) {
+        this.distanceCalculator = distanceCalculator;
+        this.invalidator = invalidator;
+        this.maxCourierDrift = maxCourierDrift;
+        this.pages = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        orderRepository.addChangeListener(this::orderChanged);
+    }
+
+    /**
+     * Returns the cached page, or ranks and caches it
+     *
+     * @param range   range of the courier's vehicle, in kilometers
+     * @param ranking ranks the page for the courier as it is now
+     */
+    OrderPage get(Courier courier, double range, int limit, String cursor, Supplier<OrderPage> ranking) {
+        PageKey key = new PageKey(courier.getId(), limit, cursor);
+        CachedPage cached = pages.getIfPresent(key);
+        if (cached != null && isUpToDate(cached) && isStillValid(cached, courier, range)) {
+            return cached.getPage();
+        }
+        long changesBefore = orderChanges.get();
+        OrderPage page = ranking.get();
+        pages.put(key, new CachedPage(page, courier, range, changesBefore));
+        // Orders changed while ranking: the page may have missed them, and their invalidation may have run before
+        // the page was cached
+        if (orderChanges.get() != changesBefore) {
+            pages.invalidate(key);
+        }
+        return page;
+    }
+
+    public CacheStats stats() {
+        return pages.stats();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        invalidator.shutdownNow();
+    }
+
+    /**
+     * Whether no change since the page was ranked can reach it: all of them have been handled, and it would have been
+     * dropped if they did, or the ones not handled yet are elsewhere
+     */
+    private boolean isUpToDate(CachedPage cached) {
+        if (orderChanges.get() <= Math.max(cached.getRankedAfter(), handledChanges)) {
+            return true;
+        }
+        synchronized (this) {
+            return !reachesAny(cached, handlingCells) && !reachesAny(cached, pendingCells);
+        }
+    }
+
+    private boolean isStillValid(CachedPage cached, Courier courier, double range) {
+        Courier rankedFor = cached.getCourier();
+        return cached.getRange() == range
+                && Objects.equals(rankedFor.getVehicle(), courier.getVehicle())
+                && Objects.equals(rankedFor.getBox(), courier.getBox())
+                && isWithinDrift(rankedFor.getLocation(), courier.getLocation());
+    }
+
+    private boolean isWithinDrift(Location rankedAt, Location location) {
+        if (rankedAt == null || location == null) {
+            return rankedAt == location;
+        }
+        return distanceCalculator.calculateDistance(rankedAt, location) <= maxCourierDrift;
+    }
+
+    /**
+     * Only numbers the change and marks the cells of its pickups, as it's called while the order is locked
+     */
+    private void orderChanged(Order previous, Order current) {
+        boolean schedule;
+        synchronized (this) {
+            long change = orderChanges.incrementAndGet();
+            for (Location pickup : Arrays.asList(pickupOf(previous), pickupOf(current))) {
+                if (pickup != null) {
+                    pendingCells.put(cellOf(pickup), change);
+                }
+            }
+            schedule = !invalidationScheduled;
+            invalidationScheduled = true;
+        }
+        if (schedule) {
+            invalidator.execute(this::invalidatePending);
+        }
+    }
+
+    private void invalidatePending() {
+        Map<Long, Long> cells;
+        long lastChange;
+        synchronized (this) {
+            cells = pendingCells;
+            lastChange = orderChanges.get();
+            handlingCells = cells;
+            pendingCells = new HashMap<>();
+            invalidationScheduled = false;
+        }
+        pages.asMap().values().removeIf(cached -> reachesAny(cached, cells));
+        synchronized (this) {
+            handledChanges = lastChange;
+            handlingCells = Collections.emptyMap();
+        }
+    }
+
+    private boolean reachesAny(CachedPage cached, Map<Long, Long> cells) {
+        for (Map.Entry<Long, Long> cell : cells.entrySet()) {
+            if (cell.getValue() > cached.getRankedAfter() && reaches(cached, cell.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a pickup in the cell could be visible to the page's courier, anywhere within the drift they're allowed
+     */
+    private boolean reaches(CachedPage cached, long cell) {
+        Location rankedAt = cached.getCourier().getLocation();
+        return rankedAt != null && STRAIGHT_LINES.calculateDistance(rankedAt, centerOf(cell))
+                <= cached.getRange() + maxCourierDrift + CELL_RADIUS;
+    }
+
+    private static long cellOf(Location location) {
+        long row = (long) Math.floor(location.getLat() / CELL_SIZE);
+        long column = (long) Math.floor(location.getLon() / CELL_SIZE);
+        return row << 32 | (column & 0xffffffffL);
+    }
+
+    private static Location centerOf(long cell) {
+        return new Location(((cell >> 32) + 0.5) * CELL_SIZE, ((int) cell + 0.5) * CELL_SIZE);
+    }
+
+    private static Location pickupOf(Order order) {
+        return order == null ? null : order.getPickup();
+    }
+
+    @lombok.Value
+    private static class PageKey {
+        private final String courierId;
+        private final int limit;
+        private final String cursor;
+    }
+
+    @lombok.Value
+    private static class CachedPage {
+        private final OrderPage page;
+        private final Courier courier;
+        private final double range;
+        // Number of the last order change visible to the ranking
+        private final long rankedAfter;
+    }
+}
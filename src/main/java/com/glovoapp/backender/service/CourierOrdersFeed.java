@@ -0,0 +1,260 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes the changes of the orders available to couriers as they happen, instead of couriers polling their list.
+ * <p>
+ * Only subscribed couriers are tracked. When an order changes, only the subscribed couriers that could reach its
+ * pickup are ranked again, and when a courier changes, only that courier. Rankings run in the background, and a burst
+ * of changes affecting a courier is coalesced into a single ranking. Order changes are ignored without subscriptions,
+ * and the pickups piling up beyond {@value #MAX_PENDING_PICKUPS} just refresh every subscribed courier.
+ * <p>
+ * Deltas are queued per subscription and sent by their own sender threads, so a slow listener never holds the
+ * rankings of the others back. A subscription with more than {@value #MAX_QUEUED_DELTAS} deltas waiting has fallen
+ * behind, and is dropped: the listener would be sent an incomplete sequence of deltas otherwise.
+ */
+@Service
+public class CourierOrdersFeed {
+    private static final int MAX_PENDING_PICKUPS = 256;
+    private static final int MAX_QUEUED_DELTAS = 16;
+
+    private final CourierRepository courierRepository;
+    private final OrderService orderService;
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> dirtyCouriers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService ranker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "orders-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService sender = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("orders-feed-sender-%d")
+            .setDaemon(true)
+            .build());
+    // Pickups of the orders changed since the last check, guarded by this
+    private List<Location> pendingPickups = new ArrayList<>();
+    private boolean overflowed;
+    private boolean checkScheduled;
+
+    public CourierOrdersFeed(OrderRepository orderRepository,
+                             CourierRepository courierRepository,
+                             OrderService orderService) {
+        this.courierRepository = courierRepository;
+        this.orderService = orderService;
+        orderRepository.addChangeListener(this::orderChanged);
+        courierRepository.addChangeListener(
+                (previous, current) -> markDirty((current != null ? current : previous).getId()));
+    }
+
+    /**
+     * Passes the best {@code limit} orders available to the courier to the listener, all of them first and then what
+     * changes, until the subscription is cancelled. A listener throwing an exception or falling behind gets its
+     * subscription dropped, which is reported to {@code onDropped}.
+     */
+    public Subscription subscribe(String courierId, int limit, Consumer<OrdersDelta> listener, Runnable onDropped) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive: " + limit);
+        }
+        Subscription subscription = new Subscription(courierId, limit, listener, onDropped);
+        // Subscribed before ranking, so no change can be missed in between
+        subscriptions.computeIfAbsent(courierId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        try {
+            subscription.refresh(true);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            throw e;
+        }
+        return subscription;
+    }
+
+    /**
+     * Only queues the pickups, as it's called while the order is locked. Subscriptions made meanwhile don't miss the
+     * change, as it's visible to their first ranking.
+     */
+    private void orderChanged(Order previous, Order current) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        boolean schedule;
+        synchronized (this) {
+            for (Order order : Arrays.asList(previous, current)) {
+                if (order != null && order.getPickup() != null) {
+                    if (pendingPickups.size() < MAX_PENDING_PICKUPS) {
+                        pendingPickups.add(order.getPickup());
+                    } else {
+                        overflowed = true;
+                    }
+                }
+            }
+            schedule = !checkScheduled;
+            checkScheduled = true;
+        }
+        if (schedule) {
+            ranker.execute(this::checkPendingPickups);
+        }
+    }
+
+    /**
+     * Couriers without a box are refreshed too: they can't see orders needing one, but a reclassified order may not
+     * need it anymore
+     */
+    private void checkPendingPickups() {
+        List<Location> pickups;
+        boolean refreshAll;
+        synchronized (this) {
+            pickups = pendingPickups;
+            refreshAll = overflowed;
+            pendingPickups = new ArrayList<>();
+            overflowed = false;
+            checkScheduled = false;
+        }
+        for (String courierId : subscriptions.keySet()) {
+            if (refreshAll || courierRepository.findById(courierId)
+                    .filter(courier -> pickups.stream().anyMatch(pickup -> orderService.reaches(courier, pickup)))
+                    .isPresent()) {
+                markDirty(courierId);
+            }
+        }
+    }
+
+    private void markDirty(String courierId) {
+        if (subscriptions.containsKey(courierId) && dirtyCouriers.add(courierId)) {
+            ranker.execute(() -> refresh(courierId));
+        }
+    }
+
+    private void refresh(String courierId) {
+        dirtyCouriers.remove(courierId);
+        subscriptions.getOrDefault(courierId, Collections.emptySet()).forEach(subscription -> {
+            try {
+                subscription.refresh(false);
+            } catch (RuntimeException e) {
+                subscription.drop();
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ranker.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    /**
+     * A listener of the orders available to a courier
+     */
+    public class Subscription {
+        private final String courierId;
+        private final int limit;
+        private final Consumer<OrdersDelta> listener;
+        private final Runnable onDropped;
+        private final BlockingQueue<OrdersDelta> queued = new ArrayBlockingQueue<>(MAX_QUEUED_DELTAS);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private Map<String, Order> sent;
+
+        private Subscription(String courierId, int limit, Consumer<OrdersDelta> listener, Runnable onDropped) {
+            this.courierId = courierId;
+            this.limit = limit;
+            this.listener = listener;
+            this.onDropped = onDropped;
+        }
+
+        public void cancel() {
+            unsubscribe();
+        }
+
+        private boolean unsubscribe() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            subscriptions.computeIfPresent(courierId, (id, courierSubscriptions) -> {
+                courierSubscriptions.remove(this);
+                return courierSubscriptions.isEmpty() ? null : courierSubscriptions;
+            });
+            queued.clear();
+            return true;
+        }
+
+        private void drop() {
+            if (unsubscribe()) {
+                onDropped.run();
+            }
+        }
+
+        /**
+         * Ranks the orders of the courier again, passing the delta to the listener if anything changed. The first one
+         * is passed on the subscribing thread, before any queued change.
+         */
+        private synchronized void refresh(boolean first) {
+            Map<String, Order> ranked = new LinkedHashMap<>();
+            orderService.ordersForCourier(courierId, limit, null).getOrders()
+                    .forEach(order -> ranked.put(order.getId(), order));
+            if (sent != null && new ArrayList<>(sent.values()).equals(new ArrayList<>(ranked.values()))) {
+                return;
+            }
+            Map<String, Order> previous = sent == null ? Collections.emptyMap() : sent;
+            List<Order> added = ranked.values().stream()
+                    .filter(order -> !order.equals(previous.get(order.getId())))
+                    .collect(Collectors.toList());
+            List<String> removed = previous.keySet().stream()
+                    .filter(orderId -> !ranked.containsKey(orderId))
+                    .collect(Collectors.toList());
+            OrdersDelta delta = new OrdersDelta(added, removed, new ArrayList<>(ranked.keySet()));
+            if (first) {
+                listener.accept(delta);
+                sent = ranked;
+                return;
+            }
+            if (!queued.offer(delta)) {
+                drop();
+                return;
+            }
+            sent = ranked;
+            if (sending.compareAndSet(false, true)) {
+                sender.execute(this::send);
+            }
+        }
+
+        /**
+         * Sends the queued deltas in order, on a single sender thread at a time
+         */
+        private void send() {
+            do {
+                OrdersDelta delta;
+                while ((delta = queued.poll()) != null && !cancelled.get()) {
+                    try {
+                        listener.accept(delta);
+                    } catch (RuntimeException e) {
+                        drop();
+                    }
+                }
+                sending.set(false);
+            } while (!queued.isEmpty() && !cancelled.get() && sending.compareAndSet(false, true));
+        }
+    }
+}
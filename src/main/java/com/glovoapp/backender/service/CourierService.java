@@ -0,0 +1,20 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.repository.CourierRepository;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CourierService {
+    private CourierRepository courierRepository;
+
+    public CourierService(CourierRepository courierRepository) {
+        this.courierRepository = courierRepository;
+    }
+
+    public Courier updateLocation(String courierId, Location location) {
+        return courierRepository.updateLocation(courierId, location)
+                .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId));
+    }
+}
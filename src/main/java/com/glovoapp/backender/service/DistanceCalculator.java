@@ -1,33 +1,92 @@
 package com.glovoapp.backender.service;
 
 import com.glovoapp.backender.model.Location;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 import static java.lang.Math.*;
 
+/**
+ * Distances between couriers and orders, in straight line or, with a {@link DistanceStrategy} like the
+ * {@link RoadDistanceMatrix}, the way couriers actually go
+ */
 @Component
 public class DistanceCalculator {
 
     private static final int EARTH_RADIUS = 6371;
+    private static final double REJECTION_SLACK = 1 + 1e-9;
+
+    // Null for straight lines
+    private final DistanceStrategy strategy;
+
+    public DistanceCalculator() {
+        this(Optional.empty());
+    }
+
+    @Autowired
+    public DistanceCalculator(Optional<DistanceStrategy> strategy) {
+        this.strategy = strategy.orElse(null);
+    }
 
     /**
      * Returns distance between two locations in kilometers
      * Shamelessly copied from https://github.com/jasonwinn/haversine
      */
     public double calculateDistance(Location start, Location end) {
-        double deltaLat = toRadians((end.getLat() - start.getLat()));
-        double deltaLong = toRadians((end.getLon() - start.getLon()));
-
         double startLat = toRadians(start.getLat());
         double endLat = toRadians(end.getLat());
 
-        double a = haversin(deltaLat) + cos(startLat) * cos(endLat) * haversin(deltaLong);
-        double c = 2 * atan2(sqrt(a), sqrt(1 - a));
+        double a = haversin(endLat - startLat) + cos(startLat) * cos(endLat) * haversin(toRadians(end.getLon() - start.getLon()));
 
-        return EARTH_RADIUS * c;
+        double straightLine = centralAngle(a) * EARTH_RADIUS;
+        return strategy == null
+                ? straightLine
+                : strategy.distance(startLat, toRadians(start.getLon()), endLat, toRadians(end.getLon()), straightLine);
+    }
+
+    /**
+     * Batch version of {@link #calculateDistance}: distances in kilometers from one origin to the first {@code count}
+     * points of the given parallel arrays, which hold latitudes and longitudes in radians and the cosine of the
+     * latitudes, so they are computed once per point instead of once per pair.
+     * <p>
+     * Points that are certainly further than {@code maxDistance} get {@link Double#POSITIVE_INFINITY} without paying
+     * for the exact formula: first when the latitude difference alone is too big, then when the haversine term is.
+     * The remaining ones get the same distance {@link #calculateDistance} returns, with an error below 1e-9 km,
+     * which can still be over {@code maxDistance}: only those are passed to the strategy, if any.
+     */
+    public void calculateDistances(Location origin, double[] lats, double[] lons, double[] cosLats, int count,
+                                   double maxDistance, double[] distances) {
+        double originLat = toRadians(origin.getLat());
+        double originLon = toRadians(origin.getLon());
+        double originCos = cos(originLat);
+        double maxAngle = maxDistance / EARTH_RADIUS;
+        double maxHaversine = maxAngle >= PI ? Double.POSITIVE_INFINITY : haversin(maxAngle) * REJECTION_SLACK;
+
+        for (int i = 0; i < count; i++) {
+            double deltaLat = lats[i] - originLat;
+            if (abs(deltaLat) > maxAngle * REJECTION_SLACK) {
+                distances[i] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double a = haversin(deltaLat) + originCos * cosLats[i] * haversin(lons[i] - originLon);
+            if (a > maxHaversine) {
+                distances[i] = Double.POSITIVE_INFINITY;
+            } else if (strategy == null) {
+                distances[i] = centralAngle(a) * EARTH_RADIUS;
+            } else {
+                distances[i] = strategy.distance(originLat, originLon, lats[i], lons[i], centralAngle(a) * EARTH_RADIUS);
+            }
+        }
     }
 
     private static double haversin(double val) {
-        return Math.pow(Math.sin(val / 2), 2);
+        double sin = sin(val / 2);
+        return sin * sin;
+    }
+
+    private static double centralAngle(double haversine) {
+        return 2 * asin(sqrt(min(1, haversine)));
     }
 }
@@ -0,0 +1,14 @@
+package com.glovoapp.backender.service;
+
+/**
+ * How couriers actually travel between two points, refining the straight-line distances of
+ * {@link DistanceCalculator}. No way is shorter than the straight line, so that one is still computed first, as a
+ * cheap lower bound, and points too far in a straight line are discarded without asking the strategy.
+ */
+public interface DistanceStrategy {
+    /**
+     * Distance, in kilometers, from one point to the other, with coordinates in radians. It's never below the
+     * straight-line distance given, and it's infinite when there's no way.
+     */
+    double distance(double fromLat, double fromLon, double toLat, double toLon, double straightLine);
+}
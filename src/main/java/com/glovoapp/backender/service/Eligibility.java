@@ -0,0 +1,22 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Order;
+import lombok.Value;
+
+/**
+ * An order a courier can see
+ */
+@Value
+class Eligibility {
+    private final Courier courier;
+    private final Order order;
+    /**
+     * From the courier to the pickup, in kilometers
+     */
+    private final double distance;
+    /**
+     * Position of the first slot priority the order matches, lower is more important
+     */
+    private final int priority;
+}
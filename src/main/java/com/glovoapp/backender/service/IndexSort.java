@@ -0,0 +1,90 @@
+package com.glovoapp.backender.service;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Stable sort and top-K selection of primitive indexes, so rankings can be sorted without boxing
+ */
+final class IndexSort {
+    private IndexSort() {
+    }
+
+    /**
+     * Sorts the first {@code count} indexes with the given comparator
+     */
+    static void sort(int[] indexes, int count, IntBinaryOperator comparator) {
+        if (count > 1) {
+            mergeSort(indexes.clone(), indexes, 0, count, comparator);
+        }
+    }
+
+    /**
+     * Moves the {@code limit} smallest of the first {@code count} indexes to the front, sorted, and returns how many
+     * there are. Only those are sorted: the rest go through a bounded heap, so it takes O(count log limit).
+     */
+    static int selectSmallest(int[] indexes, int count, int limit, IntBinaryOperator comparator) {
+        if (limit >= count) {
+            sort(indexes, count, comparator);
+            return count;
+        }
+        for (int i = limit / 2 - 1; i >= 0; i--) {
+            siftDown(indexes, i, limit, comparator);
+        }
+        for (int i = limit; i < count; i++) {
+            if (comparator.applyAsInt(indexes[i], indexes[0]) < 0) {
+                indexes[0] = indexes[i];
+                siftDown(indexes, 0, limit, comparator);
+            }
+        }
+        sort(indexes, limit, comparator);
+        return limit;
+    }
+
+    /**
+     * Restores the max-heap property of the first {@code size} indexes below the given position
+     */
+    private static void siftDown(int[] heap, int position, int size, IntBinaryOperator comparator) {
+        int item = heap[position];
+        int child;
+        while ((child = 2 * position + 1) < size) {
+            if (child + 1 < size && comparator.applyAsInt(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (comparator.applyAsInt(heap[child], item) <= 0) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = item;
+    }
+
+    private static void mergeSort(int[] source, int[] target, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 8) {
+            insertionSort(target, from, to, comparator);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(target, source, from, middle, comparator);
+        mergeSort(target, source, middle, to, comparator);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || left < middle && comparator.applyAsInt(source[left], source[right]) <= 0) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    private static void insertionSort(int[] indexes, int from, int to, IntBinaryOperator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int current = indexes[i];
+            int j = i - 1;
+            while (j >= from && comparator.applyAsInt(indexes[j], current) > 0) {
+                indexes[j + 1] = indexes[j];
+                j--;
+            }
+            indexes[j + 1] = current;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.glovoapp.backender.service;
+
+/**
+ * A request the services refuse because of what the client sent, like a non-positive limit or a malformed cursor
+ */
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,115 @@
+package com.glovoapp.backender.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive Aho-Corasick automaton telling whether a text contains any of a set of keywords.
+ * <p>
+ * The text is scanned once, char by char, whatever the number of keywords, and without allocating.
+ * Keywords are trimmed and blank ones are ignored.
+ */
+class KeywordMatcher {
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failures;
+    private final boolean[] accepting;
+
+    KeywordMatcher(Collection<String> keywords) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(false);
+        for (String keyword : keywords) {
+            String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (char c : normalized.toCharArray()) {
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(false);
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            terminal.set(node, true);
+        }
+
+        int size = trie.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        failures = new int[size];
+        accepting = new boolean[size];
+        for (int node = 0; node < size; node++) {
+            Map<Character, Integer> edges = trie.get(node);
+            labels[node] = new char[edges.size()];
+            targets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[node][i] = edge.getKey();
+                targets[node][i++] = edge.getValue();
+            }
+            accepting[node] = terminal.get(node);
+        }
+        linkFailures();
+    }
+
+    /**
+     * Breadth-first, so the failure of a node's parent is always resolved before the node itself
+     */
+    private void linkFailures() {
+        Queue<Integer> pending = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            pending.add(child);
+        }
+        while (!pending.isEmpty()) {
+            int node = pending.poll();
+            for (int i = 0; i < labels[node].length; i++) {
+                int child = targets[node][i];
+                int failure = failures[node];
+                int next;
+                while ((next = transition(failure, labels[node][i])) < 0 && failure != 0) {
+                    failure = failures[failure];
+                }
+                failures[child] = next >= 0 ? next : 0;
+                accepting[child] |= accepting[failures[child]];
+                pending.add(child);
+            }
+        }
+    }
+
+    boolean matches(String text) {
+        if (text == null) {
+            return false;
+        }
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(node, c)) < 0 && node != 0) {
+                node = failures[node];
+            }
+            node = next >= 0 ? next : 0;
+            if (accepting[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(labels[node], c);
+        return index >= 0 ? targets[node][index] : -1;
+    }
+}
@@ -0,0 +1,199 @@
+package com.glovoapp.backender.service;
+
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Exact assignment for sparse problems: matches as many couriers to the orders they can see as possible, and among
+ * those matchings, the one with the lowest total cost.
+ * <p>
+ * It's a min-cost flow from the couriers to the orders, one unit at a time along the cheapest augmenting path
+ * (successive shortest paths), found with Dijkstra over costs reduced by node potentials so they stay non-negative.
+ * Every path matches one more courier, so it takes at most {@code min(couriers, orders)} searches whatever the costs,
+ * unlike an auction, where couriers competing for orders of the same cost raise prices by tiny steps.
+ */
+final class MinCostMatching {
+    private MinCostMatching() {
+    }
+
+    /**
+     * Returns the order assigned to each matched courier, by courier id
+     */
+    static Map<String, String> solve(List<Edge> edges) {
+        Network network = new Network(edges);
+        while (network.augment()) {
+            // One more courier matched, at the lowest extra cost
+        }
+        return network.assignments();
+    }
+
+    /**
+     * A courier that can take an order, at the given non-negative cost
+     */
+    @Value
+    static class Edge implements Comparable<Edge> {
+        private final String courierId;
+        private final String orderId;
+        private final double cost;
+
+        @Override
+        public int compareTo(Edge other) {
+            int byCourier = courierId.compareTo(other.courierId);
+            return byCourier != 0 ? byCourier : orderId.compareTo(other.orderId);
+        }
+    }
+
+    /**
+     * Residual network of unit capacities: a source to every courier, the edges from couriers to orders, and every
+     * order to a sink. Arcs are stored in pairs, an arc and its reverse, so {@code arc ^ 1} is the reverse one.
+     */
+    private static class Network {
+        private final String[] courierIds;
+        private final String[] orderIds;
+        private final int source;
+        private final int sink;
+        private final int[] firstArc;
+        private final int[] nextArc;
+        private final int[] heads;
+        private final double[] costs;
+        private final boolean[] saturated;
+        private final double[] potentials;
+        private final double[] distances;
+        private final int[] pathArcs;
+        private int arcCount;
+
+        Network(List<Edge> edges) {
+            Map<String, Integer> courierIndexes = new HashMap<>();
+            Map<String, Integer> orderIndexes = new HashMap<>();
+            for (Edge edge : edges) {
+                if (!(edge.getCost() >= 0)) {
+                    throw new IllegalArgumentException("Negative or unknown cost of " + edge);
+                }
+                courierIndexes.putIfAbsent(edge.getCourierId(), courierIndexes.size());
+                orderIndexes.putIfAbsent(edge.getOrderId(), orderIndexes.size());
+            }
+            courierIds = new String[courierIndexes.size()];
+            courierIndexes.forEach((id, index) -> courierIds[index] = id);
+            orderIds = new String[orderIndexes.size()];
+            orderIndexes.forEach((id, index) -> orderIds[index] = id);
+
+            // Couriers first, then orders, then the source and the sink
+            int nodes = courierIds.length + orderIds.length + 2;
+            source = nodes - 2;
+            sink = nodes - 1;
+            int arcs = 2 * (edges.size() + courierIds.length + orderIds.length);
+            firstArc = new int[nodes];
+            Arrays.fill(firstArc, -1);
+            nextArc = new int[arcs];
+            heads = new int[arcs];
+            costs = new double[arcs];
+            saturated = new boolean[arcs];
+            potentials = new double[nodes];
+            distances = new double[nodes];
+            pathArcs = new int[nodes];
+            for (int courier = 0; courier < courierIds.length; courier++) {
+                addArc(source, courier, 0);
+            }
+            for (Edge edge : edges) {
+                addArc(courierIndexes.get(edge.getCourierId()),
+                        courierIds.length + orderIndexes.get(edge.getOrderId()), edge.getCost());
+            }
+            for (int order = 0; order < orderIds.length; order++) {
+                addArc(courierIds.length + order, sink, 0);
+            }
+        }
+
+        /**
+         * Pushes one unit along the cheapest path from the source to the sink, returning false if there's none
+         */
+        boolean augment() {
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            Arrays.fill(pathArcs, -1);
+            boolean[] settled = new boolean[distances.length];
+            PriorityQueue<Label> queue = new PriorityQueue<>();
+            distances[source] = 0;
+            queue.add(new Label(source, 0));
+            while (!queue.isEmpty()) {
+                Label label = queue.poll();
+                int node = label.node;
+                if (settled[node]) {
+                    continue;
+                }
+                settled[node] = true;
+                if (node == sink) {
+                    break;
+                }
+                for (int arc = firstArc[node]; arc >= 0; arc = nextArc[arc]) {
+                    int head = heads[arc];
+                    if (saturated[arc] || settled[head]) {
+                        continue;
+                    }
+                    // Rounding can leave reduced costs a hair below 0
+                    double reduced = Math.max(0, costs[arc] + potentials[node] - potentials[head]);
+                    if (distances[node] + reduced < distances[head]) {
+                        distances[head] = distances[node] + reduced;
+                        pathArcs[head] = arc;
+                        queue.add(new Label(head, distances[head]));
+                    }
+                }
+            }
+            if (!settled[sink]) {
+                return false;
+            }
+            // Nodes further than the sink are clamped to it, which keeps every reduced cost non-negative
+            double toSink = distances[sink];
+            for (int node = 0; node < potentials.length; node++) {
+                potentials[node] += Math.min(distances[node], toSink);
+            }
+            for (int node = sink; node != source; node = heads[pathArcs[node] ^ 1]) {
+                saturated[pathArcs[node]] = true;
+                saturated[pathArcs[node] ^ 1] = false;
+            }
+            return true;
+        }
+
+        Map<String, String> assignments() {
+            Map<String, String> assignments = new HashMap<>();
+            for (int courier = 0; courier < courierIds.length; courier++) {
+                for (int arc = firstArc[courier]; arc >= 0; arc = nextArc[arc]) {
+                    if ((arc & 1) == 0 && saturated[arc]) {
+                        assignments.put(courierIds[courier], orderIds[heads[arc] - courierIds.length]);
+                    }
+                }
+            }
+            return assignments;
+        }
+
+        /**
+         * Adds an arc of capacity 1 and its reverse, saturated until flow goes through the arc
+         */
+        private void addArc(int from, int to, double cost) {
+            link(from, to, cost, false);
+            link(to, from, -cost, true);
+        }
+
+        private void link(int from, int to, double cost, boolean isSaturated) {
+            heads[arcCount] = to;
+            costs[arcCount] = cost;
+            saturated[arcCount] = isSaturated;
+            nextArc[arcCount] = firstArc[from];
+            firstArc[from] = arcCount++;
+        }
+    }
+
+    @Value
+    private static class Label implements Comparable<Label> {
+        private final int node;
+        private final double distance;
+
+        @Override
+        public int compareTo(Label other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+}
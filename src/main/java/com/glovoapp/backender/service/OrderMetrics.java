@@ -0,0 +1,102 @@
+package com.glovoapp.backender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the orders ranked for couriers: how long every phase takes, with percentile histograms, and how many
+ * orders are scanned, rejected and returned. They're exposed by the actuator, and scraped from
+ * {@code /actuator/prometheus}.
+ * <p>
+ * Rankings served from the {@link CourierOrdersCache} scan nothing, so they only show up in the request metrics.
+ */
+@Component
+public class OrderMetrics {
+    private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+    private final Map<Rejection, Counter> rejections = new EnumMap<>(Rejection.class);
+    private final Counter scanned;
+    private final Counter returned;
+
+    public OrderMetrics(MeterRegistry registry) {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, Timer.builder("backender.ranking.phase")
+                    .description("Time spent in each phase of ranking the orders for a courier")
+                    .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Rejection rejection : Rejection.values()) {
+            rejections.put(rejection, Counter.builder("backender.ranking.rejected")
+                    .description("Orders near a courier that they can't see, by reason")
+                    .tag("reason", rejection.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        scanned = Counter.builder("backender.ranking.scanned")
+                .description("Orders read from the repository to rank them for a courier")
+                .register(registry);
+        returned = Counter.builder("backender.ranking.returned")
+                .description("Orders ranked and returned to a courier")
+                .register(registry);
+    }
+
+    /**
+     * Records the time since {@code startNanos}, as returned by {@link System#nanoTime()}, and returns the current one
+     * so consecutive phases share it
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        phases.get(phase).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    void scanned(int orders) {
+        scanned.increment(orders);
+    }
+
+    void returned(int orders) {
+        returned.increment(orders);
+    }
+
+    void rejected(Rejection rejection, int orders) {
+        if (orders > 0) {
+            rejections.get(rejection).increment(orders);
+        }
+    }
+
+    public enum Phase {
+        /**
+         * Finding the orders near the courier in the repository
+         */
+        READ,
+        DISTANCE,
+        FILTER,
+        SORT,
+        /**
+         * Writing the response, in the controllers
+         */
+        SERIALIZE
+    }
+
+    public enum Rejection {
+        /**
+         * The order needs a box, and the courier doesn't have one
+         */
+        BOX,
+        /**
+         * The order is out of the range of the courier's vehicle
+         */
+        RANGE,
+        /**
+         * The courier's vehicle has no configured range, so they can't see any order: counts couriers, not orders
+         */
+        UNKNOWN_VEHICLE
+    }
+}
@@ -0,0 +1,18 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Order;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of a courier's ranked orders
+ */
+@Value
+public class OrderPage {
+    private final List<Order> orders;
+    /**
+     * Cursor of the following page, or null if this is the last one
+     */
+    private final String nextCursor;
+}
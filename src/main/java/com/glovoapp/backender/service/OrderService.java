@@ -1,98 +1,535 @@
 package com.glovoapp.backender.service;
 
 import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
 import com.glovoapp.backender.model.Order;
 import com.glovoapp.backender.model.Vehicle;
 import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderBatch;
 import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.repository.Slice;
+import com.google.common.base.Suppliers;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
+    private static final double BATCH_CELL_SIZE = 0.01;
+    private static final int PARALLEL_RANKING_ORDERS = 4096;
+
     private OrderRepository orderRepository;
     private CourierRepository courierRepository;
     private DistanceCalculator distanceCalculator;
-    private List<String> boxableFoods;
+    private CourierOrdersCache courierOrdersCache;
+    private OrderMetrics orderMetrics;
     private Map<Vehicle, Double> vehiclesRange;
     private double distanceSlotRange;
-    private List<SlotPriority> slotPriority;
+    private int[] priorityByFlags;
+    private RankingDistance rankingDistance;
 
     public OrderService(OrderRepository orderRepository,
                         CourierRepository courierRepository,
                         DistanceCalculator distanceCalculator,
-                        @Value("#{'${backender.boxable_foods}'.split(',')}") List<String> boxableFoods,
+                        CourierOrdersCache courierOrdersCache,
+                        OrderMetrics orderMetrics,
                         @Value("#{${backender.vehicles_range}}") Map<Vehicle, Double> vehiclesRange,
                         @Value("${backender.distance_slot_range}") double distanceSlotRange,
-                        @Value("#{'${backender.slot_priority}'.split(',')}") List<SlotPriority> slotPriority) {
+                        @Value("#{'${backender.slot_priority}'.split(',')}") List<SlotPriority> slotPriority,
+                        @Value("${backender.ranking_distance}") RankingDistance rankingDistance) {
 
         this.orderRepository = orderRepository;
         this.courierRepository = courierRepository;
         this.distanceCalculator = distanceCalculator;
-        //Assuming upper/lower case doesn't matter when comparing food names
-        this.boxableFoods = boxableFoods.stream().map(String::toLowerCase).collect(Collectors.toList());
+        this.courierOrdersCache = courierOrdersCache;
+        this.orderMetrics = orderMetrics;
         this.vehiclesRange = vehiclesRange;
         this.distanceSlotRange = distanceSlotRange;
+        this.rankingDistance = rankingDistance;
+
+        this.priorityByFlags = compilePriorities(slotPriority);
+        if (rankingDistance == RankingDistance.TOTAL_TRIP) {
+            orderRepository.setDeliveryLegs(this::deliveryLegOf);
+        }
+    }
+
+    /**
+     * Distance from the pickup to the delivery, with the same strategy as the distances to the couriers so both legs
+     * of the trip add up
+     */
+    private double deliveryLegOf(Order order) {
+        if (order.getPickup() == null || order.getDelivery() == null) {
+            return 0;
+        }
+        return distanceCalculator.calculateDistance(order.getPickup(), order.getDelivery());
+    }
 
-        this.slotPriority = slotPriority;
+    /**
+     * Slot priorities only look at the flags of the orders, so the priority of every combination of flags is
+     * resolved once: ranking an order is then a table lookup
+     */
+    private static int[] compilePriorities(List<SlotPriority> slotPriority) {
+        if (slotPriority.size() >= RankKey.MAX_PRIORITY) {
+            throw new IllegalArgumentException("At most " + (RankKey.MAX_PRIORITY - 1) + " slot priorities are supported");
+        }
+        int[] priorities = new int[OrderBatch.FLAG_COMBINATIONS];
+        for (int flags = 0; flags < priorities.length; flags++) {
+            priorities[flags] = RankKey.MAX_PRIORITY;
+            for (int priority = slotPriority.size() - 1; priority >= 0; priority--) {
+                if (slotPriority.get(priority).matches(flags)) {
+                    priorities[flags] = priority;
+                }
+            }
+        }
+        return priorities;
     }
 
-    public List<Order> orders() {
+    public Collection<Order> orders() {
         return orderRepository.findAll();
     }
 
+    /**
+     * Returns a page of all the orders, in the order they were published
+     *
+     * @param cursor the next cursor of the previous page, or null for the first page
+     */
+    public OrderPage orders(int limit, String cursor) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive: " + limit);
+        }
+        long after;
+        try {
+            after = cursor == null ? 0 : Long.parseUnsignedLong(cursor, Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid cursor '" + cursor + "'", e);
+        }
+        Slice<Order> slice = orderRepository.findAll(after, limit);
+        return new OrderPage(slice.getEntities(),
+                slice.getNext() < 0 ? null : Long.toUnsignedString(slice.getNext(), Character.MAX_RADIX));
+    }
+
+    /**
+     * Publishes a new order, assigning it an id if it doesn't have one
+     */
+    public Order create(Order order) {
+        Order created = order.getId() != null ? order : order.toBuilder().id(UUID.randomUUID().toString()).build();
+        orderRepository.save(created);
+        return created;
+    }
+
+    public Order cancel(String orderId) {
+        return orderRepository.delete(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", orderId));
+    }
+
     public List<Order> ordersForCourier(String courierId) {
+        return ordersForCourier(courierId, Integer.MAX_VALUE, null).getOrders();
+    }
+
+    /**
+     * Returns at most {@code limit} of the orders available for the courier, ranked after the given cursor
+     * (from the start when null). Only the returned orders are sorted, and pages are cached until the orders around
+     * the courier change or the courier moves away.
+     * <p>
+     * Every region of the order repository within range is ranked on its own, in parallel when there are enough
+     * orders, and their best orders are merged.
+     */
+    public OrderPage ordersForCourier(String courierId, int limit, String cursor) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive, but was " + limit);
+        }
+        RankCursor after = cursor == null ? null : RankCursor.decode(cursor);
         Courier courier = courierRepository.findById(courierId)
                 .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId));
-        //Temporary implementation
-        return orderRepository.findAll()
-                .stream()
-                .map(order -> new Candidate(courier, order))
-                .filter(Candidate::canCourierSeeOrder)
-                .sorted(Comparator.comparing(Candidate::distanceSlot)
-                        .thenComparing(Candidate::priority)
-                        .thenComparing(Candidate::getDistance))
-                .map(Candidate::getOrder)
+        double range = rangeOf(courier);
+        return courierOrdersCache.get(courier, range, limit, cursor, () ->
+                rank(courier, range, findNear(courier.getLocation(), range), limit, after));
+    }
+
+    /**
+     * Ranks the orders of this node for a courier that may be stored in another one, returning the cursor of every
+     * order so the rankings of several nodes can be merged. Nothing is cached, as the orders of the other nodes may
+     * change without this node noticing.
+     */
+    public List<RankedOrder> rankNear(Courier courier, int limit, String cursor) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive, but was " + limit);
+        }
+        RankCursor after = cursor == null ? null : RankCursor.decode(cursor);
+        double range = rangeOf(courier);
+        if (range < 0) {
+            orderMetrics.rejected(OrderMetrics.Rejection.UNKNOWN_VEHICLE, 1);
+        }
+        List<OrderBatch> nearbyOrders = findNear(courier.getLocation(), range);
+        List<RankedOrder> ranked = new ArrayList<>();
+        if (!nearbyOrders.isEmpty()) {
+            merge(select(courier, range, nearbyOrders, limit, after), limit, (candidates, i) ->
+                    ranked.add(new RankedOrder(candidates.orders.getOrder(i), candidates.cursorOf(i).encode())));
+        }
+        return ranked;
+    }
+
+    /**
+     * Same as {@link #ordersForCourier(String, int, String)} for the first page of many couriers at once.
+     * <p>
+     * Unknown couriers fail right away, but nothing is ranked until the result is consumed. Then couriers with the
+     * same range in the same cell of a {@value #BATCH_CELL_SIZE} degrees grid share a single read of the orders
+     * around them, and are ranked in parallel in the common {@link ForkJoinPool}.
+     */
+    public AvailableOrders ordersForCouriers(List<String> courierIds, int limit) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("The limit must be positive, but was " + limit);
+        }
+        List<Courier> couriers = courierIds.stream()
+                .distinct()
+                .map(courierId -> courierRepository.findById(courierId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Courier", courierId)))
                 .collect(Collectors.toList());
+        return action -> {
+            List<Runnable> rankings = new ArrayList<>(couriers.size());
+            couriers.stream()
+                    .collect(Collectors.groupingBy(this::batchGroupOf))
+                    .values()
+                    .forEach(group -> {
+                        Supplier<List<OrderBatch>> nearbyOrders = Suppliers.memoize(() -> findNearAll(group));
+                        for (Courier courier : group) {
+                            double range = rangeOf(courier);
+                            rankings.add(() -> action.accept(courier.getId(), courierOrdersCache.get(courier, range,
+                                    limit, null, () -> rank(courier, range, nearbyOrders.get(), limit, null))));
+                        }
+                    });
+            rankings.parallelStream().forEach(Runnable::run);
+        };
     }
 
-    public enum SlotPriority implements Predicate<Order> {
-        VIP {
-            @Override
-            public boolean test(Order order) {
-                return order.getVip();
+    /**
+     * Returns the couriers that can see the order, closest to its pickup first, from the index of courier locations
+     * instead of ranking the orders of every courier
+     */
+    public List<Courier> couriersForOrder(String orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", orderId));
+        return couriersInRange(order.getPickup(), orderRepository.needsBox(orderId));
+    }
+
+    /**
+     * The couriers whose vehicle reaches the pickup, closest first, only the ones with a box if {@code boxOnly}
+     */
+    private List<Courier> couriersInRange(Location pickup, boolean boxOnly) {
+        if (pickup == null) {
+            return Collections.emptyList();
+        }
+        List<Courier> candidates = new ArrayList<>();
+        vehiclesRange.forEach((vehicle, range) -> {
+            candidates.addAll(courierRepository.findNear(pickup, range, vehicle, true));
+            if (!boxOnly) {
+                candidates.addAll(courierRepository.findNear(pickup, range, vehicle, false));
             }
-        },
-        FOOD {
-            @Override
-            public boolean test(Order order) {
-                return order.getFood();
+        });
+        double[] distances = new double[candidates.size()];
+        int[] inRange = new int[candidates.size()];
+        int count = 0;
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = distanceCalculator.calculateDistance(candidates.get(i).getLocation(), pickup);
+            if (distances[i] <= rangeOf(candidates.get(i))) {
+                inRange[count++] = i;
             }
-        }, ALL {
-            @Override
-            public boolean test(Order order) {
-                return true;
+        }
+        IndexSort.sort(inRange, count, (i, j) -> {
+            int byDistance = Double.compare(distances[i], distances[j]);
+            return byDistance != 0 ? byDistance : candidates.get(i).getId().compareTo(candidates.get(j).getId());
+        });
+        List<Courier> couriers = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            couriers.add(candidates.get(inRange[n]));
+        }
+        return couriers;
+    }
+
+    /**
+     * The best {@code limit} orders each courier can see, as ranked for them, for the assignment engine. Couriers
+     * are grouped to share reads like in {@link #ordersForCouriers}, and groups are ranked in parallel.
+     */
+    List<Eligibility> eligibility(Collection<Courier> couriers, int limit) {
+        return couriers.stream()
+                .collect(Collectors.groupingBy(this::batchGroupOf))
+                .values()
+                .parallelStream()
+                .flatMap(group -> {
+                    if (rangeOf(group.get(0)) < 0) {
+                        orderMetrics.rejected(OrderMetrics.Rejection.UNKNOWN_VEHICLE, group.size());
+                    }
+                    List<OrderBatch> nearbyOrders = findNearAll(group);
+                    List<Eligibility> eligibility = new ArrayList<>();
+                    if (!nearbyOrders.isEmpty()) {
+                        group.forEach(courier -> merge(select(courier, rangeOf(courier), nearbyOrders, limit, null),
+                                limit, (candidates, i) -> eligibility.add(candidates.eligibility(i))));
+                    }
+                    return eligibility.stream();
+                })
+                .collect(Collectors.toList());
+    }
+
+    //If the vehicle is not configured, the courier won't be assigned but the service won't fail and
+    //another courier will deliver the order.
+    //This should log an error so somebody knows there's a problem in the config.
+    double rangeOf(Courier courier) {
+        return vehiclesRange.getOrDefault(courier.getVehicle(), -1d);
+    }
+
+    /**
+     * Whether the courier's vehicle reaches the pickup from where the courier is
+     */
+    boolean reaches(Courier courier, Location pickup) {
+        return courier.getLocation() != null && pickup != null
+                && distanceCalculator.calculateDistance(courier.getLocation(), pickup) <= rangeOf(courier);
+    }
+
+    private BatchGroup batchGroupOf(Courier courier) {
+        Location location = courier.getLocation();
+        if (location == null) {
+            return new BatchGroup(-1d, 0, 0);
+        }
+        return new BatchGroup(rangeOf(courier), (int) Math.floor(location.getLat() / BATCH_CELL_SIZE),
+                (int) Math.floor(location.getLon() / BATCH_CELL_SIZE));
+    }
+
+    /**
+     * The orders that may be visible to any courier of the group: they all have the same range
+     */
+    private List<OrderBatch> findNearAll(List<Courier> group) {
+        Location anchor = group.get(0).getLocation();
+        double range = rangeOf(group.get(0));
+        if (anchor == null || range < 0) {
+            return findNear(anchor, -1d);
+        }
+        double spread = 0;
+        for (Courier courier : group) {
+            spread = Math.max(spread, distanceCalculator.calculateDistance(anchor, courier.getLocation()));
+        }
+        return findNear(anchor, range + spread);
+    }
+
+    private List<OrderBatch> findNear(Location location, double range) {
+        long start = System.nanoTime();
+        List<OrderBatch> nearbyOrders = orderRepository.findNear(location, range);
+        orderMetrics.record(OrderMetrics.Phase.READ, start);
+        return nearbyOrders;
+    }
+
+    private OrderPage rank(Courier courier, double range, List<OrderBatch> nearbyOrders, int limit, RankCursor after) {
+        if (range < 0) {
+            orderMetrics.rejected(OrderMetrics.Rejection.UNKNOWN_VEHICLE, 1);
+        }
+        if (nearbyOrders.isEmpty()) {
+            return new OrderPage(Collections.emptyList(), null);
+        }
+        List<Candidates> shards = select(courier, range, nearbyOrders, limit, after);
+        List<Order> page = new ArrayList<>();
+        RankCursor[] last = new RankCursor[1];
+        merge(shards, limit, (candidates, i) -> {
+            page.add(candidates.orders.getOrder(i));
+            last[0] = candidates.cursorOf(i);
+        });
+        int remaining = 0;
+        for (Candidates candidates : shards) {
+            remaining += candidates.remaining;
+        }
+        return new OrderPage(page, page.size() == remaining ? null : last[0].encode());
+    }
+
+    /**
+     * Ranks the orders of every region on its own, in parallel if there are many, selecting the best {@code limit}
+     * of each one
+     */
+    private List<Candidates> select(Courier courier, double range, List<OrderBatch> nearbyOrders, int limit,
+                                    RankCursor after) {
+        int size = 0;
+        for (OrderBatch orders : nearbyOrders) {
+            size += orders.size();
+        }
+        Stream<OrderBatch> shards = nearbyOrders.size() > 1 && size >= PARALLEL_RANKING_ORDERS
+                ? nearbyOrders.parallelStream()
+                : nearbyOrders.stream();
+        return shards.map(orders -> {
+            Candidates candidates = new Candidates(courier, orders, range);
+            candidates.select(limit, after);
+            return candidates;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Merges the sorted selections of the regions by the same ranking, passing the best {@code limit} orders overall
+     * to the consumer, best first, with the candidates they belong to
+     */
+    private void merge(List<Candidates> shards, int limit, ObjIntConsumer<Candidates> consumer) {
+        PriorityQueue<Candidates> heads = new PriorityQueue<>(Math.max(shards.size(), 1), Candidates::compareHeads);
+        for (Candidates candidates : shards) {
+            if (candidates.hasHead()) {
+                heads.add(candidates);
+            }
+        }
+        int merged = 0;
+        while (merged < limit && !heads.isEmpty()) {
+            Candidates best = heads.poll();
+            consumer.accept(best, best.visible[best.head++]);
+            merged++;
+            if (best.hasHead()) {
+                heads.add(best);
             }
         }
+        orderMetrics.returned(merged);
     }
 
     @lombok.Value
-    private class Candidate {
-        private Courier courier;
-        private Order order;
-        private double distance;
+    private static class BatchGroup {
+        private final double range;
+        private final int row;
+        private final int column;
+    }
+
+    public enum SlotPriority implements Predicate<Order> {
+        VIP(OrderBatch.VIP),
+        FOOD(OrderBatch.FOOD),
+        ALL(0);
+
+        private final int requiredFlags;
+
+        SlotPriority(int requiredFlags) {
+            this.requiredFlags = requiredFlags;
+        }
+
+        @Override
+        public boolean test(Order order) {
+            return matches(OrderBatch.flagsOf(order));
+        }
+
+        /**
+         * Same as {@link #test}, on the flags of an {@link OrderBatch}
+         */
+        public boolean matches(int flags) {
+            return (flags & requiredFlags) == requiredFlags;
+        }
+    }
+
+    /**
+     * The distance orders are ranked by. Either way, couriers only see the orders whose pickup is within their range.
+     */
+    public enum RankingDistance {
+        /**
+         * From the courier to the pickup
+         */
+        PICKUP,
+        /**
+         * From the courier to the pickup and then to the delivery, to prefer short trips. The delivery leg is
+         * measured once per order, when it's stored, like any other distance, and it's 0 for orders without
+         * delivery.
+         */
+        TOTAL_TRIP
+    }
+
+    /**
+     * The orders of a region near a courier, filtered and ranked as primitives: orders are only touched to build the
+     * result
+     */
+    private class Candidates {
+        private final Courier courier;
+        private final OrderBatch orders;
+        private final double range;
+        private final double[] distances;
+        private final int[] visible;
+        private int visibleCount;
+        private long[] rankKeys;
+        private int remaining;
+        private int selected;
+        private int head;
 
-        Candidate(Courier courier, Order order) {
+        Candidates(Courier courier, OrderBatch orders, double range) {
             this.courier = courier;
-            this.order = order;
-            this.distance = distanceCalculator.calculateDistance(courier.getLocation(), order.getPickup());
+            this.orders = orders;
+            this.range = range;
+            this.distances = new double[orders.size()];
+            this.visible = new int[orders.size()];
+            long start = System.nanoTime();
+            distanceCalculator.calculateDistances(courier.getLocation(), orders.getLats(), orders.getLons(),
+                    orders.getCosLats(), orders.size(), range, distances);
+            start = orderMetrics.record(OrderMetrics.Phase.DISTANCE, start);
+            int needsBox = 0;
+            for (int i = 0; i < orders.size(); i++) {
+                if (canCourierSeeOrder(i)) {
+                    visible[visibleCount++] = i;
+                } else if (!boxCompatible(i)) {
+                    needsBox++;
+                }
+            }
+            orderMetrics.record(OrderMetrics.Phase.FILTER, start);
+            orderMetrics.scanned(orders.size());
+            orderMetrics.rejected(OrderMetrics.Rejection.BOX, needsBox);
+            orderMetrics.rejected(OrderMetrics.Rejection.RANGE, orders.size() - visibleCount - needsBox);
+        }
+
+        RankCursor cursorOf(int i) {
+            return new RankCursor(rankKeys[i], id(i));
+        }
+
+        Eligibility eligibility(int i) {
+            return new Eligibility(courier, orders.getOrder(i), distances[i], priorityByFlags[orders.getFlags()[i]]);
+        }
+
+        boolean hasHead() {
+            return head < selected;
+        }
+
+        /**
+         * Compares the best orders of both candidates not merged yet
+         */
+        int compareHeads(Candidates other) {
+            int i = visible[head];
+            int j = other.visible[other.head];
+            int byKey = Long.compare(rankKeys[i], other.rankKeys[j]);
+            return byKey != 0 ? byKey : id(i).compareTo(other.id(j));
+        }
+
+        /**
+         * Ranks the visible orders after the cursor and moves the best {@code limit} ones, sorted, to the front of
+         * {@link #visible}, counting them in {@link #selected}
+         */
+        void select(int limit, RankCursor after) {
+            long start = System.nanoTime();
+            rankKeys = new long[orders.size()];
+            remaining = 0;
+            for (int n = 0; n < visibleCount; n++) {
+                int i = visible[n];
+                double distance = rankingDistance == RankingDistance.TOTAL_TRIP
+                        ? distances[i] + orders.getDeliveryLegs()[i]
+                        : distances[i];
+                rankKeys[i] = RankKey.pack(distanceSlot(distance), priorityByFlags[orders.getFlags()[i]], distance);
+                if (after == null || after.precedes(rankKeys[i], id(i))) {
+                    visible[remaining++] = i;
+                }
+            }
+            selected = IndexSort.selectSmallest(visible, remaining, limit, (i, j) -> {
+                int byKey = Long.compare(rankKeys[i], rankKeys[j]);
+                return byKey != 0 ? byKey : id(i).compareTo(id(j));
+            });
+            orderMetrics.record(OrderMetrics.Phase.SORT, start);
+        }
+
+        private String id(int i) {
+            return orders.getOrder(i).getId();
         }
 
         /**
@@ -109,35 +546,20 @@ public class OrderService {
          * For example, if the "DistanceCalculator" was a bean, injecting it into the Courier object would be difficult,
          * specially if the Courier class was managed by a persistence engine like any JPA implementation.
          */
-        private boolean canCourierSeeOrder() {
-            return boxCompatible() && isInRange();
-        }
-
-        private boolean boxCompatible() {
-            return !needsBox(order) || courier.getBox();
+        private boolean canCourierSeeOrder(int i) {
+            return boxCompatible(i) && isInRange(i);
         }
 
-        private boolean isInRange() {
-            //If the vehicle is not configured, the courier won't be assigned but the service won't fail and
-            //another courier will deliver the order.
-            //This should log an error so somebody knows there's a problem in the config.
-            return vehiclesRange.getOrDefault(courier.getVehicle(), -1d) >= distance;
+        private boolean boxCompatible(int i) {
+            return !orders.has(i, OrderBatch.NEEDS_BOX) || courier.getBox();
         }
 
-        private boolean needsBox(Order order) {
-            return boxableFoods.stream()
-                    .anyMatch(boxableFood -> order.getDescription().toLowerCase().contains(boxableFood));
+        private boolean isInRange(int i) {
+            return range >= distances[i];
         }
 
-        int distanceSlot() {
+        private int distanceSlot(double distance) {
             return (int) (distance / distanceSlotRange); // Assuming slot is [closed (inclusive), open (exclusive))
         }
-
-        int priority() {
-            return IntStream.range(0, slotPriority.size())
-                    .filter(i -> slotPriority.get(i).test(getOrder()))
-                    .findFirst()
-                    .orElse(Integer.MAX_VALUE);
-        }
     }
 }
@@ -0,0 +1,25 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Order;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * What changed in the orders available to a courier since the previous delta
+ */
+@Value
+public class OrdersDelta {
+    /**
+     * Orders that appeared, or changed, since the previous delta
+     */
+    private final List<Order> added;
+    /**
+     * Ids of the orders no longer available
+     */
+    private final List<String> removed;
+    /**
+     * Ids of all the orders available, as ranked now
+     */
+    private final List<String> ranking;
+}
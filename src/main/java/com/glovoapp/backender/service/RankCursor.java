@@ -0,0 +1,60 @@
+package com.glovoapp.backender.service;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of an order in a courier's ranking: pages continue with the orders ranked strictly after it.
+ * <p>
+ * The ranking is ordered by {@link RankKey} and then by order id, so it's a total order and a cursor is still
+ * meaningful after orders are created or cancelled between pages.
+ */
+@Value
+class RankCursor implements Comparable<RankCursor> {
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = ":";
+
+    private final long rankKey;
+    private final String orderId;
+
+    /**
+     * Opaque, URL-safe representation of the cursor, stable across releases thanks to its version prefix
+     */
+    String encode() {
+        String key = String.join(SEPARATOR, VERSION, Long.toHexString(rankKey), orderId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static RankCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR, 3);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new InvalidRequestException("Unsupported cursor '" + cursor + "'");
+            }
+            return new RankCursor(Long.parseUnsignedLong(parts[1], 16), parts[2]);
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not a number
+            throw new InvalidRequestException("Invalid cursor '" + cursor + "'", e);
+        }
+    }
+
+    /**
+     * Whether an order with the given ranking key and id is ranked after the cursor
+     */
+    boolean precedes(long rankKey, String orderId) {
+        int byKey = Long.compare(rankKey, this.rankKey);
+        return byKey != 0 ? byKey > 0 : orderId.compareTo(this.orderId) > 0;
+    }
+
+    /**
+     * Orders cursors by their position in the ranking
+     */
+    @Override
+    public int compareTo(RankCursor other) {
+        int byKey = Long.compare(rankKey, other.rankKey);
+        return byKey != 0 ? byKey : orderId.compareTo(other.orderId);
+    }
+}
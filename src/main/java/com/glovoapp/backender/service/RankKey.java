@@ -0,0 +1,24 @@
+package com.glovoapp.backender.service;
+
+/**
+ * Packs the ranking criteria of an order into a single long, so comparing two candidates is one
+ * {@link Long#compare}: the distance slot takes the 24 most significant bits, the priority the next 8 and the
+ * distance, as the bits of a non-negative float, the 32 least significant ones.
+ * <p>
+ * Values out of those ranges saturate. Floats keep the distance to a few meters within any city, which is enough
+ * to order orders inside the same slot.
+ */
+final class RankKey {
+    static final int MAX_DISTANCE_SLOT = (1 << 24) - 1;
+    static final int MAX_PRIORITY = (1 << 8) - 1;
+
+    private RankKey() {
+    }
+
+    static long pack(int distanceSlot, int priority, double distance) {
+        long slot = Math.min(Math.max(distanceSlot, 0), MAX_DISTANCE_SLOT);
+        long rank = Math.min(Math.max(priority, 0), MAX_PRIORITY);
+        long distanceBits = Float.floatToIntBits((float) Math.max(distance, 0d)) & 0xffffffffL;
+        return slot << 40 | rank << 32 | distanceBits;
+    }
+}
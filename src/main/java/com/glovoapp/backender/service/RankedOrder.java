@@ -0,0 +1,14 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Order;
+import lombok.Value;
+
+/**
+ * An order ranked for a courier, with the cursor of its position in the ranking, so rankings of several nodes can be
+ * merged into one
+ */
+@Value
+public class RankedOrder {
+    private final Order order;
+    private final String cursor;
+}
@@ -0,0 +1,192 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Location;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Road distances between the cells of a grid over a city, precomputed with a routing engine on the road network, so
+ * a query is two cell lookups and a multiplication instead of a search in the road graph.
+ * <p>
+ * The file has a header (magic, format version, cell size in degrees, first row and column, rows and columns) and a
+ * float from the center of every cell to the center of every cell, one origin cell after the other. Version 2 files,
+ * as {@linkplain #write written} here, hold detour factors over the straight line between the centers, infinite when
+ * there's no way, and are read straight from the mapped file, off the heap. Version 1 files hold the road distances in
+ * kilometers, NaN when there's no way, turned into detour factors in place when loaded.
+ * <p>
+ * Detours are applied to the straight line between any two points of those cells, so one-way streets and rivers make
+ * some pairs further than others. Points in the same cell or outside the grid keep their straight line.
+ */
+@Component
+@ConditionalOnExpression("!'${backender.road_distances}'.isEmpty()")
+public class RoadDistanceMatrix implements DistanceStrategy {
+    private static final int MAGIC = 0x424b5244; // "BKRD"
+    private static final int DISTANCES_VERSION = 1;
+    private static final int DETOURS_VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES * 6 + Double.BYTES;
+    private static final DistanceCalculator STRAIGHT_LINES = new DistanceCalculator();
+
+    private final double cellSize;
+    private final int minRow;
+    private final int minColumn;
+    private final int rows;
+    private final int columns;
+    // Detour factor from every cell to every cell, one origin cell after the other
+    private final FloatBuffer detours;
+
+    @Autowired
+    public RoadDistanceMatrix(@Value("${backender.road_distances}") String file) {
+        this(read(Paths.get(file)));
+    }
+
+    /**
+     * @param cellSize  side of every cell, in degrees
+     * @param distances road distances between the centers of the cells, in kilometers, as in version 1 files
+     */
+    RoadDistanceMatrix(double cellSize, int minRow, int minColumn, int rows, int columns, float[] distances) {
+        this(cellSize, minRow, minColumn, rows, columns,
+                FloatBuffer.wrap(toDetours(cellSize, minRow, minColumn, rows, columns, distances.clone())));
+    }
+
+    private RoadDistanceMatrix(double cellSize, int minRow, int minColumn, int rows, int columns, FloatBuffer detours) {
+        this.cellSize = Math.toRadians(cellSize);
+        this.minRow = minRow;
+        this.minColumn = minColumn;
+        this.rows = rows;
+        this.columns = columns;
+        this.detours = detours;
+    }
+
+    private RoadDistanceMatrix(RoadDistanceMatrix loaded) {
+        this.cellSize = loaded.cellSize;
+        this.minRow = loaded.minRow;
+        this.minColumn = loaded.minColumn;
+        this.rows = loaded.rows;
+        this.columns = loaded.columns;
+        this.detours = loaded.detours;
+    }
+
+    @Override
+    public double distance(double fromLat, double fromLon, double toLat, double toLon, double straightLine) {
+        int from = cellOf(fromLat, fromLon);
+        int to = cellOf(toLat, toLon);
+        if (from < 0 || to < 0 || from == to) {
+            return straightLine;
+        }
+        return straightLine * detours.get(from * rows * columns + to);
+    }
+
+    /**
+     * Writes a version 2 file, with the detour factors of the road distances between the centers of the cells
+     */
+    static void write(Path file, double cellSize, int minRow, int minColumn, int rows, int columns, float[] distances) {
+        float[] detours = toDetours(cellSize, minRow, minColumn, rows, columns, distances.clone());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(DETOURS_VERSION);
+            out.writeDouble(cellSize);
+            out.writeInt(minRow);
+            out.writeInt(minColumn);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            for (float detour : detours) {
+                out.writeFloat(detour);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write road distances " + file, e);
+        }
+    }
+
+    private static RoadDistanceMatrix read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a road distances file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != DISTANCES_VERSION && version != DETOURS_VERSION) {
+                throw new IllegalStateException("Unsupported road distances version " + version + ": " + file);
+            }
+            double cellSize = buffer.getDouble();
+            int minRow = buffer.getInt();
+            int minColumn = buffer.getInt();
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            // The mapping stays valid once the channel is closed
+            FloatBuffer values = buffer.asFloatBuffer();
+            if (version == DETOURS_VERSION) {
+                checkSize(cellSize, rows, columns, values.remaining());
+                return new RoadDistanceMatrix(cellSize, minRow, minColumn, rows, columns, values);
+            }
+            float[] distances = new float[values.remaining()];
+            values.get(distances);
+            return new RoadDistanceMatrix(cellSize, minRow, minColumn, rows, columns,
+                    FloatBuffer.wrap(toDetours(cellSize, minRow, minColumn, rows, columns, distances)));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalStateException("Truncated or corrupt road distances " + file, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read road distances " + file, e);
+        }
+    }
+
+    /**
+     * Turns the road distances into detour factors, in place, so loading a version 1 file only needs one array
+     */
+    private static float[] toDetours(double cellSize, int minRow, int minColumn, int rows, int columns,
+                                     float[] distances) {
+        checkSize(cellSize, rows, columns, distances.length);
+        int cells = rows * columns;
+        for (int from = 0; from < cells; from++) {
+            Location origin = centerOf(from, cellSize, minRow, minColumn, columns);
+            for (int to = 0; to < cells; to++) {
+                int pair = from * cells + to;
+                if (from == to) {
+                    distances[pair] = 1;
+                } else if (Float.isNaN(distances[pair])) {
+                    distances[pair] = Float.POSITIVE_INFINITY;
+                } else {
+                    double straightLine = STRAIGHT_LINES.calculateDistance(origin,
+                            centerOf(to, cellSize, minRow, minColumn, columns));
+                    distances[pair] = (float) Math.max(1, distances[pair] / straightLine);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static void checkSize(double cellSize, int rows, int columns, int values) {
+        long cells = (long) rows * columns;
+        if (!(cellSize > 0) || rows <= 0 || columns <= 0 || cells * cells != values) {
+            throw new IllegalArgumentException("Inconsistent road distances of " + rows + "x" + columns + " cells");
+        }
+    }
+
+    /**
+     * Index of the cell of a point in radians, or -1 outside of the grid
+     */
+    private int cellOf(double lat, double lon) {
+        int row = (int) Math.floor(lat / cellSize) - minRow;
+        int column = (int) Math.floor(lon / cellSize) - minColumn;
+        return row < 0 || row >= rows || column < 0 || column >= columns ? -1 : row * columns + column;
+    }
+
+    private static Location centerOf(int cell, double cellSizeDegrees, int minRow, int minColumn, int columns) {
+        return new Location((minRow + cell / columns + 0.5) * cellSizeDegrees,
+                (minColumn + cell % columns + 0.5) * cellSizeDegrees);
+    }
+}
@@ -0,0 +1,38 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.AssignmentVM;
+import com.glovoapp.backender.service.AssignmentEngine;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AssignmentControllerTest {
+    @Mock
+    private AssignmentEngine assignmentEngine;
+
+    @InjectMocks
+    private AssignmentController assignmentController;
+
+    @Test
+    void assignments_noAssignments_empty() {
+        when(assignmentEngine.assignments()).thenReturn(ImmutableMap.of());
+
+        assertEquals(ImmutableList.of(), assignmentController.assignments());
+    }
+
+    @Test
+    void assignments_someAssignments_sortedByCourier() {
+        when(assignmentEngine.assignments()).thenReturn(ImmutableMap.of("courier-2", "order-1", "courier-1", "order-2"));
+
+        assertEquals(ImmutableList.of(new AssignmentVM("courier-1", "order-2"), new AssignmentVM("courier-2", "order-1")),
+                assignmentController.assignments());
+    }
+}
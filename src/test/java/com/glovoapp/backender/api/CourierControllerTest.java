@@ -0,0 +1,40 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.LocationVM;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.service.ClusterRouter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+class CourierControllerTest {
+    private static final String EXCEPTION_MSG = "Whoops... an exception";
+    private static final String COURIER_ID = "1";
+
+    @Mock
+    private ClusterRouter clusterRouter;
+
+    @InjectMocks
+    private CourierController courierController;
+
+    @Test
+    void updateLocation_mapsLocation() {
+        courierController.updateLocation(COURIER_ID, new LocationVM(1d, 2d));
+
+        Mockito.verify(clusterRouter).updateLocation(COURIER_ID, new Location(1d, 2d));
+    }
+
+    @Test
+    void updateLocation_exception_bubbles() {
+        Mockito.when(clusterRouter.updateLocation(COURIER_ID, new Location(1d, 2d)))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class, () -> courierController.updateLocation(COURIER_ID, new LocationVM(1d, 2d)), EXCEPTION_MSG);
+    }
+}
@@ -1,7 +1,20 @@
 package com.glovoapp.backender.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.api.model.AvailableOrdersRequestVM;
+import com.glovoapp.backender.api.model.CourierVM;
+import com.glovoapp.backender.api.model.LocationVM;
+import com.glovoapp.backender.api.model.NewOrderVM;
 import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
 import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierOrdersFeed;
+import com.glovoapp.backender.service.OrderMetrics;
+import com.glovoapp.backender.service.OrderPage;
 import com.glovoapp.backender.service.OrderService;
 import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.Test;
@@ -9,9 +22,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,36 +49,61 @@ class OrderControllerTest {
     @Mock
     private OrderService orderService;
 
+    @Mock
+    private ClusterRouter clusterRouter;
+
+    @Mock
+    private CourierOrdersFeed ordersFeed;
+
+    @Mock
+    private OrderMetrics orderMetrics;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private OrderFragments orderFragments = new OrderFragments(new OrderRepository(ImmutableList.of()), objectMapper);
+
     @InjectMocks
     private OrderController orderController;
 
     @Test
-    void orders_noOrders_empty() {
+    void orders_noOrders_empty() throws IOException {
         Mockito.when(orderService.orders())
                 .thenReturn(ImmutableList.of());
 
-        assertEquals(ImmutableList.of(), orderController.orders());
+        assertEquals("[]", body(orderController.orders(null, null)));
     }
 
     @Test
-    void orders_someOrders_ok() {
+    void orders_someOrders_ok() throws IOException {
         Mockito.when(orderService.orders())
                 .thenReturn(ImmutableList.of(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build(),
                         Order.builder().id(ORDER_2_ID).description(ORDER_2_DESCRIPTION).build()));
 
-        assertEquals(
-                ImmutableList.of(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), new OrderVM(ORDER_2_ID, ORDER_2_DESCRIPTION)),
-                orderController.orders());
+        assertEquals(objectMapper.writeValueAsString(
+                ImmutableList.of(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), new OrderVM(ORDER_2_ID, ORDER_2_DESCRIPTION))),
+                body(orderController.orders(null, null)));
     }
 
     @Test
-    void orders_orderWithNullData_ok() {
+    void orders_orderWithNullData_ok() throws IOException {
         Mockito.when(orderService.orders())
-                .thenReturn(ImmutableList.of(Order.builder().build()));
+                .thenReturn(ImmutableList.of(Order.builder().description("Quotes \" and \u00f1").build()));
 
-        assertEquals(
-                ImmutableList.of(new OrderVM(null, null)),
-                orderController.orders());
+        assertEquals(objectMapper.writeValueAsString(ImmutableList.of(new OrderVM(null, "Quotes \" and \u00f1"))),
+                body(orderController.orders(null, null)));
+    }
+
+    @Test
+    void orders_withLimit_pageAndNextCursor() throws IOException {
+        Mockito.when(orderService.orders(1, null))
+                .thenReturn(new OrderPage(ImmutableList.of(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build()), "next"));
+
+        ResponseEntity<StreamingResponseBody> response = orderController.orders(1, null);
+
+        assertEquals("next", response.getHeaders().getFirst(OrderController.NEXT_CURSOR_HEADER));
+        assertEquals("[{\"id\":\"1\",\"description\":\"Order 1\"}]", body(response));
     }
 
     @Test
@@ -64,43 +111,170 @@ class OrderControllerTest {
         Mockito.when(orderService.orders())
                 .thenThrow(new RuntimeException(EXCEPTION_MSG));
 
-        assertThrows(RuntimeException.class, () -> orderController.orders(), EXCEPTION_MSG);
+        assertThrows(RuntimeException.class, () -> orderController.orders(null, null), EXCEPTION_MSG);
     }
 
     @Test
     void ordersForCourier_noOrders_empty() {
-        Mockito.when(orderService.ordersForCourier(COURIER_ID))
-                .thenReturn(ImmutableList.of());
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null))
+                .thenReturn(new OrderPage(ImmutableList.of(), null));
 
-        assertEquals(ImmutableList.of(), orderController.orders(COURIER_ID));
+        assertEquals("[]", new String(orderController.orders(COURIER_ID, null, null).getBody(), StandardCharsets.UTF_8));
     }
 
     @Test
-    void ordersForCourier_someOrders_ok() {
-        Mockito.when(orderService.ordersForCourier(COURIER_ID))
-                .thenReturn(ImmutableList.of(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build(),
-                        Order.builder().id(ORDER_2_ID).description(ORDER_2_DESCRIPTION).build()));
+    void ordersForCourier_someOrders_ok() throws IOException {
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null))
+                .thenReturn(new OrderPage(ImmutableList.of(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build(),
+                        Order.builder().id(ORDER_2_ID).description(ORDER_2_DESCRIPTION).build()), null));
 
-        assertEquals(
-                ImmutableList.of(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), new OrderVM(ORDER_2_ID, ORDER_2_DESCRIPTION)),
-                orderController.orders(COURIER_ID));
+        assertEquals(objectMapper.writeValueAsString(
+                ImmutableList.of(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), new OrderVM(ORDER_2_ID, ORDER_2_DESCRIPTION))),
+                new String(orderController.orders(COURIER_ID, null, null).getBody(), StandardCharsets.UTF_8));
     }
 
     @Test
     void ordersForCourier_orderWithNullData_ok() {
-        Mockito.when(orderService.ordersForCourier(COURIER_ID))
-                .thenReturn(ImmutableList.of(Order.builder().build()));
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null))
+                .thenReturn(new OrderPage(ImmutableList.of(Order.builder().build()), null));
 
-        assertEquals(
-                ImmutableList.of(new OrderVM(null, null)),
-                orderController.orders(COURIER_ID));
+        assertEquals("[{\"id\":null,\"description\":null}]",
+                new String(orderController.orders(COURIER_ID, null, null).getBody(), StandardCharsets.UTF_8));
     }
 
     @Test
     void ordersForCourier_exception_bubbles() {
-        Mockito.when(orderService.ordersForCourier(COURIER_ID))
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null))
                 .thenThrow(new RuntimeException(EXCEPTION_MSG));
 
-        assertThrows(RuntimeException.class, () -> orderController.orders(COURIER_ID), EXCEPTION_MSG);
+        assertThrows(RuntimeException.class, () -> orderController.orders(COURIER_ID, null, null), EXCEPTION_MSG);
+    }
+
+    @Test
+    void ordersForCourier_withLimit_nextCursorHeader() {
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, 1, "cursor"))
+                .thenReturn(new OrderPage(ImmutableList.of(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build()),
+                        "next"));
+
+        ResponseEntity<byte[]> response = orderController.orders(COURIER_ID, 1, "cursor");
+
+        assertEquals("[{\"id\":\"1\",\"description\":\"Order 1\"}]", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals("next", response.getHeaders().getFirst(OrderController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void ordersForCourier_lastPage_noNextCursorHeader() {
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, 1, null))
+                .thenReturn(new OrderPage(ImmutableList.of(), null));
+
+        assertFalse(orderController.orders(COURIER_ID, 1, null).getHeaders().containsKey(OrderController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void available_streamsEveryCourier() throws IOException {
+        Mockito.when(orderService.ordersForCouriers(ImmutableList.of(COURIER_ID, "2"), 10))
+                .thenReturn(action -> {
+                    action.accept(COURIER_ID, new OrderPage(ImmutableList.of(
+                            Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build()), null));
+                    action.accept("2", new OrderPage(ImmutableList.of(), null));
+                });
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new OrderController(orderService, clusterRouter, ordersFeed, new ObjectMapper(), orderFragments, orderMetrics)
+                .available(new AvailableOrdersRequestVM(ImmutableList.of(COURIER_ID, "2"), 10))
+                .getBody()
+                .writeTo(output);
+
+        assertEquals("[{\"courierId\":\"1\",\"orders\":[{\"id\":\"1\",\"description\":\"Order 1\"}]}," +
+                "{\"courierId\":\"2\",\"orders\":[]}]", output.toString("UTF-8"));
+    }
+
+    @Test
+    void available_noLimitException_bubbles() {
+        Mockito.when(orderService.ordersForCouriers(ImmutableList.of(COURIER_ID), Integer.MAX_VALUE))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class,
+                () -> orderController.available(new AvailableOrdersRequestVM(ImmutableList.of(COURIER_ID), null)),
+                EXCEPTION_MSG);
+    }
+
+    @Test
+    void create_mapsOrder() {
+        Order order = Order.builder()
+                .id(ORDER_1_ID)
+                .description(ORDER_1_DESCRIPTION)
+                .food(true)
+                .vip(false)
+                .pickup(new Location(1d, 2d))
+                .delivery(new Location(3d, 4d))
+                .build();
+        Mockito.when(clusterRouter.create(order)).thenReturn(order);
+
+        assertEquals(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), orderController.create(
+                new NewOrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION, true, false, new LocationVM(1d, 2d), new LocationVM(3d, 4d))));
+    }
+
+    @Test
+    void create_noLocations_ok() {
+        Order order = Order.builder().description(ORDER_1_DESCRIPTION).build();
+        Mockito.when(clusterRouter.create(order)).thenReturn(order.toBuilder().id(ORDER_1_ID).build());
+
+        assertEquals(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION),
+                orderController.create(new NewOrderVM(null, ORDER_1_DESCRIPTION, null, null, null, null)));
+    }
+
+    @Test
+    void cancel_returnsCancelled() {
+        Mockito.when(clusterRouter.cancel(ORDER_1_ID))
+                .thenReturn(Order.builder().id(ORDER_1_ID).description(ORDER_1_DESCRIPTION).build());
+
+        assertEquals(new OrderVM(ORDER_1_ID, ORDER_1_DESCRIPTION), orderController.cancel(ORDER_1_ID));
+    }
+
+    @Test
+    void cancel_exception_bubbles() {
+        Mockito.when(clusterRouter.cancel(ORDER_1_ID))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class, () -> orderController.cancel(ORDER_1_ID), EXCEPTION_MSG);
+    }
+
+    @Test
+    void couriers_mapsCouriers() {
+        Mockito.when(orderService.couriersForOrder(ORDER_1_ID))
+                .thenReturn(ImmutableList.of(Courier.builder().id(COURIER_ID).name("Manolo").vehicle(Vehicle.MOTORCYCLE).build()));
+
+        assertEquals(ImmutableList.of(new CourierVM(COURIER_ID, "Manolo")), orderController.couriers(ORDER_1_ID));
+    }
+
+    @Test
+    void couriers_exception_bubbles() {
+        Mockito.when(orderService.couriersForOrder(ORDER_1_ID))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class, () -> orderController.couriers(ORDER_1_ID), EXCEPTION_MSG);
+    }
+
+    @Test
+    void stream_noLimit_subscribedToEveryOrder() {
+        Mockito.when(ordersFeed.subscribe(Mockito.eq(COURIER_ID), Mockito.eq(Integer.MAX_VALUE), Mockito.any(), Mockito.any()))
+                .thenReturn(Mockito.mock(CourierOrdersFeed.Subscription.class));
+
+        assertNotNull(orderController.stream(COURIER_ID, null));
+    }
+
+    @Test
+    void stream_exception_bubbles() {
+        Mockito.when(ordersFeed.subscribe(Mockito.eq(COURIER_ID), Mockito.eq(10), Mockito.any(), Mockito.any()))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class, () -> orderController.stream(COURIER_ID, 10), EXCEPTION_MSG);
+    }
+
+    private static String body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+        return output.toString("UTF-8");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.glovoapp.backender.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderFragmentsTest {
+    private static final Order PIZZA = Order.builder().id("order-1").description("Pizza \"margherita\" ñ").build();
+    private static final Order CHAIRS = Order.builder().id("order-2").description("2 chairs").build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OrderRepository orderRepository;
+    private OrderFragments orderFragments;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = new OrderRepository(ImmutableList.of(PIZZA));
+        orderFragments = new OrderFragments(orderRepository, objectMapper);
+    }
+
+    @Test
+    void toJson_someOrders_sameAsSerializingViews() throws IOException {
+        assertEquals(objectMapper.writeValueAsString(ImmutableList.of(OrderViews.toOrderVM(PIZZA), OrderViews.toOrderVM(CHAIRS))),
+                new String(orderFragments.toJson(ImmutableList.of(PIZZA, CHAIRS)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJson_noOrders_emptyArray() {
+        assertEquals("[]", new String(orderFragments.toJson(ImmutableList.of()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJson_storedOrder_serializedOnFirstRead() {
+        orderRepository.save(CHAIRS);
+
+        orderFragments.toJson(ImmutableList.of(CHAIRS));
+        orderFragments.toJson(ImmutableList.of(CHAIRS));
+
+        assertEquals(1, orderFragments.stats().missCount());
+        assertEquals(1, orderFragments.stats().hitCount());
+    }
+
+    @Test
+    void toJson_changedOrder_newVersion() throws IOException {
+        Order changed = PIZZA.toBuilder().description("Calzone").build();
+        orderRepository.save(changed);
+
+        assertEquals(objectMapper.writeValueAsString(ImmutableList.of(new OrderVM("order-1", "Calzone"))),
+                new String(orderFragments.toJson(ImmutableList.of(changed)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_someOrders_sameAsToJson() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        orderFragments.write(ImmutableList.of(PIZZA, CHAIRS), output);
+
+        assertEquals(new String(orderFragments.toJson(ImmutableList.of(PIZZA, CHAIRS)), StandardCharsets.UTF_8),
+                output.toString("UTF-8"));
+    }
+}
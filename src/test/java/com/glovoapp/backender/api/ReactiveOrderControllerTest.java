@@ -0,0 +1,127 @@
+package com.glovoapp.backender.api;
+
+import com.glovoapp.backender.api.model.OrderVM;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.service.ClusterRouter;
+import com.glovoapp.backender.service.CourierOrdersFeed;
+import com.glovoapp.backender.service.OrderPage;
+import com.glovoapp.backender.service.OrdersDelta;
+import com.glovoapp.backender.service.OrderService;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveOrderControllerTest {
+    private static final String EXCEPTION_MSG = "Whoops... an exception";
+    private static final String COURIER_ID = "1";
+    private static final Order ORDER_1 = Order.builder().id("1").description("Order 1").build();
+    private static final Order ORDER_2 = Order.builder().id("2").description("Order 2").build();
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ClusterRouter clusterRouter;
+
+    @Mock
+    private CourierOrdersFeed ordersFeed;
+
+    @InjectMocks
+    private ReactiveOrderController orderController;
+
+    @Test
+    void orders_someOrders_ok() {
+        Mockito.when(orderService.orders()).thenReturn(ImmutableList.of(ORDER_1, ORDER_2));
+
+        assertEquals(ImmutableList.of(new OrderVM("1", "Order 1"), new OrderVM("2", "Order 2")),
+                orderController.orders(null, null).getBody().collectList().block());
+    }
+
+    @Test
+    void orders_courierIdWithLimit_nextCursorHeader() {
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, 1, null))
+                .thenReturn(new OrderPage(ImmutableList.of(ORDER_1), "next"));
+
+        ResponseEntity<Flux<OrderVM>> response = orderController.orders(COURIER_ID, 1, null).block();
+
+        assertEquals("next", response.getHeaders().getFirst(OrderController.NEXT_CURSOR_HEADER));
+        assertEquals(ImmutableList.of(new OrderVM("1", "Order 1")), response.getBody().collectList().block());
+    }
+
+    @Test
+    void orders_courierIdException_bubbles() {
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null))
+                .thenThrow(new RuntimeException(EXCEPTION_MSG));
+
+        assertThrows(RuntimeException.class, () -> orderController.orders(COURIER_ID, null, null).block(), EXCEPTION_MSG);
+    }
+
+    @Test
+    void orders_courierId_rankedOutsideOfCaller() {
+        Thread caller = Thread.currentThread();
+        Mockito.when(clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null)).thenAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread());
+            return new OrderPage(ImmutableList.of(ORDER_1), null);
+        });
+
+        assertEquals(ImmutableList.of(new OrderVM("1", "Order 1")),
+                orderController.orders(COURIER_ID, null, null).block().getBody().collectList().block());
+    }
+
+    @Test
+    void cancel_order_cancelledOutsideOfCaller() {
+        Thread caller = Thread.currentThread();
+        Mockito.when(clusterRouter.cancel(ORDER_1.getId())).thenAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread());
+            return ORDER_1;
+        });
+
+        assertEquals(new OrderVM("1", "Order 1"), orderController.cancel(ORDER_1.getId()).block());
+    }
+
+    @Test
+    void stream_disposed_subscriptionCancelled() {
+        CourierOrdersFeed.Subscription subscription = Mockito.mock(CourierOrdersFeed.Subscription.class);
+        Mockito.when(ordersFeed.subscribe(Mockito.eq(COURIER_ID), Mockito.eq(10), Mockito.any(), Mockito.any())).thenReturn(subscription);
+
+        orderController.stream(COURIER_ID, 10).subscribe().dispose();
+
+        Mockito.verify(subscription).cancel();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void stream_clientFallingBehind_failedAndCancelled() {
+        CourierOrdersFeed.Subscription subscription = Mockito.mock(CourierOrdersFeed.Subscription.class);
+        ArgumentCaptor<Consumer<OrdersDelta>> listener = ArgumentCaptor.forClass(Consumer.class);
+        Mockito.when(ordersFeed.subscribe(Mockito.eq(COURIER_ID), Mockito.eq(10), listener.capture(), Mockito.any())).thenReturn(subscription);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Never requests anything, like a client not reading
+        orderController.stream(COURIER_ID, 10).subscribe(event -> {
+        }, failure::set, null, ignored -> {
+        });
+
+        IntStream.range(0, 17).forEach(i -> listener.getValue()
+                .accept(new OrdersDelta(ImmutableList.of(), ImmutableList.of(), ImmutableList.of())));
+
+        assertTrue(failure.get() instanceof IllegalStateException);
+        Mockito.verify(subscription).cancel();
+    }
+}
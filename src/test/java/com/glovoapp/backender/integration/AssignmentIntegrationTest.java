@@ -0,0 +1,35 @@
+package com.glovoapp.backender.integration;
+
+import com.glovoapp.backender.service.AssignmentEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class AssignmentIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AssignmentEngine assignmentEngine;
+
+    @Test
+    void assignments_afterTick_everyAssignment() throws Exception {
+        assignmentEngine.tick();
+
+        mockMvc.perform(get("/assignments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(assignmentEngine.assignments().size())));
+    }
+}
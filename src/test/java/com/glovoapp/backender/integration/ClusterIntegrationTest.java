@@ -0,0 +1,183 @@
+package com.glovoapp.backender.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glovoapp.backender.Application;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Three nodes of a cluster on localhost, each one with a share of the orders and the couriers of the same files, and
+ * a standalone node with all of them to compare
+ */
+class ClusterIntegrationTest {
+    private static final int ORDERS = 60;
+    private static final String COURIER_ID = "courier-1";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final RestTemplate REST_TEMPLATE = new RestTemplate();
+
+    private static Path ordersFile;
+    private static List<String> nodes = new ArrayList<>();
+    private static String standalone;
+    private static List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        ordersFile = Files.createTempFile("cluster-orders", ".json");
+        Files.write(ordersFile, OBJECT_MAPPER.writeValueAsBytes(ordersAroundBarcelona()));
+        for (int node = 0; node < 3; node++) {
+            nodes.add("http://localhost:" + freePort());
+        }
+        for (String node : nodes) {
+            start(node, nodes);
+        }
+        standalone = "http://localhost:" + freePort();
+        start(standalone, ImmutableList.of());
+    }
+
+    @AfterAll
+    static void stopNodes() throws IOException {
+        contexts.forEach(ConfigurableApplicationContext::close);
+        Files.deleteIfExists(ordersFile);
+    }
+
+    @Test
+    void orders_everyNode_ownsShareOfOrders() throws IOException {
+        int orders = 0;
+        for (String node : nodes) {
+            int owned = ids(REST_TEMPLATE.getForObject(node + "/orders", String.class)).size();
+            assertTrue(owned < ORDERS, "Node " + node + " has every order");
+            orders += owned;
+        }
+        assertEquals(ORDERS, orders);
+    }
+
+    @Test
+    void ordersForCourier_anyNode_sameAsStandalone() {
+        String expected = REST_TEMPLATE.getForObject(standalone + "/orders/" + COURIER_ID, String.class);
+
+        for (String node : nodes) {
+            assertEquals(expected, REST_TEMPLATE.getForObject(node + "/orders/" + COURIER_ID, String.class));
+        }
+    }
+
+    @Test
+    void ordersForCourier_pagesFromDifferentNodes_sameAsStandalone() throws IOException {
+        List<String> expected = ids(REST_TEMPLATE.getForObject(standalone + "/orders/" + COURIER_ID, String.class));
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        int page = 0;
+        do {
+            String node = nodes.get(page++ % nodes.size());
+            ResponseEntity<String> response = REST_TEMPLATE.getForEntity(node + "/orders/" + COURIER_ID
+                    + "?limit=7" + (cursor == null ? "" : "&cursor=" + cursor), String.class);
+            paged.addAll(ids(response.getBody()));
+            cursor = response.getHeaders().getFirst("X-Next-Cursor");
+        } while (cursor != null);
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void ordersForCourier_invalidCursorOnAnyNode_badRequest() {
+        for (String node : nodes) {
+            HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> REST_TEMPLATE.getForObject(
+                    node + "/orders/" + COURIER_ID + "?limit=1&cursor=bad", String.class));
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        }
+    }
+
+    @Test
+    void create_anyNode_storedByOwnerAndCancelledFromAnother() throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String created = REST_TEMPLATE.postForObject(nodes.get(0) + "/orders", new HttpEntity<>(
+                "{\"description\":\"a flamingo\",\"pickup\":{\"lat\":41.45,\"lon\":2.25}}", headers), String.class);
+        String id = OBJECT_MAPPER.readTree(created).get("id").asText();
+
+        int owners = 0;
+        for (String node : nodes) {
+            owners += ids(REST_TEMPLATE.getForObject(node + "/orders", String.class)).contains(id) ? 1 : 0;
+            assertTrue(ids(REST_TEMPLATE.getForObject(node + "/orders/" + COURIER_ID, String.class)).contains(id));
+        }
+        assertEquals(1, owners);
+
+        REST_TEMPLATE.exchange(nodes.get(2) + "/orders/" + id, HttpMethod.DELETE, null, String.class);
+        for (String node : nodes) {
+            assertFalse(ids(REST_TEMPLATE.getForObject(node + "/orders/" + COURIER_ID, String.class)).contains(id));
+        }
+    }
+
+    /**
+     * Command line arguments, as default properties would be overridden by the application.yml
+     */
+    private static void start(String node, List<String> clusterNodes) {
+        List<String> args = new ArrayList<>(ImmutableList.of(
+                "--server.port=" + node.substring(node.lastIndexOf(':') + 1),
+                "--spring.jmx.enabled=false",
+                "--backender.orders_file=" + ordersFile,
+                "--backender.cluster_region_size=0.02"));
+        if (!clusterNodes.isEmpty()) {
+            args.add("--backender.cluster_nodes=" + String.join(",", clusterNodes));
+            args.add("--backender.cluster_self=" + node);
+        }
+        contexts.add(new SpringApplicationBuilder(Application.class).run(args.toArray(new String[0])));
+    }
+
+    private static List<Map<String, Object>> ordersAroundBarcelona() {
+        Random random = new Random(42);
+        List<Map<String, Object>> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(ImmutableMap.of(
+                    "id", "order-" + i,
+                    "description", i % 4 == 0 ? "1 pizza" : "2 chairs",
+                    "vip", i % 5 == 0,
+                    "food", i % 3 == 0,
+                    "pickup", ImmutableMap.of("lat", 41.3965463 + random.nextDouble() * 0.3 - 0.15,
+                            "lon", 2.1963997 + random.nextDouble() * 0.3 - 0.15)));
+        }
+        return orders;
+    }
+
+    private static List<String> ids(String orders) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode order : OBJECT_MAPPER.readTree(orders)) {
+            ids.add(order.get("id").asText());
+        }
+        return ids;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.glovoapp.backender.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.util.NestedServletException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class CourierIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DirtiesContext
+    void updateLocation_farAway_noOrders() throws Exception {
+        mockMvc.perform(put("/couriers/courier-2/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lat\":40.7127753,\"lon\":-74.0059728}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/orders/courier-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    @Test
+    void updateLocation_invalidCourierId_exception() {
+        assertThrows(NestedServletException.class, () -> mockMvc.perform(put("/couriers/courier-5/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lat\":41.0,\"lon\":2.0}")), "The Courier with id 'courier-5' was not found.");
+    }
+}
@@ -0,0 +1,35 @@
+package com.glovoapp.backender.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class MetricsIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheus_afterRanking_phasesAndCounters() throws Exception {
+        mockMvc.perform(get("/orders/courier-1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("backender_ranking_phase_seconds_bucket{phase=\"distance\"")))
+                .andExpect(content().string(containsString("backender_ranking_phase_seconds_count{phase=\"serialize\",}")))
+                .andExpect(content().string(containsString("backender_ranking_rejected_total{reason=\"box\",}")))
+                .andExpect(content().string(containsString("backender_ranking_scanned_total")));
+    }
+}
@@ -5,13 +5,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.util.NestedServletException;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -23,16 +32,68 @@ class OrderIntegrationTest {
 
     @Test
     void orders_ok() throws Exception {
-        mockMvc.perform(get("/orders"))
+        MvcResult result = mockMvc.perform(get("/orders"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().string("[{\"id\":\"order-1\",\"description\":\"I want a pizza cut into very small slices\"},{\"id\":\"order-2\",\"description\":\"2 chairs\"}]"));
     }
 
+    @Test
+    void orders_withLimit_paginated() throws Exception {
+        String cursor = mockMvc.perform(get("/orders").param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        MvcResult result = mockMvc.perform(get("/orders").param("limit", "1").param("cursor", cursor))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"order-2\",\"description\":\"2 chairs\"}]"));
+    }
+
+    @Test
+    void couriers_boxOrder_couriersWithBox() throws Exception {
+        mockMvc.perform(get("/orders/order-1/couriers"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":\"courier-1\",\"name\":\"Manolo Escobar\"}]", true));
+    }
+
+    @Test
+    void couriers_plainOrder_closestFirst() throws Exception {
+        mockMvc.perform(get("/orders/order-2/couriers"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":\"courier-1\",\"name\":\"Manolo Escobar\"}," +
+                        "{\"id\":\"courier-2\",\"name\":\"Leandro Flores\"}]", true));
+    }
+
     @Test
     void orders_invalidCourierId_exception() {
         assertThrows(NestedServletException.class, () -> mockMvc.perform(get("/orders/courier-5")), "The Courier with id 'courier-5' was not found.");
     }
 
+    @Test
+    void orders_courierIdNonPositiveLimit_badRequest() throws Exception {
+        mockMvc.perform(get("/orders/courier-1").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("The limit must be positive, but was 0"));
+    }
+
+    @Test
+    void orders_courierIdInvalidCursor_badRequest() throws Exception {
+        mockMvc.perform(get("/orders/courier-1").param("limit", "1").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void orders_invalidCursor_badRequest() throws Exception {
+        mockMvc.perform(get("/orders").param("limit", "1").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void orders_courierId_sorted() throws Exception {
         mockMvc.perform(get("/orders/courier-1"))
@@ -40,6 +101,49 @@ class OrderIntegrationTest {
                 .andExpect(content().string("[{\"id\":\"order-2\",\"description\":\"2 chairs\"},{\"id\":\"order-1\",\"description\":\"I want a pizza cut into very small slices\"}]"));
     }
 
+    @Test
+    void stream_courierId_allOrdersFirst() throws Exception {
+        MvcResult result = mockMvc.perform(get("/orders/courier-1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertTrue(result.getResponse().getContentAsString().startsWith("event:orders\ndata:{\"added\":[" +
+                "{\"id\":\"order-2\",\"description\":\"2 chairs\"}"));
+    }
+
+    @Test
+    void orders_courierIdWithLimit_paginated() throws Exception {
+        String cursor = mockMvc.perform(get("/orders/courier-1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"order-2\",\"description\":\"2 chairs\"}]"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/orders/courier-1").param("limit", "1").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(content().string("[{\"id\":\"order-1\",\"description\":\"I want a pizza cut into very small slices\"}]"));
+    }
+
+    @Test
+    void available_courier_streamed() throws Exception {
+        MvcResult result = mockMvc.perform(post("/orders/available")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"courierIds\":[\"courier-2\"],\"limit\":1}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"courierId\":\"courier-2\",\"orders\":[{\"id\":\"order-2\",\"description\":\"2 chairs\"}]}]"));
+    }
+
+    @Test
+    void available_invalidCourierId_exception() {
+        assertThrows(NestedServletException.class, () -> mockMvc.perform(post("/orders/available")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"courierIds\":[\"courier-1\",\"courier-5\"]}")), "The Courier with id 'courier-5' was not found.");
+    }
+
     @Test
     void orders_courierNoBox_noFood() throws Exception {
         mockMvc.perform(get("/orders/courier-2"))
@@ -53,4 +157,36 @@ class OrderIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("[]"));
     }
+
+    @Test
+    @DirtiesContext
+    void orders_create_visibleForCourier() throws Exception {
+        mockMvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":\"order-3\",\"description\":\"A sofa\",\"food\":false,\"vip\":false," +
+                        "\"pickup\":{\"lat\":41.3965463,\"lon\":2.1963997},\"delivery\":{\"lat\":41.407834,\"lon\":2.1675979}}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"order-3\",\"description\":\"A sofa\"}"));
+
+        mockMvc.perform(get("/orders/courier-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"order-2\",\"description\":\"2 chairs\"},{\"id\":\"order-3\",\"description\":\"A sofa\"}]"));
+    }
+
+    @Test
+    @DirtiesContext
+    void orders_cancel_hiddenFromCourier() throws Exception {
+        mockMvc.perform(delete("/orders/order-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"order-2\",\"description\":\"2 chairs\"}"));
+
+        mockMvc.perform(get("/orders/courier-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    @Test
+    void orders_cancelInvalidId_exception() {
+        assertThrows(NestedServletException.class, () -> mockMvc.perform(delete("/orders/order-5")), "The Order with id 'order-5' was not found.");
+    }
 }
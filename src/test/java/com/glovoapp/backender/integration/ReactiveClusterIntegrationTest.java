@@ -0,0 +1,51 @@
+package com.glovoapp.backender.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+class ReactiveClusterIntegrationTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void orders_ownCourier_page() {
+        webTestClient.get().uri("/cluster/couriers/courier-1/orders?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .expectBody()
+                .jsonPath("$.orders").isArray();
+    }
+
+    @Test
+    void orders_unknownCourier_notFound() {
+        webTestClient.get().uri("/cluster/couriers/unknown/orders?limit=1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DirtiesContext
+    void cancel_existingOrder_cancelledOrder() {
+        webTestClient.delete().uri("/cluster/orders/order-2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo("order-2");
+
+        webTestClient.delete().uri("/cluster/orders/order-2")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,37 @@
+package com.glovoapp.backender.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+class ReactiveCourierIntegrationTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    @DirtiesContext
+    void updateLocation_farAway_noOrders() {
+        webTestClient.put().uri("/couriers/courier-2/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"lat\":40.7127753,\"lon\":-74.0059728}")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/orders/courier-2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("[]");
+    }
+}
@@ -0,0 +1,105 @@
+package com.glovoapp.backender.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+class ReactiveOrderIntegrationTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void orders_ok() {
+        webTestClient.get().uri("/orders")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("[{\"id\":\"order-1\",\"description\":\"I want a pizza cut into very small slices\"},{\"id\":\"order-2\",\"description\":\"2 chairs\"}]");
+    }
+
+    @Test
+    void orders_streamJson_oneOrderPerLine() {
+        webTestClient.get().uri("/orders")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":\"order-1\",\"description\":\"I want a pizza cut into very small slices\"}\n{\"id\":\"order-2\",\"description\":\"2 chairs\"}\n");
+    }
+
+    @Test
+    void orders_courierIdWithLimit_paginated() {
+        webTestClient.get().uri("/orders/courier-1?limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Next-Cursor")
+                .expectBody(String.class)
+                .isEqualTo("[{\"id\":\"order-2\",\"description\":\"2 chairs\"}]");
+    }
+
+    @Test
+    void orders_courierIdInvalidCursor_badRequest() {
+        webTestClient.get().uri("/orders/courier-1?limit=1&cursor=bad")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DirtiesContext
+    void orders_create_visibleForCourier() {
+        webTestClient.post().uri("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"id\":\"order-3\",\"description\":\"A sofa\",\"food\":false,\"vip\":false," +
+                        "\"pickup\":{\"lat\":41.3965463,\"lon\":2.1963997},\"delivery\":{\"lat\":41.407834,\"lon\":2.1675979}}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":\"order-3\",\"description\":\"A sofa\"}");
+
+        webTestClient.get().uri("/orders/courier-2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("[{\"id\":\"order-2\",\"description\":\"2 chairs\"},{\"id\":\"order-3\",\"description\":\"A sofa\"}]");
+    }
+
+    @Test
+    @DirtiesContext
+    void orders_cancel_hiddenFromCourier() {
+        webTestClient.delete().uri("/orders/order-2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":\"order-2\",\"description\":\"2 chairs\"}");
+
+        webTestClient.get().uri("/orders/courier-2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("[]");
+    }
+
+    @Test
+    void root_ok() {
+        webTestClient.get().uri("/")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("Welcome, stranger!");
+    }
+}
@@ -0,0 +1,119 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterTopologyTest {
+    private static final String NODES = "http://a, http://b,http://c";
+    private static final Location PLACA_CATALUNYA = new Location(41.3870194, 2.1678584);
+
+    @Test
+    void standalone_ownsEverything() {
+        ClusterTopology cluster = ClusterTopology.standalone();
+
+        assertTrue(cluster.isStandalone());
+        assertTrue(cluster.ownsCourier("courier-1"));
+        assertTrue(cluster.ownsOrder(Order.builder().id("order-1").pickup(PLACA_CATALUNYA).build()));
+        assertEquals(ImmutableSet.of(cluster.getSelf()), cluster.ownersNear(PLACA_CATALUNYA, 500));
+    }
+
+    @Test
+    void ownsCourier_everyCourierOwnedByOneNode() {
+        ClusterTopology a = new ClusterTopology(NODES, "http://a", 0.5);
+        ClusterTopology b = new ClusterTopology(NODES, "http://b", 0.5);
+        ClusterTopology c = new ClusterTopology(NODES, "http://c", 0.5);
+
+        for (int courier = 0; courier < 100; courier++) {
+            String id = "courier-" + courier;
+            int owners = (a.ownsCourier(id) ? 1 : 0) + (b.ownsCourier(id) ? 1 : 0) + (c.ownsCourier(id) ? 1 : 0);
+            assertEquals(1, owners);
+            assertEquals(a.ownerOfCourier(id), c.ownerOfCourier(id));
+        }
+    }
+
+    @Test
+    void ownerOfOrder_sameRegion_sameNode() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.5);
+        Order order = Order.builder().id("order-1").pickup(PLACA_CATALUNYA).build();
+        Order neighbour = Order.builder().id("order-2").pickup(new Location(41.4, 2.2)).build();
+
+        assertEquals(cluster.ownerOfOrder(order), cluster.ownerOfOrder(neighbour));
+    }
+
+    @Test
+    void ownerOfOrder_manyRegions_spreadOverNodes() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.5);
+        Set<String> owners = new HashSet<>();
+
+        for (int region = 0; region < 100; region++) {
+            owners.add(cluster.ownerOfOrder(Order.builder().pickup(new Location(40d, region * 0.5)).build()));
+        }
+
+        assertEquals(ImmutableSet.of("http://a", "http://b", "http://c"), owners);
+    }
+
+    @Test
+    void ownerOfOrder_noPickup_ownedById() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.5);
+        Order order = Order.builder().id("order-1").build();
+
+        assertEquals(cluster.ownerOfOrder(order), cluster.ownerOfOrder(order.toBuilder().description("x").build()));
+    }
+
+    @Test
+    void ownersNear_withinRegion_regionOwner() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.5);
+        Location center = new Location(41.25, 2.25);
+
+        assertEquals(ImmutableSet.of(cluster.ownerOfOrder(Order.builder().pickup(center).build())),
+                cluster.ownersNear(center, 5));
+    }
+
+    @Test
+    void ownersNear_acrossRegions_ownerOfEveryRegion() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.01);
+        Set<String> owners = cluster.ownersNear(PLACA_CATALUNYA, 5);
+
+        for (double lat = -0.04; lat <= 0.04; lat += 0.01) {
+            for (double lon = -0.05; lon <= 0.05; lon += 0.01) {
+                Location pickup = new Location(PLACA_CATALUNYA.getLat() + lat, PLACA_CATALUNYA.getLon() + lon);
+                assertTrue(owners.contains(cluster.ownerOfOrder(Order.builder().pickup(pickup).build())));
+            }
+        }
+    }
+
+    @Test
+    void ownersNear_tooManyRegions_everyNode() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://a", 0.01);
+
+        assertEquals(ImmutableSet.of("http://a", "http://b", "http://c"), cluster.ownersNear(PLACA_CATALUNYA, 500));
+    }
+
+    @Test
+    void ownersNear_noLocation_self() {
+        ClusterTopology cluster = new ClusterTopology(NODES, "http://b", 0.5);
+
+        assertEquals(ImmutableSet.of("http://b"), cluster.ownersNear(null, 5));
+        assertFalse(cluster.isStandalone());
+    }
+
+    @Test
+    void new_selfNotInNodes_exception() {
+        assertThrows(IllegalArgumentException.class, () -> new ClusterTopology(NODES, "http://d", 0.5));
+    }
+
+    @Test
+    void new_nonPositiveRegionSize_exception() {
+        assertThrows(IllegalArgumentException.class, () -> new ClusterTopology(NODES, "http://a", 0));
+    }
+}
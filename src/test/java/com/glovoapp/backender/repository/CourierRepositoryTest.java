@@ -3,13 +3,22 @@ package com.glovoapp.backender.repository;
 import com.glovoapp.backender.model.Courier;
 import com.glovoapp.backender.model.Location;
 import com.glovoapp.backender.model.Vehicle;
+import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CourierRepositoryTest {
     @Test
@@ -33,7 +42,109 @@ class CourierRepositoryTest {
 
     @Test
     void findAll() {
-        List<Courier> all = new CourierRepository().findAll();
+        Collection<Courier> all = new CourierRepository().findAll();
         assertFalse(all.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void save_newCourier_findable() {
+        CourierRepository repository = new CourierRepository(ImmutableList.of());
+        Courier courier = Courier.builder().id("new-courier").build();
+
+        repository.save(courier);
+
+        assertEquals(Optional.of(courier), repository.findById("new-courier"));
+        assertEquals(ImmutableList.of(courier), ImmutableList.copyOf(repository.findAll()));
+    }
+
+    @Test
+    void updateLocation_existing_moved() {
+        CourierRepository repository = new CourierRepository();
+        Location location = new Location(41.0, 2.0);
+
+        Optional<Courier> updated = repository.updateLocation("courier-1", location);
+
+        assertEquals(Optional.of(location), updated.map(Courier::getLocation));
+        assertEquals(updated, repository.findById("courier-1"));
+    }
+
+    @Test
+    void updateLocation_restartedWithoutClosing_recoveredFromLog() throws IOException {
+        Path directory = Files.createTempDirectory("couriers");
+        String snapshot = directory.resolve("couriers.bin").toString();
+        String log = directory.resolve("couriers.log").toString();
+        Location location = new Location(41.0, 2.0);
+        new CourierRepository("classpath:/couriers.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone()).updateLocation("courier-1", location);
+
+        CourierRepository restarted = new CourierRepository("classpath:/couriers.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone());
+
+        assertEquals(Optional.of(location), restarted.findById("courier-1").map(Courier::getLocation));
+    }
+
+    @Test
+    void close_withLog_restartedFromSnapshot() throws IOException {
+        Path directory = Files.createTempDirectory("couriers");
+        String snapshot = directory.resolve("couriers.bin").toString();
+        String log = directory.resolve("couriers.log").toString();
+        CourierRepository repository = new CourierRepository("classpath:/couriers.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone());
+        repository.updateLocation("courier-1", new Location(41.0, 2.0));
+
+        repository.close();
+        CourierRepository restarted = new CourierRepository("/missing/couriers.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone());
+
+        assertEquals(0, Files.size(Paths.get(log)));
+        assertEquals(ImmutableList.copyOf(repository.findAll()), ImmutableList.copyOf(restarted.findAll()));
+    }
+
+    @Test
+    void constructor_logWithoutSnapshot_exception() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CourierRepository("classpath:/couriers.json", "", "couriers.log", Long.MAX_VALUE, ClusterTopology.standalone()));
+    }
+
+    @Test
+    void updateLocation_notExisting_empty() {
+        CourierRepository repository = new CourierRepository();
+
+        assertFalse(repository.updateLocation("bad-courier-id", new Location(41.0, 2.0)).isPresent());
+        assertFalse(repository.findById("bad-courier-id").isPresent());
+    }
+
+    @Test
+    void findAll_emptyRepository_empty() {
+        assertTrue(new CourierRepository(ImmutableList.of()).findAll().isEmpty());
+    }
+
+    @Test
+    void findNear_sameVehicleAndBox_found() {
+        CourierRepository repository = new CourierRepository();
+
+        assertEquals(ImmutableList.of("courier-1"), idsNear(repository, new Location(41.3965463, 2.1963997), Vehicle.MOTORCYCLE, true));
+        assertEquals(ImmutableList.of("courier-2"), idsNear(repository, new Location(41.3965463, 2.1963997), Vehicle.MOTORCYCLE, false));
+        assertEquals(ImmutableList.of(), idsNear(repository, new Location(41.3965463, 2.1963997), Vehicle.BICYCLE, true));
+    }
+
+    @Test
+    void findNear_movedCourier_foundAtNewLocation() {
+        CourierRepository repository = new CourierRepository();
+
+        repository.updateLocation("courier-3", new Location(41.3965463, 2.1963997));
+
+        assertEquals(ImmutableList.of("courier-3"), idsNear(repository, new Location(41.3965463, 2.1963997), Vehicle.BICYCLE, true));
+        assertEquals(ImmutableList.of(), idsNear(repository, new Location(41.0, 2.2), Vehicle.BICYCLE, true));
+    }
+
+    @Test
+    void findNear_courierWithoutVehicle_neverFound() {
+        CourierRepository repository = new CourierRepository(ImmutableList.of(
+                Courier.builder().id("walking").location(new Location(41.0, 2.0)).build()));
+
+        for (Vehicle vehicle : Vehicle.values()) {
+            assertEquals(ImmutableList.of(), idsNear(repository, new Location(41.0, 2.0), vehicle, false));
+        }
+    }
+
+    private static List<String> idsNear(CourierRepository repository, Location location, Vehicle vehicle, boolean box) {
+        return repository.findNear(location, 1, vehicle, box).stream().map(Courier::getId).collect(Collectors.toList());
+    }
+}
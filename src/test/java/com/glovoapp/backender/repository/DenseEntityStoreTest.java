@@ -0,0 +1,175 @@
+package com.glovoapp.backender.repository;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DenseEntityStoreTest {
+    private final List<List<String>> changes = new ArrayList<>();
+    private DenseEntityStore<String> store;
+
+    @BeforeEach
+    void setUp() {
+        // Entities are "id:value" strings
+        store = new DenseEntityStore<>(DenseEntityStoreTest::idOf, (previous, current) -> changes.add(Arrays.asList(previous, current)));
+    }
+
+    @Test
+    void put_new_compactSlots() {
+        store.put("a:1");
+        store.put("b:1");
+
+        assertEquals(0, store.slotOf("a"));
+        assertEquals(1, store.slotOf("b"));
+        assertEquals("b:1", store.get(1));
+        assertEquals(Optional.of("a:1"), store.find("a"));
+        assertEquals(ImmutableList.of(Arrays.asList(null, "a:1"), Arrays.asList(null, "b:1")), changes);
+    }
+
+    @Test
+    void put_existing_keepsSlot() {
+        store.put("a:1");
+        store.put("b:1");
+
+        store.put("a:2");
+
+        assertEquals(0, store.slotOf("a"));
+        assertEquals(ImmutableList.of("a:2", "b:1"), ImmutableList.copyOf(store.values()));
+        assertEquals(Arrays.asList("a:1", "a:2"), changes.get(2));
+    }
+
+    @Test
+    void find_notExisting_empty() {
+        assertEquals(-1, store.slotOf("a"));
+        assertFalse(store.find("a").isPresent());
+    }
+
+    @Test
+    void update_existing_changed() {
+        store.put("a:1");
+
+        assertEquals(Optional.of("a:1!"), store.update("a", entity -> entity + "!"));
+
+        assertEquals(Optional.of("a:1!"), store.find("a"));
+        assertEquals(Arrays.asList("a:1", "a:1!"), changes.get(1));
+    }
+
+    @Test
+    void update_notExisting_empty() {
+        assertFalse(store.update("a", entity -> entity + "!").isPresent());
+
+        assertEquals(-1, store.slotOf("a"));
+        assertEquals(ImmutableList.of(), changes);
+    }
+
+    @Test
+    void update_changeListenerFails_previousKept() {
+        store = new DenseEntityStore<>(DenseEntityStoreTest::idOf, (previous, current) -> {
+            if (current.endsWith("!")) {
+                throw new IllegalStateException("Unable to log");
+            }
+        });
+        store.put("a:1");
+
+        assertThrows(IllegalStateException.class, () -> store.update("a", entity -> entity + "!"));
+
+        assertEquals(Optional.of("a:1"), store.find("a"));
+    }
+
+    @Test
+    void restore_stillCurrent_previousPutBack() {
+        store.put("a:1");
+        String current = store.update("a", entity -> "a:2").get();
+        changes.clear();
+
+        store.restore("a", current, "a:1", (previous, restored) -> changes.add(Arrays.asList(previous, restored)));
+
+        assertEquals(Optional.of("a:1"), store.find("a"));
+        assertEquals(0, store.slotOf("a"));
+        assertEquals(ImmutableList.of(Arrays.asList("a:2", "a:1")), changes);
+    }
+
+    @Test
+    void restore_newStillCurrent_removed() {
+        store.put("a:1");
+        String current = store.find("a").get();
+
+        store.restore("a", current, null, (previous, restored) -> changes.add(Arrays.asList(previous, restored)));
+
+        assertFalse(store.find("a").isPresent());
+        assertEquals(0, store.values().size());
+    }
+
+    @Test
+    void restore_changedSince_kept() {
+        store.put("a:1");
+        String first = store.find("a").get();
+        store.update("a", entity -> "a:2");
+
+        store.restore("a", first, null, (previous, current) -> changes.add(Arrays.asList(previous, current)));
+
+        assertEquals(Optional.of("a:2"), store.find("a"));
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    void values_manyChunks_insertionOrder() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            expected.add(i + ":" + i);
+            store.put(i + ":" + i);
+        }
+
+        Collection<String> values = store.values();
+        List<String> visited = new ArrayList<>();
+        values.forEach(visited::add);
+
+        assertEquals(5000, values.size());
+        assertEquals(expected, ImmutableList.copyOf(values));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void values_liveAndReadOnly() {
+        Collection<String> values = store.values();
+
+        store.put("a:1");
+
+        assertEquals(ImmutableList.of("a:1"), ImmutableList.copyOf(values));
+        assertThrows(UnsupportedOperationException.class, () -> values.add("b:1"));
+    }
+
+    @Test
+    void put_concurrentWriters_nothingLost() throws InterruptedException {
+        DenseEntityStore<String> concurrent = new DenseEntityStore<>(DenseEntityStoreTest::idOf, (previous, current) -> {
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        IntStream.range(0, 20000).forEach(i -> executor.execute(() -> {
+            concurrent.put(i % 5000 + ":" + i);
+        }));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(5000, concurrent.values().size());
+        IntStream.range(0, 5000).forEach(i -> assertTrue(concurrent.find(String.valueOf(i)).isPresent()));
+    }
+
+    private static String idOf(String entity) {
+        return entity.split(":")[0];
+    }
+}
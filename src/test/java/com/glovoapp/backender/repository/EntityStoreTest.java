@@ -0,0 +1,157 @@
+package com.glovoapp.backender.repository;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityStoreTest {
+    private final List<List<String>> changes = new ArrayList<>();
+    private EntityStore<String> store;
+
+    @BeforeEach
+    void setUp() {
+        // Entities are "id:value" strings
+        store = new EntityStore<>(entity -> entity.split(":")[0], (previous, current) -> changes.add(Arrays.asList(previous, current)));
+    }
+
+    @Test
+    void put_new_appended() {
+        store.put("a:1");
+        store.put("b:1");
+
+        assertEquals(ImmutableList.of("a:1", "b:1"), ImmutableList.copyOf(store.values()));
+        assertEquals(Optional.of("b:1"), store.find("b"));
+        assertEquals(ImmutableList.of(Arrays.asList(null, "a:1"), Arrays.asList(null, "b:1")), changes);
+    }
+
+    @Test
+    void put_existing_replacedInPlace() {
+        store.put("a:1");
+        store.put("b:1");
+
+        store.put("a:2");
+
+        assertEquals(ImmutableList.of("a:2", "b:1"), ImmutableList.copyOf(store.values()));
+        assertEquals(Arrays.asList("a:1", "a:2"), changes.get(2));
+    }
+
+    @Test
+    void slice_severalPages_everyEntityOnce() {
+        store.put("a:1");
+        store.put("b:1");
+        store.put("c:1");
+
+        Slice<String> first = store.slice(0, 2);
+        store.remove("b");
+        Slice<String> second = store.slice(first.getNext(), 2);
+
+        assertEquals(ImmutableList.of("a:1", "b:1"), first.getEntities());
+        assertEquals(ImmutableList.of("c:1"), second.getEntities());
+        assertEquals(-1, second.getNext());
+    }
+
+    @Test
+    void slice_emptyStore_empty() {
+        assertEquals(new Slice<>(ImmutableList.of(), -1), store.slice(0, 10));
+    }
+
+    @Test
+    void update_existing_changed() {
+        store.put("a:1");
+
+        assertEquals(Optional.of("a:1!"), store.update("a", entity -> entity + "!"));
+
+        assertEquals(Optional.of("a:1!"), store.find("a"));
+        assertEquals(Arrays.asList("a:1", "a:1!"), changes.get(1));
+    }
+
+    @Test
+    void update_notExisting_empty() {
+        assertFalse(store.update("a", entity -> entity + "!").isPresent());
+
+        assertEquals(ImmutableList.of(), changes);
+    }
+
+    @Test
+    void remove_existing_removed() {
+        store.put("a:1");
+
+        assertEquals(Optional.of("a:1"), store.remove("a"));
+
+        assertFalse(store.find("a").isPresent());
+        assertEquals(ImmutableList.of(), ImmutableList.copyOf(store.values()));
+        assertEquals(Arrays.asList("a:1", null), changes.get(1));
+    }
+
+    @Test
+    void remove_notExisting_empty() {
+        assertFalse(store.remove("a").isPresent());
+    }
+
+    @Test
+    void put_changeListenerFails_notStored() {
+        store = new EntityStore<>(entity -> entity.split(":")[0], (previous, current) -> {
+            throw new IllegalStateException("Unable to log");
+        });
+
+        assertThrows(IllegalStateException.class, () -> store.put("a:1"));
+
+        assertFalse(store.find("a").isPresent());
+        assertEquals(ImmutableList.of(), ImmutableList.copyOf(store.values()));
+    }
+
+    @Test
+    void restore_removedStillAbsent_putBack() {
+        store.put("a:1");
+        store.remove("a");
+        changes.clear();
+
+        store.restore("a", null, "a:1", (previous, current) -> changes.add(Arrays.asList(previous, current)));
+
+        assertEquals(Optional.of("a:1"), store.find("a"));
+        assertEquals(ImmutableList.of(Arrays.asList(null, "a:1")), changes);
+    }
+
+    @Test
+    void restore_newStillCurrent_removed() {
+        store.put("a:1");
+        String current = store.find("a").get();
+
+        store.restore("a", current, null, (previous, restored) -> changes.add(Arrays.asList(previous, restored)));
+
+        assertFalse(store.find("a").isPresent());
+        assertEquals(Arrays.asList("a:1", null), changes.get(1));
+    }
+
+    @Test
+    void restore_changedSince_kept() {
+        store.put("a:1");
+        String first = store.find("a").get();
+        store.put("a:2");
+
+        store.restore("a", first, null, (previous, current) -> changes.add(Arrays.asList(previous, current)));
+
+        assertEquals(Optional.of("a:2"), store.find("a"));
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    void values_liveAndReadOnly() {
+        Collection<String> values = store.values();
+
+        store.put("a:1");
+
+        assertEquals(ImmutableList.of("a:1"), ImmutableList.copyOf(values));
+        assertThrows(UnsupportedOperationException.class, () -> values.add("b:1"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridIndexTest {
+    private static final Location PLACA_CATALUNYA = new Location(41.3870194, 2.1678584);
+    private static final Location FRANCESC_MACIA = new Location(41.3925603, 2.1418532);
+    private static final Location MADRID = new Location(40.4167754, -3.7037902);
+
+    private GridIndex<Location> index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GridIndex<>(0.05, Function.identity());
+    }
+
+    @Test
+    void findNear_empty_empty() {
+        assertTrue(index.findNear(PLACA_CATALUNYA, 5).isEmpty());
+    }
+
+    @Test
+    void findNear_negativeRadius_empty() {
+        index.add(PLACA_CATALUNYA);
+
+        assertTrue(index.findNear(PLACA_CATALUNYA, -1).isEmpty());
+    }
+
+    @Test
+    void findNear_nullLocation_ignored() {
+        GridIndex<String> names = new GridIndex<>(0.05, name -> null);
+        names.add("nowhere");
+
+        assertTrue(names.findNear(PLACA_CATALUNYA, 20000).isEmpty());
+    }
+
+    @Test
+    void findNear_skipsFarCells() {
+        index.add(PLACA_CATALUNYA);
+        index.add(FRANCESC_MACIA);
+        index.add(MADRID);
+
+        assertEquals(ImmutableSet.of(PLACA_CATALUNYA, FRANCESC_MACIA), new HashSet<>(index.findNear(PLACA_CATALUNYA, 5)));
+    }
+
+    @Test
+    void remove_notFoundAnymore() {
+        index.add(PLACA_CATALUNYA);
+        index.add(FRANCESC_MACIA);
+
+        index.remove(PLACA_CATALUNYA);
+
+        assertEquals(ImmutableList.of(FRANCESC_MACIA), index.findNear(PLACA_CATALUNYA, 5));
+    }
+
+    @Test
+    void remove_notIndexed_ignored() {
+        index.add(FRANCESC_MACIA);
+
+        index.remove(MADRID);
+
+        assertEquals(ImmutableList.of(FRANCESC_MACIA), index.findNear(FRANCESC_MACIA, 5));
+    }
+
+    @Test
+    void findNear_hugeRadius_everything() {
+        index.add(PLACA_CATALUNYA);
+        index.add(MADRID);
+        index.add(new Location(-33.8688197, 151.2092955));
+
+        assertEquals(3, index.findNear(PLACA_CATALUNYA, 20000).size());
+    }
+
+    @Test
+    void findNear_acrossAntimeridian_found() {
+        Location fiji = new Location(-17.7134, 179.99);
+        index.add(fiji);
+
+        assertEquals(ImmutableSet.of(fiji), new HashSet<>(index.findNear(new Location(-17.7134, -179.99), 5)));
+    }
+
+    @Test
+    void findNear_randomPoints_neverMissesPointsInRange() {
+        Random random = new Random(42);
+        Set<Location> all = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            Location location = new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+            all.add(location);
+            index.add(location);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Location center = new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+            double radius = random.nextDouble() * 3000;
+            Set<Location> found = new HashSet<>(index.findNear(center, radius));
+            all.stream()
+                    .filter(location -> haversine(center, location) <= radius)
+                    .forEach(location -> assertTrue(found.contains(location), location + " is in range of " + center));
+        }
+    }
+
+    private static double haversine(Location start, Location end) {
+        double deltaLat = Math.toRadians(end.getLat() - start.getLat());
+        double deltaLon = Math.toRadians(end.getLon() - start.getLon());
+        double a = Math.pow(Math.sin(deltaLat / 2), 2) + Math.cos(Math.toRadians(start.getLat()))
+                * Math.cos(Math.toRadians(end.getLat())) * Math.pow(Math.sin(deltaLon / 2), 2);
+        return 6371 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
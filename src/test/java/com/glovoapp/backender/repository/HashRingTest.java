@@ -0,0 +1,61 @@
+package com.glovoapp.backender.repository;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+    private static final List<String> NODES = ImmutableList.of("http://a", "http://b", "http://c");
+
+    @Test
+    void nodeOf_sameKey_sameNodeInEveryRing() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing other = new HashRing(ImmutableList.of("http://c", "http://a", "http://b"), 128);
+
+        for (int key = 0; key < 1000; key++) {
+            assertEquals(ring.nodeOf("key-" + key), other.nodeOf("key-" + key));
+        }
+    }
+
+    @Test
+    void nodeOf_manyKeys_spreadOverEveryNode() {
+        HashRing ring = new HashRing(NODES, 128);
+        Map<String, Integer> keysByNode = new HashMap<>();
+
+        for (int key = 0; key < 30000; key++) {
+            keysByNode.merge(ring.nodeOf("key-" + key), 1, Integer::sum);
+        }
+
+        assertEquals(3, keysByNode.size());
+        keysByNode.values().forEach(keys -> assertTrue(keys > 7000, "Unbalanced ring: " + keysByNode));
+    }
+
+    @Test
+    void nodeOf_nodeAdded_onlyKeysOfNewNodeMove() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing grown = new HashRing(ImmutableList.<String>builder().addAll(NODES).add("http://d").build(), 128);
+
+        int moved = 0;
+        for (int key = 0; key < 10000; key++) {
+            String before = ring.nodeOf("key-" + key);
+            String after = grown.nodeOf("key-" + key);
+            if (!before.equals(after)) {
+                assertEquals("http://d", after);
+                moved++;
+            }
+        }
+        assertTrue(moved > 1500 && moved < 3500, "Moved keys: " + moved);
+    }
+
+    @Test
+    void new_noNodes_exception() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(ImmutableList.of(), 128));
+    }
+}
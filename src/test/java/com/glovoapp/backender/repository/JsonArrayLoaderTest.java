@@ -0,0 +1,80 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonArrayLoaderTest {
+    @Test
+    void load_file_everyRecordInOrder() throws IOException {
+        Path file = fileWith("[{\"id\": \"courier-1\", \"box\": true, \"vehicle\": \"BICYCLE\", \"location\": {\"lat\": 1, \"lon\": 2}},"
+                + " null, {\"id\": \"courier-2\"}]");
+        List<Courier> couriers = new ArrayList<>();
+
+        long loaded = JsonArrayLoader.load(file.toString(), Courier.class, couriers::add);
+
+        assertEquals(2, loaded);
+        assertEquals(ImmutableList.of(
+                Courier.builder().id("courier-1").box(true).vehicle(Vehicle.BICYCLE).location(new Location(1d, 2d)).build(),
+                Courier.builder().id("courier-2").build()), couriers);
+    }
+
+    @Test
+    void load_emptyArray_nothing() throws IOException {
+        List<Order> orders = new ArrayList<>();
+
+        assertEquals(0, JsonArrayLoader.load(fileWith("[]").toString(), Order.class, orders::add));
+        assertEquals(ImmutableList.of(), orders);
+    }
+
+    @Test
+    void load_classpath_everyRecord() {
+        List<Order> orders = new ArrayList<>();
+
+        JsonArrayLoader.load("classpath:/orders.json", Order.class, orders::add);
+
+        assertEquals("order-1", orders.get(0).getId());
+    }
+
+    @Test
+    void load_missingResource_exception() {
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonArrayLoader.load("classpath:/missing.json", Order.class, order -> {
+                }));
+    }
+
+    @Test
+    void load_missingFile_exception() {
+        assertThrows(UncheckedIOException.class,
+                () -> JsonArrayLoader.load("/missing/orders.json", Order.class, order -> {
+                }));
+    }
+
+    @Test
+    void load_notAnArray_exception() throws IOException {
+        Path file = fileWith("{\"id\": \"order-1\"}");
+
+        assertThrows(IllegalStateException.class, () -> JsonArrayLoader.load(file.toString(), Order.class, order -> {
+        }));
+    }
+
+    private static Path fileWith(String json) throws IOException {
+        Path file = Files.createTempFile("records", ".json");
+        file.toFile().deleteOnExit();
+        return Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+    }
+}
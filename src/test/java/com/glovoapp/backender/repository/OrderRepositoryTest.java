@@ -3,22 +3,38 @@ package com.glovoapp.backender.repository;
 
 import com.glovoapp.backender.model.Location;
 import com.glovoapp.backender.model.Order;
-import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class OrderRepositoryTest {
+    private static final Location FAR_AWAY = new Location(40.4167754, -3.7037902);
+    private static final Order ORDER = Order.builder()
+            .id("order")
+            .description("A flamingo")
+            .pickup(new Location(41.3965463, 2.1963997))
+            .build();
+
     @Test
     void findAll() {
-        List<Order> orders = new OrderRepository().findAll();
+        Collection<Order> orders = new OrderRepository().findAll();
 
         assertFalse(orders.isEmpty());
 
-        Order firstOrder = orders.get(0);
+        Order firstOrder = orders.iterator().next();
 
         Order expected = Order.builder()
                 .id("order-1")
@@ -31,4 +47,213 @@ class OrderRepositoryTest {
 
         assertEquals(expected, firstOrder);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findNear_loadedFromFile_indexed() throws IOException {
+        Path file = Files.createTempFile("orders", ".json");
+        file.toFile().deleteOnExit();
+        Files.write(file, "[{\"id\": \"order\", \"description\": \"A flamingo\", \"pickup\": {\"lat\": 41.3965463, \"lon\": 2.1963997}}]"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(ImmutableList.of(ORDER), ordersNear(new OrderRepository(false, 0.5, file.toString(), "", "", 0, ClusterTopology.standalone()), ORDER.getPickup(), 1));
+    }
+
+    @Test
+    void constructor_cluster_onlyOrdersOfOwnRegionsLoaded() {
+        ClusterTopology a = new ClusterTopology("http://a,http://b", "http://a", 0.5);
+        ClusterTopology b = new ClusterTopology("http://a,http://b", "http://b", 0.5);
+
+        OrderRepository repositoryA = new OrderRepository(false, 0.5, "classpath:/orders.json", "", "", 0, a);
+        OrderRepository repositoryB = new OrderRepository(false, 0.5, "classpath:/orders.json", "", "", 0, b);
+
+        assertEquals(2, repositoryA.findAll().size() + repositoryB.findAll().size());
+        repositoryA.findAll().forEach(order -> assertTrue(a.ownsOrder(order)));
+        repositoryB.findAll().forEach(order -> assertTrue(b.ownsOrder(order)));
+    }
+
+    @Test
+    void writeSnapshot_restarted_loadedFromSnapshot() throws IOException {
+        Path snapshot = Files.createTempFile("orders", ".bin");
+        Files.delete(snapshot);
+        snapshot.toFile().deleteOnExit();
+        OrderRepository repository = new OrderRepository(false, 0.5, "classpath:/orders.json", snapshot.toString(), "", 0, ClusterTopology.standalone());
+        repository.save(ORDER);
+
+        repository.writeSnapshot();
+        OrderRepository restarted = new OrderRepository(false, 0.5, "/missing/orders.json", snapshot.toString(), "", 0, ClusterTopology.standalone());
+
+        assertEquals(ImmutableList.copyOf(repository.findAll()), ImmutableList.copyOf(restarted.findAll()));
+        assertTrue(ordersNear(restarted, ORDER.getPickup(), 1).contains(ORDER));
+    }
+
+    @Test
+    void delete_restartedWithoutClosing_recoveredFromLog() throws IOException {
+        Path directory = Files.createTempDirectory("orders");
+        String snapshot = directory.resolve("orders.bin").toString();
+        String log = directory.resolve("orders.log").toString();
+        OrderRepository repository = new OrderRepository(false, 0.5, "classpath:/orders.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone());
+        repository.save(ORDER);
+        repository.delete("order-1");
+
+        OrderRepository restarted = new OrderRepository(false, 0.5, "classpath:/orders.json", snapshot, log, Long.MAX_VALUE, ClusterTopology.standalone());
+
+        assertEquals(ImmutableList.copyOf(repository.findAll()), ImmutableList.copyOf(restarted.findAll()));
+        assertFalse(restarted.findById("order-1").isPresent());
+    }
+
+    @Test
+    void findNear_includesCloseOrders() {
+        List<Order> orders = ordersNear(new OrderRepository(), new Location(41.3965463, 2.1963997), 1);
+
+        assertEquals(2, orders.size());
+    }
+
+    @Test
+    void findNear_skipsFarOrders() {
+        assertTrue(new OrderRepository().findNear(new Location(40.4167754, -3.7037902), 5).isEmpty());
+    }
+
+    @Test
+    void findById_existing() {
+        assertEquals("2 chairs", new OrderRepository().findById("order-2").map(Order::getDescription).orElse(null));
+    }
+
+    @Test
+    void findById_notExisting() {
+        assertFalse(new OrderRepository().findById("bad-order-id").isPresent());
+    }
+
+    @Test
+    void save_newOrder_appendedAndIndexed() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+        Order other = ORDER.toBuilder().id("other").build();
+
+        repository.save(other);
+
+        assertEquals(ImmutableList.of(ORDER, other), ImmutableList.copyOf(repository.findAll()));
+        assertEquals(2, ordersNear(repository, ORDER.getPickup(), 1).size());
+    }
+
+    @Test
+    void save_existingOrder_replacedInPlaceAndReindexed() {
+        Order other = ORDER.toBuilder().id("other").build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER, other));
+        Order moved = ORDER.toBuilder().pickup(FAR_AWAY).build();
+
+        repository.save(moved);
+
+        assertEquals(ImmutableList.of(moved, other), ImmutableList.copyOf(repository.findAll()));
+        assertEquals(ImmutableList.of(other), ordersNear(repository, ORDER.getPickup(), 1));
+        assertEquals(ImmutableList.of(moved), ordersNear(repository, FAR_AWAY, 1));
+    }
+
+    @Test
+    void delete_existing_removedFromEverywhere() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+
+        assertEquals(Optional.of(ORDER), repository.delete(ORDER.getId()));
+
+        assertTrue(repository.findAll().isEmpty());
+        assertFalse(repository.findById(ORDER.getId()).isPresent());
+        assertTrue(repository.findNear(ORDER.getPickup(), 1).isEmpty());
+    }
+
+    @Test
+    void delete_notExisting_empty() {
+        assertFalse(new OrderRepository(ImmutableList.of(ORDER)).delete("bad-order-id").isPresent());
+    }
+
+    @Test
+    void findNear_offHeap_sameOrders() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER), true);
+
+        assertEquals(ImmutableList.of(ORDER), ordersNear(repository, ORDER.getPickup(), 1));
+    }
+
+    @Test
+    void setDeliveryLegs_storedAndLaterOrders_deliveryLegsInBatch() {
+        Order stored = Order.builder().id("stored").pickup(new Location(0d, 0d)).build();
+        Order later = Order.builder().id("later").pickup(new Location(0d, 0d)).build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(stored), true);
+
+        repository.setDeliveryLegs(order -> order == stored ? 2 : 3);
+        repository.save(later);
+
+        OrderBatch batch = repository.findNear(stored.getPickup(), 1).get(0);
+        assertEquals(2, batch.getDeliveryLegs()[batch.getOrder(0) == stored ? 0 : 1]);
+        assertEquals(3, batch.getDeliveryLegs()[batch.getOrder(0) == stored ? 1 : 0]);
+    }
+
+    @Test
+    void updateDeliveryLeg_visibleInBatches() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+
+        repository.updateDeliveryLeg(ORDER.getId(), 2);
+
+        assertEquals(2, repository.findNear(ORDER.getPickup(), 1).get(0).getDeliveryLegs()[0]);
+    }
+
+    @Test
+    void updateNeedsBox_visibleInBatches() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+
+        repository.updateNeedsBox(ORDER.getId(), true);
+
+        assertTrue(repository.findNear(ORDER.getPickup(), 1).get(0).has(0, OrderBatch.NEEDS_BOX));
+    }
+
+    @Test
+    void addChangeListener_saveAndDelete_notified() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+        List<List<Order>> changes = new ArrayList<>();
+        repository.addChangeListener((previous, current) -> changes.add(Arrays.asList(previous, current)));
+        Order moved = ORDER.toBuilder().pickup(FAR_AWAY).build();
+
+        repository.save(moved);
+        repository.delete(ORDER.getId());
+
+        assertEquals(ImmutableList.of(Arrays.asList(ORDER, moved), Arrays.asList(moved, null)), changes);
+    }
+
+    @Test
+    void addChangeListener_reclassified_notifiedOnlyOnChange() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+        List<Order> reclassified = new ArrayList<>();
+        repository.addChangeListener((previous, current) -> reclassified.add(current));
+
+        repository.updateNeedsBox(ORDER.getId(), true);
+        repository.updateNeedsBox(ORDER.getId(), true);
+
+        assertEquals(ImmutableList.of(ORDER), reclassified);
+    }
+
+    @Test
+    void findNear_acrossRegions_oneBatchPerRegion() {
+        Order nextRegion = ORDER.toBuilder().id("next-region").pickup(new Location(41.5, 2.1963997)).build();
+        Order thisRegion = ORDER.toBuilder().id("this-region").pickup(new Location(41.49, 2.1963997)).build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(nextRegion, thisRegion));
+
+        assertEquals(2, repository.findNear(new Location(41.495, 2.1963997), 5).size());
+        assertEquals(ImmutableList.of(thisRegion), ordersNear(repository, new Location(41.4, 2.1963997), 10));
+    }
+
+    @Test
+    void save_movedToAnotherRegion_onlyInNewRegion() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(ORDER));
+        Order moved = ORDER.toBuilder().pickup(FAR_AWAY).build();
+
+        repository.save(moved);
+        repository.updateNeedsBox(ORDER.getId(), true);
+
+        assertTrue(repository.findNear(ORDER.getPickup(), 1).isEmpty());
+        assertTrue(repository.findNear(FAR_AWAY, 1).get(0).has(0, OrderBatch.NEEDS_BOX));
+    }
+
+    private static List<Order> ordersNear(OrderRepository repository, Location location, double distance) {
+        List<Order> orders = new ArrayList<>();
+        for (OrderBatch batch : repository.findNear(location, distance)) {
+            orders.addAll(Arrays.asList(batch.getOrders()).subList(0, batch.size()));
+        }
+        return orders;
+    }
+}
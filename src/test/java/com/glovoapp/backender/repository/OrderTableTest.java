@@ -0,0 +1,150 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderTableTest {
+    private static final Location PLACA_CATALUNYA = new Location(41.3870194, 2.1678584);
+    private static final Location MADRID = new Location(40.4167754, -3.7037902);
+    private static final Order PIZZA = Order.builder()
+            .id("pizza")
+            .food(true)
+            .vip(false)
+            .pickup(PLACA_CATALUNYA)
+            .build();
+    private static final Order CHAIRS = Order.builder()
+            .id("chairs")
+            .food(false)
+            .vip(true)
+            .pickup(PLACA_CATALUNYA)
+            .build();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void findNear_copiesColumns(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        table.put(PIZZA, true, 0);
+
+        OrderBatch batch = table.findNear(PLACA_CATALUNYA, 1);
+
+        assertEquals(1, batch.size());
+        assertEquals(Math.toRadians(PLACA_CATALUNYA.getLat()), batch.getLats()[0]);
+        assertEquals(Math.toRadians(PLACA_CATALUNYA.getLon()), batch.getLons()[0]);
+        assertEquals(Math.cos(Math.toRadians(PLACA_CATALUNYA.getLat())), batch.getCosLats()[0]);
+        assertEquals(OrderBatch.FOOD | OrderBatch.NEEDS_BOX, batch.getFlags()[0]);
+        assertEquals(PIZZA, batch.getOrder(0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void put_existing_replacesRow(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        table.put(PIZZA, true, 0);
+
+        Order moved = PIZZA.toBuilder().pickup(MADRID).vip(true).build();
+        table.put(moved, true, 0);
+
+        assertEquals(0, table.findNear(PLACA_CATALUNYA, 1).size());
+        OrderBatch batch = table.findNear(MADRID, 1);
+        assertEquals(1, batch.size());
+        assertTrue(batch.has(0, OrderBatch.VIP));
+        assertEquals(moved, batch.getOrder(0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void remove_clearsRowAndReusesSlot(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        table.put(PIZZA, true, 0);
+
+        table.remove(PIZZA.getId());
+        assertEquals(0, table.findNear(PLACA_CATALUNYA, 1).size());
+
+        table.put(CHAIRS, false, 0);
+        OrderBatch batch = table.findNear(PLACA_CATALUNYA, 1);
+        assertEquals(1, batch.size());
+        assertEquals(OrderBatch.VIP, batch.getFlags()[0]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void setFlag_updatesRow(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        table.put(PIZZA, true, 0);
+
+        assertTrue(table.setFlag(PIZZA.getId(), OrderBatch.NEEDS_BOX, false));
+        assertFalse(table.setFlag(PIZZA.getId(), OrderBatch.NEEDS_BOX, false));
+        assertFalse(table.setFlag("unknown", OrderBatch.NEEDS_BOX, true));
+
+        assertFalse(table.findNear(PLACA_CATALUNYA, 1).has(0, OrderBatch.NEEDS_BOX));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void put_beyondInitialCapacity_grows(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        for (int i = 0; i < 5000; i++) {
+            table.put(CHAIRS.toBuilder().id(String.valueOf(i)).vip(i % 2 == 0).build(), false, 0);
+        }
+
+        OrderBatch batch = table.findNear(PLACA_CATALUNYA, 1);
+
+        assertEquals(5000, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(Integer.parseInt(batch.getOrder(i).getId()) % 2 == 0, batch.has(i, OrderBatch.VIP));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void findNear_concurrentWrites_consistentRows(boolean offHeap) throws InterruptedException {
+        OrderTable table = new OrderTable(offHeap);
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        for (int i = 0; i < 20000; i++) {
+            String id = String.valueOf(i % 300);
+            boolean vip = i % 3 == 0;
+            writers.execute(() -> {
+                table.put(CHAIRS.toBuilder().id(id).vip(vip).build(), false, 0);
+                table.remove(String.valueOf(Integer.parseInt(id) / 2));
+            });
+        }
+        writers.shutdown();
+
+        while (!writers.isTerminated()) {
+            OrderBatch batch = table.findNear(PLACA_CATALUNYA, 1);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Order order = batch.getOrder(i);
+                assertTrue(seen.add(order.getId()));
+                assertEquals(OrderBatch.flagsOf(order), batch.getFlags()[i]);
+            }
+        }
+        assertTrue(writers.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void findNear_orderWithoutPickup_neverFound(boolean offHeap) {
+        OrderTable table = new OrderTable(offHeap);
+        table.put(CHAIRS.toBuilder().pickup(null).build(), false, 0);
+        table.put(PIZZA, true, 0);
+
+        OrderBatch batch = table.findNear(PLACA_CATALUNYA, 20000);
+
+        assertEquals(ImmutableSet.of(PIZZA), ImmutableSet.of(batch.getOrder(0)));
+        assertEquals(1, batch.size());
+    }
+}
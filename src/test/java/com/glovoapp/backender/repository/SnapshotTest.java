@@ -0,0 +1,99 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+    private static final List<Order> ORDERS = ImmutableList.of(
+            Order.builder().id("order-1").description("A pizza").food(true).vip(false)
+                    .pickup(new Location(41.39, 2.19)).delivery(new Location(41.40, 2.16)).build(),
+            Order.builder().id("order-2").description("A pizza").vip(true).pickup(new Location(41.38, 2.17)).build(),
+            Order.builder().id("order-3").build());
+    private static final List<Courier> COURIERS = ImmutableList.of(
+            Courier.builder().id("courier-1").name("Manolo Escobar").box(true).vehicle(Vehicle.MOTORCYCLE)
+                    .location(new Location(41.39, 2.19)).build(),
+            Courier.builder().id("courier-2").box(false).vehicle(Vehicle.BICYCLE).build(),
+            Courier.builder().id("courier-3").location(new Location(null, 2.19)).build());
+
+    @Test
+    void readOrders_written_sameOrders() throws IOException {
+        Path file = temporaryFile();
+        Snapshot.writeOrders(file, ORDERS);
+
+        List<Order> orders = new ArrayList<>();
+        Snapshot.readOrders(file, orders::add);
+
+        assertEquals(ORDERS, orders);
+    }
+
+    @Test
+    void readCouriers_written_sameCouriers() throws IOException {
+        Path file = temporaryFile();
+        Snapshot.writeCouriers(file, COURIERS);
+
+        List<Courier> couriers = new ArrayList<>();
+        Snapshot.readCouriers(file, couriers::add);
+
+        assertEquals(COURIERS, couriers);
+    }
+
+    @Test
+    void readOrders_noOrders_empty() throws IOException {
+        Path file = temporaryFile();
+        Snapshot.writeOrders(file, ImmutableList.of());
+
+        List<Order> orders = new ArrayList<>();
+        Snapshot.readOrders(file, orders::add);
+
+        assertEquals(ImmutableList.of(), orders);
+    }
+
+    @Test
+    void readOrders_courierSnapshot_exception() throws IOException {
+        Path file = temporaryFile();
+        Snapshot.writeCouriers(file, COURIERS);
+
+        assertThrows(IllegalStateException.class, () -> Snapshot.readOrders(file, order -> {
+        }));
+    }
+
+    @Test
+    void readOrders_notASnapshot_exception() throws IOException {
+        Path file = temporaryFile();
+        Files.write(file, "[{\"id\": \"order-1\"}]".getBytes());
+
+        assertThrows(IllegalStateException.class, () -> Snapshot.readOrders(file, order -> {
+        }));
+    }
+
+    @Test
+    void readOrders_truncated_exception() throws IOException {
+        Path file = temporaryFile();
+        Snapshot.writeOrders(file, ORDERS);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IllegalStateException.class, () -> Snapshot.readOrders(file, order -> {
+        }));
+    }
+
+    private static Path temporaryFile() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
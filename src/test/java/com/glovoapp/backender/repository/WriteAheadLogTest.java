@@ -0,0 +1,176 @@
+package com.glovoapp.backender.repository;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+    private static final Courier COURIER_1 = Courier.builder().id("courier-1").name("Manolo Escobar")
+            .location(new Location(41.39, 2.19)).build();
+    private static final Courier COURIER_2 = Courier.builder().id("courier-2").box(true).build();
+    private static final Runnable NO_UNDO = () -> {
+    };
+
+    @Test
+    void replay_synced_everyEntryInOrder() throws IOException {
+        Path file = temporaryFile();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, () -> {
+        }, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+        log.delete("courier-3", NO_UNDO);
+        log.put(COURIER_2, NO_UNDO);
+        log.sync();
+
+        List<Object> entries = replay(file);
+
+        assertEquals(ImmutableList.of(COURIER_1, "courier-3", COURIER_2), entries);
+    }
+
+    @Test
+    void replay_missingFile_nothing() {
+        assertEquals(ImmutableList.of(), replay(temporaryDirectory().resolve("missing.log")));
+    }
+
+    @Test
+    void replay_tornTail_truncated() throws IOException {
+        Path file = temporaryFile();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, () -> {
+        }, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+        log.put(COURIER_2, NO_UNDO);
+        log.sync();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals(ImmutableList.of(COURIER_1), replay(file));
+        assertEquals(ImmutableList.of(COURIER_1), replay(file));
+    }
+
+    @Test
+    void replay_corruptEntry_endsTheLog() throws IOException {
+        Path file = temporaryFile();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, () -> {
+        }, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+        log.sync();
+        int firstEntry = (int) Files.size(file);
+        log.put(COURIER_2, NO_UNDO);
+        log.put(COURIER_1, NO_UNDO);
+        log.sync();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[firstEntry + 12] ^= 1;
+        Files.write(file, bytes);
+
+        assertEquals(ImmutableList.of(COURIER_1), replay(file));
+    }
+
+    @Test
+    void sync_concurrentWriters_everyEntryLogged() throws IOException {
+        Path file = temporaryFile();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, () -> {
+        }, Long.MAX_VALUE);
+
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            log.put(COURIER_1.toBuilder().id("courier-" + i).build(), NO_UNDO);
+            log.sync();
+        });
+
+        assertEquals(1000, replay(file).size());
+    }
+
+    @Test
+    void compact_someEntries_snapshotAndEmptyLog() throws IOException {
+        Path file = temporaryFile();
+        AtomicInteger snapshots = new AtomicInteger();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, snapshots::incrementAndGet, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+        log.sync();
+
+        log.compact();
+        log.put(COURIER_2, NO_UNDO);
+        log.sync();
+
+        assertEquals(1, snapshots.get());
+        assertEquals(ImmutableList.of(COURIER_2), replay(file));
+    }
+
+    @Test
+    void compact_snapshotFails_logKept() throws IOException {
+        Path file = temporaryFile();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, () -> {
+            throw new UncheckedIOException(new IOException("Disk full"));
+        }, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+        log.sync();
+
+        assertThrows(IllegalStateException.class, log::compact);
+
+        assertEquals(ImmutableList.of(COURIER_1), replay(file));
+    }
+
+    @Test
+    void sync_overCompactionSize_compactedInBackground() throws IOException, InterruptedException {
+        Path file = temporaryFile();
+        AtomicInteger snapshots = new AtomicInteger();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, snapshots::incrementAndGet, 1);
+
+        log.put(COURIER_1, NO_UNDO);
+        log.sync();
+        for (int wait = 0; wait < 100 && snapshots.get() == 0; wait++) {
+            Thread.sleep(50);
+        }
+
+        assertTrue(snapshots.get() > 0);
+    }
+
+    @Test
+    void close_pendingEntries_snapshotAndEmptyLog() throws IOException {
+        Path file = temporaryFile();
+        AtomicInteger snapshots = new AtomicInteger();
+        WriteAheadLog<Courier> log = new WriteAheadLog<>(file, snapshots::incrementAndGet, Long.MAX_VALUE);
+        log.put(COURIER_1, NO_UNDO);
+
+        log.close();
+
+        assertEquals(1, snapshots.get());
+        assertEquals(0, Files.size(file));
+        assertThrows(IllegalStateException.class, () -> log.put(COURIER_2, NO_UNDO));
+    }
+
+    private static List<Object> replay(Path file) {
+        List<Object> entries = new ArrayList<>();
+        WriteAheadLog.replay(file, Courier.class, entries::add, entries::add);
+        return entries;
+    }
+
+    private static Path temporaryFile() throws IOException {
+        Path file = Files.createTempFile(temporaryDirectory(), "couriers", ".log");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("log");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.OrderService.RankingDistance;
+import com.glovoapp.backender.service.OrderService.SlotPriority;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AssignmentEngineTest {
+    private static final Courier NEAR = courierAt("near", 0);
+    private static final Courier FAR = courierAt("far", 2);
+    private static final Order ORDER_1 = orderAt("order-1", 0.5);
+    private static final Order ORDER_2 = orderAt("order-2", 2.5);
+
+    @Test
+    void assignments_beforeFirstTick_empty() {
+        assertEquals(ImmutableMap.of(), engineWith(new OrderRepository(ImmutableList.of(ORDER_1))).assignments());
+    }
+
+    @Test
+    void tick_couriersAndOrders_closestAssignments() {
+        AssignmentEngine engine = engineWith(new OrderRepository(ImmutableList.of(ORDER_1, ORDER_2)));
+
+        engine.tick();
+
+        assertEquals(ImmutableMap.of("near", "order-1", "far", "order-2"), engine.assignments());
+    }
+
+    @Test
+    void tick_moreCouriersThanOrders_someIdle() {
+        AssignmentEngine engine = engineWith(new OrderRepository(ImmutableList.of(ORDER_2)));
+
+        engine.tick();
+
+        assertEquals(ImmutableMap.of("far", "order-2"), engine.assignments());
+    }
+
+    @Test
+    void tick_orderCancelled_reassigned() {
+        OrderRepository orderRepository = new OrderRepository(ImmutableList.of(ORDER_1, ORDER_2));
+        AssignmentEngine engine = engineWith(orderRepository);
+        engine.tick();
+
+        orderRepository.delete("order-2");
+        engine.tick();
+
+        assertEquals(ImmutableMap.of("near", "order-1"), engine.assignments());
+    }
+
+    @Test
+    void tick_nothingChanged_sameAssignments() {
+        AssignmentEngine engine = engineWith(new OrderRepository(ImmutableList.of(ORDER_1, ORDER_2)));
+        engine.tick();
+        Map<String, String> assignments = engine.assignments();
+
+        engine.tick();
+
+        assertEquals(assignments, engine.assignments());
+    }
+
+    @Test
+    void tick_noOrders_empty() {
+        AssignmentEngine engine = engineWith(new OrderRepository(ImmutableList.of()));
+
+        engine.tick();
+
+        assertEquals(ImmutableMap.of(), engine.assignments());
+    }
+
+    private static AssignmentEngine engineWith(OrderRepository orderRepository) {
+        CourierRepository courierRepository = new CourierRepository(ImmutableList.of(NEAR, FAR));
+        DistanceCalculator distanceCalculator = new DistanceCalculator();
+        new BoxRequirementClassifier(orderRepository, ImmutableList.of("pizza"));
+        OrderService orderService = new OrderService(orderRepository,
+                courierRepository,
+                distanceCalculator,
+                new CourierOrdersCache(orderRepository, distanceCalculator, 0, 1000, 0.05),
+                new OrderMetrics(new SimpleMeterRegistry()),
+                ImmutableMap.of(Vehicle.MOTORCYCLE, 100d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL),
+                RankingDistance.PICKUP);
+        return new AssignmentEngine(courierRepository, orderService, 10, 0.5);
+    }
+
+    private static Courier courierAt(String id, double kilometersEast) {
+        return Courier.builder().id(id).box(true).vehicle(Vehicle.MOTORCYCLE).location(eastOfOrigin(kilometersEast)).build();
+    }
+
+    private static Order orderAt(String id, double kilometersEast) {
+        return Order.builder().id(id).description("").pickup(eastOfOrigin(kilometersEast)).build();
+    }
+
+    /**
+     * Along the equator, distances are proportional to longitude differences
+     */
+    private static Location eastOfOrigin(double distance) {
+        return new Location(0d, Math.toDegrees(distance / 6371));
+    }
+}
@@ -0,0 +1,44 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoxRequirementClassifierTest {
+    private static final Order PIZZA = Order.builder().id("1").description("A PIZZA").build();
+    private static final Order CHAIRS = Order.builder().id("2").description("2 chairs").build();
+
+    @Test
+    void constructor_classifiesStoredOrders() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of(PIZZA, CHAIRS));
+
+        new BoxRequirementClassifier(repository, ImmutableList.of("pizza"));
+
+        assertTrue(repository.needsBox(PIZZA.getId()));
+        assertFalse(repository.needsBox(CHAIRS.getId()));
+    }
+
+    @Test
+    void constructor_classifiesOrdersStoredLater() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of());
+        new BoxRequirementClassifier(repository, ImmutableList.of("pizza"));
+
+        repository.save(PIZZA);
+        repository.save(CHAIRS);
+
+        assertTrue(repository.needsBox(PIZZA.getId()));
+        assertFalse(repository.needsBox(CHAIRS.getId()));
+    }
+
+    @Test
+    void classify_boxableFood_needsBox() {
+        BoxRequirementClassifier classifier = new BoxRequirementClassifier(new OrderRepository(ImmutableList.of()), ImmutableList.of("pizza"));
+
+        assertTrue(classifier.classify(PIZZA));
+        assertFalse(classifier.classify(CHAIRS));
+    }
+}
@@ -0,0 +1,234 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.ClusterTopology;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterRouterTest {
+    private static final String SELF = "http://a";
+    private static final String OTHER = "http://b";
+    private static final String COURIER_ID = "courier-1";
+    private static final Location LOCATION = new Location(41.3870194, 2.1678584);
+    private static final Courier COURIER = Courier.builder().id(COURIER_ID).vehicle(Vehicle.MOTORCYCLE).location(LOCATION).build();
+    private static final Order ORDER_1 = Order.builder().id("1").description("").pickup(LOCATION).build();
+    private static final Order ORDER_2 = Order.builder().id("2").description("").pickup(LOCATION).build();
+    private static final Order ORDER_3 = Order.builder().id("3").description("").pickup(LOCATION).build();
+
+    @Mock
+    private ClusterTopology cluster;
+
+    @Mock
+    private ClusterClient clusterClient;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private CourierService courierService;
+
+    @Mock
+    private CourierRepository courierRepository;
+
+    private ClusterRouter clusterRouter;
+
+    @BeforeEach
+    void setUp() {
+        clusterRouter = new ClusterRouter(cluster, clusterClient, orderService, courierService, courierRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clusterRouter.shutdown();
+    }
+
+    @Test
+    void ordersForCourier_onlyOwnRegionsNear_rankedLocally() {
+        OrderPage page = new OrderPage(ImmutableList.of(ORDER_1), "next");
+        givenOwnCourierNear(ImmutableSet.of(SELF));
+        when(orderService.ordersForCourier(COURIER_ID, 1, null)).thenReturn(page);
+
+        assertEquals(page, clusterRouter.ordersForCourier(COURIER_ID, 1, null));
+        verifyZeroInteractions(clusterClient);
+    }
+
+    @Test
+    void ordersForCourier_courierOfOtherNode_forwarded() {
+        OrderPage page = new OrderPage(ImmutableList.of(ORDER_1), null);
+        when(cluster.ownsCourier(COURIER_ID)).thenReturn(false);
+        when(cluster.ownerOfCourier(COURIER_ID)).thenReturn(OTHER);
+        when(clusterClient.ordersForCourier(OTHER, COURIER_ID, 10, "cursor")).thenReturn(page);
+
+        assertEquals(page, clusterRouter.ordersForCourier(COURIER_ID, 10, "cursor"));
+    }
+
+    @Test
+    void ordersForCourier_regionsOfOtherNodesNear_rankingsMerged() {
+        givenOwnCourierNear(ImmutableSet.of(SELF, OTHER));
+        when(orderService.rankNear(COURIER, 3, null)).thenReturn(ImmutableList.of(ranked(ORDER_1, 1), ranked(ORDER_3, 3)));
+        when(clusterClient.rank(OTHER, COURIER, 3, null)).thenReturn(ImmutableList.of(ranked(ORDER_2, 2)));
+
+        OrderPage page = clusterRouter.ordersForCourier(COURIER_ID, 2, null);
+
+        assertEquals(new OrderPage(ImmutableList.of(ORDER_1, ORDER_2), ranked(ORDER_2, 2).getCursor()), page);
+    }
+
+    @Test
+    void ordersForCourier_regionsOfOtherNodesLastPage_noCursor() {
+        givenOwnCourierNear(ImmutableSet.of(SELF, OTHER));
+        when(orderService.rankNear(COURIER, 3, null)).thenReturn(ImmutableList.of(ranked(ORDER_2, 2)));
+        when(clusterClient.rank(OTHER, COURIER, 3, null)).thenReturn(ImmutableList.of(ranked(ORDER_1, 2)));
+
+        assertEquals(new OrderPage(ImmutableList.of(ORDER_1, ORDER_2), null),
+                clusterRouter.ordersForCourier(COURIER_ID, 2, null));
+    }
+
+    @Test
+    void ordersForCourier_onlyRegionsOfOtherNodesNear_notRankedLocally() {
+        givenOwnCourierNear(ImmutableSet.of(OTHER));
+        when(clusterClient.rank(OTHER, COURIER, Integer.MAX_VALUE, null)).thenReturn(ImmutableList.of(ranked(ORDER_1, 1)));
+
+        assertEquals(new OrderPage(ImmutableList.of(ORDER_1), null),
+                clusterRouter.ordersForCourier(COURIER_ID, Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    void ordersForCourier_otherNodeFails_exception() {
+        givenOwnCourierNear(ImmutableSet.of(OTHER));
+        when(clusterClient.rank(OTHER, COURIER, 2, null)).thenThrow(new IllegalStateException("Node down"));
+
+        assertThrows(IllegalStateException.class, () -> clusterRouter.ordersForCourier(COURIER_ID, 1, null));
+    }
+
+    @Test
+    void ordersForCourier_unknownCourier_exception() {
+        when(cluster.ownsCourier(COURIER_ID)).thenReturn(true);
+        when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> clusterRouter.ordersForCourier(COURIER_ID, 1, null));
+    }
+
+    @Test
+    void create_regionOfOtherNode_forwardedWithId() {
+        Order order = Order.builder().description("").pickup(LOCATION).build();
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.ownerOfOrder(any())).thenReturn(OTHER);
+        when(clusterClient.create(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        Order created = clusterRouter.create(order);
+
+        verify(clusterClient).create(OTHER, created);
+        assertEquals(order, created.toBuilder().id(null).build());
+    }
+
+    @Test
+    void create_ownRegion_createdLocally() {
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.ownerOfOrder(ORDER_1)).thenReturn(SELF);
+        when(orderService.create(ORDER_1)).thenReturn(ORDER_1);
+
+        assertEquals(ORDER_1, clusterRouter.create(ORDER_1));
+        verifyZeroInteractions(clusterClient);
+    }
+
+    @Test
+    void create_movedToRegionOfOtherNode_droppedHere() {
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.getNodes()).thenReturn(ImmutableList.of(SELF, OTHER));
+        when(cluster.ownerOfOrder(ORDER_1)).thenReturn(OTHER);
+        when(clusterClient.create(OTHER, ORDER_1)).thenReturn(ORDER_1);
+
+        assertEquals(ORDER_1, clusterRouter.create(ORDER_1));
+
+        verify(orderService).cancel("1");
+        verify(clusterClient, never()).cancel(any(), any());
+    }
+
+    @Test
+    void create_movedToOwnRegion_droppedFromOtherNode() {
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.getNodes()).thenReturn(ImmutableList.of(SELF, OTHER));
+        when(cluster.ownerOfOrder(ORDER_1)).thenReturn(SELF);
+        when(orderService.create(ORDER_1)).thenReturn(ORDER_1);
+        when(clusterClient.cancel(OTHER, "1")).thenReturn(Optional.of(ORDER_1));
+
+        assertEquals(ORDER_1, clusterRouter.create(ORDER_1));
+
+        verify(clusterClient).cancel(OTHER, "1");
+        verify(orderService, never()).cancel(any());
+    }
+
+    @Test
+    void create_notStoredElsewhere_created() {
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.getNodes()).thenReturn(ImmutableList.of(SELF, OTHER));
+        when(cluster.ownerOfOrder(ORDER_1)).thenReturn(OTHER);
+        when(clusterClient.create(OTHER, ORDER_1)).thenReturn(ORDER_1);
+        when(orderService.cancel("1")).thenThrow(new ResourceNotFoundException("Order", "1"));
+
+        assertEquals(ORDER_1, clusterRouter.create(ORDER_1));
+    }
+
+    @Test
+    void cancel_orderOfOtherNode_cancelledThere() {
+        when(orderService.cancel("1")).thenThrow(new ResourceNotFoundException("Order", "1"));
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.getNodes()).thenReturn(ImmutableList.of(SELF, OTHER));
+        when(clusterClient.cancel(OTHER, "1")).thenReturn(Optional.of(ORDER_1));
+
+        assertEquals(ORDER_1, clusterRouter.cancel("1"));
+    }
+
+    @Test
+    void cancel_noNodeWithOrder_exception() {
+        when(orderService.cancel("1")).thenThrow(new ResourceNotFoundException("Order", "1"));
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(cluster.getNodes()).thenReturn(ImmutableList.of(SELF, OTHER));
+        when(clusterClient.cancel(OTHER, "1")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> clusterRouter.cancel("1"));
+    }
+
+    @Test
+    void updateLocation_courierOfOtherNode_forwarded() {
+        when(cluster.ownsCourier(COURIER_ID)).thenReturn(false);
+        when(cluster.ownerOfCourier(COURIER_ID)).thenReturn(OTHER);
+        when(clusterClient.updateLocation(OTHER, COURIER_ID, LOCATION)).thenReturn(COURIER);
+
+        assertEquals(COURIER, clusterRouter.updateLocation(COURIER_ID, LOCATION));
+        verifyZeroInteractions(courierService);
+    }
+
+    private void givenOwnCourierNear(ImmutableSet<String> owners) {
+        when(cluster.ownsCourier(COURIER_ID)).thenReturn(true);
+        when(cluster.getSelf()).thenReturn(SELF);
+        when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.of(COURIER));
+        when(orderService.rangeOf(COURIER)).thenReturn(500d);
+        when(cluster.ownersNear(LOCATION, 500d)).thenReturn(owners);
+    }
+
+    private static RankedOrder ranked(Order order, long rankKey) {
+        return new RankedOrder(order, new RankCursor(rankKey, order.getId()).encode());
+    }
+}
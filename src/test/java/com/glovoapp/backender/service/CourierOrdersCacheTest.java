@@ -0,0 +1,198 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CourierOrdersCacheTest {
+    private static final double RANGE = 5;
+    private static final Location ORIGIN = new Location(41.3965463, 2.1963997);
+    private static final Location NEARBY = new Location(41.3975463, 2.1963997);
+    private static final Location FAR_AWAY = new Location(40.4167754, -3.7037902);
+    private static final Courier COURIER = Courier.builder()
+            .id("courier")
+            .box(true)
+            .vehicle(Vehicle.BICYCLE)
+            .location(ORIGIN)
+            .build();
+    private static final OrderPage PAGE = new OrderPage(ImmutableList.of(), null);
+
+    private OrderRepository orderRepository;
+    private CourierOrdersCache cache;
+    private AtomicInteger rankings;
+    private Supplier<OrderPage> ranking;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = new OrderRepository(ImmutableList.of());
+        cache = new CourierOrdersCache(orderRepository, new DistanceCalculator(), 100, 60_000, 0.05,
+                MoreExecutors.newDirectExecutorService());
+        rankings = new AtomicInteger();
+        ranking = () -> {
+            rankings.incrementAndGet();
+            return PAGE;
+        };
+    }
+
+    @Test
+    void get_samePageTwice_rankedOnce() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(PAGE, cache.get(COURIER, RANGE, 10, null, ranking));
+        assertEquals(1, rankings.get());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void get_otherPage_rankedAgain() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+        cache.get(COURIER, RANGE, 10, "cursor", ranking);
+        cache.get(COURIER, RANGE, 20, null, ranking);
+
+        assertEquals(3, rankings.get());
+    }
+
+    @Test
+    void get_orderCreatedInRange_rankedAgain() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        orderRepository.save(Order.builder().id("order").pickup(NEARBY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_orderCreatedOutOfRange_cached() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        orderRepository.save(Order.builder().id("order").pickup(FAR_AWAY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(1, rankings.get());
+    }
+
+    @Test
+    void get_orderMovedOutOfRange_rankedAgain() {
+        orderRepository.save(Order.builder().id("order").pickup(NEARBY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        orderRepository.save(Order.builder().id("order").pickup(FAR_AWAY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_orderReclassified_rankedAgain() {
+        orderRepository.save(Order.builder().id("order").pickup(NEARBY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        orderRepository.updateNeedsBox("order", true);
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_orderChangedWhileRanking_notCached() {
+        cache.get(COURIER, RANGE, 10, null, () -> {
+            orderRepository.save(Order.builder().id("order").pickup(NEARBY).build());
+            return ranking.get();
+        });
+
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_orderChangeInRangeNotHandledYet_rankedAgain() throws InterruptedException {
+        CountDownLatch handling = new CountDownLatch(1);
+        ExecutorService invalidator = blockedUntil(handling);
+        cache = new CourierOrdersCache(orderRepository, new DistanceCalculator(), 100, 60_000, 0.05, invalidator);
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        orderRepository.save(Order.builder().id("order").pickup(NEARBY).build());
+        cache.get(COURIER, RANGE, 10, null, ranking);
+        handling.countDown();
+        invalidator.shutdown();
+        invalidator.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_unrelatedChangesNotHandledYet_cached() throws InterruptedException {
+        CountDownLatch handling = new CountDownLatch(1);
+        ExecutorService invalidator = blockedUntil(handling);
+        cache = new CourierOrdersCache(orderRepository, new DistanceCalculator(), 100, 60_000, 0.05, invalidator);
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        for (int i = 0; i < 300; i++) {
+            orderRepository.save(Order.builder().id("order-" + i).pickup(FAR_AWAY).build());
+            cache.get(COURIER, RANGE, 10, null, ranking);
+        }
+        handling.countDown();
+        invalidator.shutdown();
+        invalidator.awaitTermination(5, TimeUnit.SECONDS);
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        assertEquals(1, rankings.get());
+        assertEquals(301, cache.stats().hitCount());
+    }
+
+    @Test
+    void get_courierMovedWithinDrift_cached() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        cache.get(COURIER.toBuilder().location(new Location(41.3966463, 2.1963997)).build(), RANGE, 10, null, ranking);
+
+        assertEquals(1, rankings.get());
+    }
+
+    @Test
+    void get_courierMovedBeyondDrift_rankedAgain() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        cache.get(COURIER.toBuilder().location(NEARBY).build(), RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    void get_courierChangedBox_rankedAgain() {
+        cache.get(COURIER, RANGE, 10, null, ranking);
+
+        cache.get(COURIER.toBuilder().box(false).build(), RANGE, 10, null, ranking);
+
+        assertEquals(2, rankings.get());
+    }
+
+    private static ExecutorService blockedUntil(CountDownLatch latch) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return executor;
+    }
+}
@@ -0,0 +1,222 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.model.Order;
+import com.glovoapp.backender.model.Vehicle;
+import com.glovoapp.backender.repository.CourierRepository;
+import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.OrderService.RankingDistance;
+import com.glovoapp.backender.service.OrderService.SlotPriority;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CourierOrdersFeedTest {
+    private static final Courier COURIER = Courier.builder().id("courier").box(true).vehicle(Vehicle.BICYCLE)
+            .location(eastOfOrigin(0)).build();
+    private static final Courier OTHER_COURIER = COURIER.toBuilder().id("other-courier").build();
+    private static final Order NEAR_ORDER = orderAt("near", 1);
+    private static final Order OTHER_NEAR_ORDER = orderAt("other-near", 2);
+    private static final Order FAR_ORDER = orderAt("far", 10);
+
+    private final BlockingQueue<OrdersDelta> deltas = new LinkedBlockingQueue<>();
+    private final CountDownLatch dropped = new CountDownLatch(1);
+    private OrderRepository orderRepository;
+    private CourierRepository courierRepository;
+    private CourierOrdersFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = new OrderRepository(ImmutableList.of(NEAR_ORDER, FAR_ORDER));
+        courierRepository = new CourierRepository(ImmutableList.of(COURIER, OTHER_COURIER));
+        DistanceCalculator distanceCalculator = new DistanceCalculator();
+        new BoxRequirementClassifier(orderRepository, ImmutableList.of("pizza"));
+        OrderService orderService = new OrderService(orderRepository,
+                courierRepository,
+                distanceCalculator,
+                new CourierOrdersCache(orderRepository, distanceCalculator, 100, 60_000, 0.05),
+                new OrderMetrics(new SimpleMeterRegistry()),
+                ImmutableMap.of(Vehicle.BICYCLE, 5d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL),
+                RankingDistance.PICKUP);
+        feed = new CourierOrdersFeed(orderRepository, courierRepository, orderService);
+    }
+
+    @Test
+    void subscribe_availableOrders_allAdded() throws InterruptedException {
+        feed.subscribe(COURIER.getId(), 10, deltas::add, dropped::countDown);
+
+        assertEquals(new OrdersDelta(ImmutableList.of(NEAR_ORDER), ImmutableList.of(), ImmutableList.of("near")),
+                nextDelta());
+    }
+
+    @Test
+    void subscribe_noOrders_emptyDelta() throws InterruptedException {
+        orderRepository.delete(NEAR_ORDER.getId());
+
+        feed.subscribe(COURIER.getId(), 10, deltas::add, dropped::countDown);
+
+        assertEquals(new OrdersDelta(ImmutableList.of(), ImmutableList.of(), ImmutableList.of()), nextDelta());
+    }
+
+    @Test
+    void subscribe_unknownCourier_exception() {
+        assertThrows(ResourceNotFoundException.class, () -> feed.subscribe("unknown", 10, deltas::add, dropped::countDown));
+    }
+
+    @Test
+    void subscribe_nonPositiveLimit_exception() {
+        assertThrows(InvalidRequestException.class, () -> feed.subscribe(COURIER.getId(), 0, deltas::add, dropped::countDown));
+    }
+
+    @Test
+    void subscribe_orderCreatedNearby_added() throws InterruptedException {
+        subscribed();
+
+        orderRepository.save(OTHER_NEAR_ORDER);
+
+        assertEquals(new OrdersDelta(ImmutableList.of(OTHER_NEAR_ORDER), ImmutableList.of(),
+                ImmutableList.of("near", "other-near")), nextDelta());
+    }
+
+    @Test
+    void subscribe_orderCancelled_removed() throws InterruptedException {
+        subscribed();
+
+        orderRepository.delete(NEAR_ORDER.getId());
+
+        assertEquals(new OrdersDelta(ImmutableList.of(), ImmutableList.of("near"), ImmutableList.of()), nextDelta());
+    }
+
+    @Test
+    void subscribe_farOrderChanged_nothing() throws InterruptedException {
+        subscribed();
+
+        orderRepository.delete(FAR_ORDER.getId());
+
+        assertNull(deltas.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscribe_courierMoved_reranked() throws InterruptedException {
+        subscribed();
+
+        courierRepository.updateLocation(COURIER.getId(), eastOfOrigin(8));
+
+        assertEquals(new OrdersDelta(ImmutableList.of(FAR_ORDER), ImmutableList.of("near"), ImmutableList.of("far")),
+                nextDelta());
+    }
+
+    @Test
+    void cancel_orderCreatedNearby_nothing() throws InterruptedException {
+        subscribed().cancel();
+
+        orderRepository.save(OTHER_NEAR_ORDER);
+
+        assertNull(deltas.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscribe_listenerFailing_dropped() throws InterruptedException {
+        BlockingQueue<OrdersDelta> attempts = new LinkedBlockingQueue<>();
+        AtomicInteger calls = new AtomicInteger();
+        feed.subscribe(COURIER.getId(), 10, delta -> {
+            attempts.add(delta);
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("Disconnected");
+            }
+        }, dropped::countDown);
+
+        orderRepository.save(OTHER_NEAR_ORDER);
+        attempts.poll(1, TimeUnit.SECONDS);
+        attempts.poll(1, TimeUnit.SECONDS);
+        orderRepository.delete(OTHER_NEAR_ORDER.getId());
+
+        assertNull(attempts.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(dropped.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscribe_slowListener_othersNotHeldBack() throws InterruptedException {
+        CountDownLatch unblocked = new CountDownLatch(1);
+        feed.subscribe(OTHER_COURIER.getId(), 10, blockedAfterFirst(unblocked), () -> {
+        });
+        subscribed();
+
+        orderRepository.save(OTHER_NEAR_ORDER);
+
+        assertEquals(new OrdersDelta(ImmutableList.of(OTHER_NEAR_ORDER), ImmutableList.of(),
+                ImmutableList.of("near", "other-near")), nextDelta());
+        unblocked.countDown();
+    }
+
+    @Test
+    void subscribe_listenerFallingBehind_dropped() throws InterruptedException {
+        CountDownLatch unblocked = new CountDownLatch(1);
+        feed.subscribe(COURIER.getId(), 10, blockedAfterFirst(unblocked), dropped::countDown);
+
+        for (int i = 0; i < 500 && dropped.getCount() > 0; i++) {
+            courierRepository.updateLocation(COURIER.getId(), eastOfOrigin(i % 2 == 0 ? 8 : 0));
+            Thread.sleep(10);
+        }
+        unblocked.countDown();
+
+        assertTrue(dropped.await(1, TimeUnit.SECONDS));
+    }
+
+    private CourierOrdersFeed.Subscription subscribed() throws InterruptedException {
+        CourierOrdersFeed.Subscription subscription = feed.subscribe(COURIER.getId(), 10, deltas::add,
+                dropped::countDown);
+        nextDelta();
+        return subscription;
+    }
+
+    /**
+     * A listener taking the first delta, sent while subscribing, and then blocked until the latch is released
+     */
+    private static Consumer<OrdersDelta> blockedAfterFirst(CountDownLatch latch) {
+        AtomicBoolean first = new AtomicBoolean(true);
+        return delta -> {
+            if (first.getAndSet(false)) {
+                return;
+            }
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private OrdersDelta nextDelta() throws InterruptedException {
+        return deltas.poll(5, TimeUnit.SECONDS);
+    }
+
+    private static Order orderAt(String id, double kilometersEast) {
+        return Order.builder().id(id).description("").pickup(eastOfOrigin(kilometersEast)).build();
+    }
+
+    /**
+     * Along the equator, distances are proportional to longitude differences
+     */
+    private static Location eastOfOrigin(double distance) {
+        return new Location(0d, Math.toDegrees(distance / 6371));
+    }
+}
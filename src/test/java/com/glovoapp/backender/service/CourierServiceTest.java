@@ -0,0 +1,47 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Courier;
+import com.glovoapp.backender.model.Location;
+import com.glovoapp.backender.repository.CourierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CourierServiceTest {
+    private static final String COURIER_ID = "1";
+    private static final Location LOCATION = new Location(1d, 1d);
+
+    @Mock
+    private CourierRepository courierRepository;
+
+    private CourierService courierService;
+
+    @BeforeEach
+    void setUp() {
+        courierService = new CourierService(courierRepository);
+    }
+
+    @Test
+    void updateLocation_existing_returnsMoved() {
+        Courier moved = Courier.builder().id(COURIER_ID).location(LOCATION).build();
+        when(courierRepository.updateLocation(COURIER_ID, LOCATION)).thenReturn(Optional.of(moved));
+
+        assertEquals(moved, courierService.updateLocation(COURIER_ID, LOCATION));
+    }
+
+    @Test
+    void updateLocation_notExisting_exception() {
+        when(courierRepository.updateLocation(COURIER_ID, LOCATION)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> courierService.updateLocation(COURIER_ID, LOCATION));
+    }
+}
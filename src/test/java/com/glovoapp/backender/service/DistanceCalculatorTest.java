@@ -3,9 +3,17 @@ package com.glovoapp.backender.service;
 import com.glovoapp.backender.model.Location;
 import org.junit.jupiter.api.Test;
 
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DistanceCalculatorTest {
+    private static final double ACCURACY = 1e-9;
+    private static final DistanceCalculator CALCULATOR = new DistanceCalculator();
+
     @Test
     void smokeTest() {
         Location francescMacia = new Location(41.3925603, 2.1418532);
@@ -15,4 +23,149 @@ class DistanceCalculatorTest {
         assertEquals(2.0, new DistanceCalculator().calculateDistance(francescMacia, placaCatalunya), 0.5);
     }
 
-}
\ No newline at end of file
+    @Test
+    void calculateDistance_sameAsTextbookHaversine() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            Location start = randomLocation(random);
+            Location end = randomLocation(random);
+
+            assertEquals(textbookHaversine(start, end), CALCULATOR.calculateDistance(start, end), ACCURACY);
+        }
+    }
+
+    @Test
+    void calculateDistance_antipodes_halfCircumference() {
+        assertEquals(Math.PI * 6371, CALCULATOR.calculateDistance(new Location(0d, 0d), new Location(0d, 180d)), ACCURACY);
+    }
+
+    @Test
+    void calculateDistances_allInRange_sameAsSingleDistance() {
+        Random random = new Random(11);
+        Location origin = randomLocation(random);
+        Location[] points = randomLocations(random, 1000);
+
+        double[] distances = batch(origin, points, 30000);
+
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(CALCULATOR.calculateDistance(origin, points[i]), distances[i], ACCURACY);
+        }
+    }
+
+    @Test
+    void calculateDistances_neverRejectsPointsInRange() {
+        Random random = new Random(13);
+        for (int round = 0; round < 100; round++) {
+            Location origin = randomLocation(random);
+            Location[] points = randomLocations(random, 500);
+            double maxDistance = random.nextDouble() * 10000;
+
+            double[] distances = batch(origin, points, maxDistance);
+
+            for (int i = 0; i < points.length; i++) {
+                double exact = CALCULATOR.calculateDistance(origin, points[i]);
+                if (exact <= maxDistance) {
+                    assertEquals(exact, distances[i], ACCURACY);
+                } else {
+                    assertTrue(distances[i] > maxDistance - ACCURACY);
+                }
+            }
+        }
+    }
+
+    @Test
+    void calculateDistances_farPoints_rejected() {
+        Location placaCatalunya = new Location(41.3870194, 2.1678584);
+        Location[] points = {new Location(40.4167754, -3.7037902), new Location(41.3870194, 2.3)};
+
+        double[] distances = batch(placaCatalunya, points, 5);
+
+        assertEquals(Double.POSITIVE_INFINITY, distances[0]);
+        assertEquals(Double.POSITIVE_INFINITY, distances[1]);
+    }
+
+    @Test
+    void calculateDistances_negativeMaxDistance_allRejected() {
+        Location origin = new Location(0d, 0d);
+
+        double[] distances = batch(origin, new Location[]{origin}, -1);
+
+        assertEquals(Double.POSITIVE_INFINITY, distances[0]);
+    }
+
+    @Test
+    void calculateDistances_onlyFirstCount() {
+        Location origin = new Location(0d, 0d);
+        double[] distances = {-1, -1};
+
+        CALCULATOR.calculateDistances(origin, new double[2], new double[2], new double[]{1, 1}, 1, 10, distances);
+
+        assertEquals(0, distances[0], ACCURACY);
+        assertEquals(-1, distances[1]);
+    }
+
+    @Test
+    void calculateDistance_withStrategy_strategyDistance() {
+        DistanceCalculator calculator = new DistanceCalculator(Optional.of(
+                (fromLat, fromLon, toLat, toLon, straightLine) -> straightLine * 2));
+        Location start = new Location(41.3925603, 2.1418532);
+        Location end = new Location(41.3870194, 2.1678584);
+
+        assertEquals(CALCULATOR.calculateDistance(start, end) * 2, calculator.calculateDistance(start, end), ACCURACY);
+    }
+
+    @Test
+    void calculateDistances_withStrategy_onlyPointsInStraightLineRangeAsked() {
+        AtomicInteger asked = new AtomicInteger();
+        DistanceCalculator calculator = new DistanceCalculator(Optional.of((fromLat, fromLon, toLat, toLon, straightLine) -> {
+            asked.incrementAndGet();
+            return straightLine * 2;
+        }));
+        Location placaCatalunya = new Location(41.3870194, 2.1678584);
+        Location[] points = {new Location(41.3925603, 2.1418532), new Location(40.4167754, -3.7037902)};
+
+        double[] distances = batch(calculator, placaCatalunya, points, 5);
+
+        assertEquals(1, asked.get());
+        assertEquals(CALCULATOR.calculateDistance(placaCatalunya, points[0]) * 2, distances[0], ACCURACY);
+        assertEquals(Double.POSITIVE_INFINITY, distances[1]);
+    }
+
+    private static double[] batch(Location origin, Location[] points, double maxDistance) {
+        return batch(CALCULATOR, origin, points, maxDistance);
+    }
+
+    private static double[] batch(DistanceCalculator calculator, Location origin, Location[] points, double maxDistance) {
+        double[] lats = new double[points.length];
+        double[] lons = new double[points.length];
+        double[] cosLats = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            lats[i] = Math.toRadians(points[i].getLat());
+            lons[i] = Math.toRadians(points[i].getLon());
+            cosLats[i] = Math.cos(lats[i]);
+        }
+        double[] distances = new double[points.length];
+        calculator.calculateDistances(origin, lats, lons, cosLats, points.length, maxDistance, distances);
+        return distances;
+    }
+
+    private static Location[] randomLocations(Random random, int count) {
+        Location[] locations = new Location[count];
+        for (int i = 0; i < count; i++) {
+            locations[i] = randomLocation(random);
+        }
+        return locations;
+    }
+
+    private static Location randomLocation(Random random) {
+        return new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+    }
+
+    private static double textbookHaversine(Location start, Location end) {
+        double deltaLat = Math.toRadians(end.getLat() - start.getLat());
+        double deltaLon = Math.toRadians(end.getLon() - start.getLon());
+        double a = Math.pow(Math.sin(deltaLat / 2), 2) + Math.cos(Math.toRadians(start.getLat()))
+                * Math.cos(Math.toRadians(end.getLat())) * Math.pow(Math.sin(deltaLon / 2), 2);
+        return 6371 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
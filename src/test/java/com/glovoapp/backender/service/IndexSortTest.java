@@ -0,0 +1,63 @@
+package com.glovoapp.backender.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexSortTest {
+    private static final int[] VALUES = {5, 3, 9, 3, 1, 7, 2, 8, 6, 4, 0, 9};
+    private static final IntBinaryOperator BY_VALUE = (i, j) -> Integer.compare(VALUES[i], VALUES[j]);
+
+    @Test
+    void sort_equalValues_stable() {
+        int[] indexes = indexes(VALUES.length);
+
+        IndexSort.sort(indexes, indexes.length, BY_VALUE);
+
+        assertArrayEquals(new int[]{10, 4, 6, 1, 3, 9, 0, 8, 5, 7, 2, 11}, indexes);
+    }
+
+    @Test
+    void selectSmallest_limitBelowCount_sortedSmallest() {
+        int[] indexes = indexes(VALUES.length);
+
+        assertEquals(4, IndexSort.selectSmallest(indexes, indexes.length, 4, BY_VALUE));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, valuesOf(indexes, 4));
+    }
+
+    @Test
+    void selectSmallest_limitAboveCount_sortsAll() {
+        int[] indexes = indexes(VALUES.length);
+
+        assertEquals(VALUES.length, IndexSort.selectSmallest(indexes, indexes.length, Integer.MAX_VALUE, BY_VALUE));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 3, 4, 5, 6, 7, 8, 9, 9}, valuesOf(indexes, VALUES.length));
+    }
+
+    @Test
+    void selectSmallest_randomValues_sameAsFullSort() {
+        Random random = new Random(42);
+        int[] values = random.ints(1000, 0, 100).toArray();
+        IntBinaryOperator byValue = (i, j) -> Integer.compare(values[i], values[j]);
+        int[] selected = indexes(values.length);
+
+        int count = IndexSort.selectSmallest(selected, values.length, 37, byValue);
+
+        int[] sorted = Arrays.stream(values).sorted().limit(37).toArray();
+        assertArrayEquals(sorted, Arrays.stream(selected).limit(count).map(i -> values[i]).toArray());
+    }
+
+    private static int[] indexes(int count) {
+        int[] indexes = new int[count];
+        Arrays.setAll(indexes, i -> i);
+        return indexes;
+    }
+
+    private static int[] valuesOf(int[] indexes, int count) {
+        return Arrays.stream(indexes).limit(count).map(i -> VALUES[i]).toArray();
+    }
+}
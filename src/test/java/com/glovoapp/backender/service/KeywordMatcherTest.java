@@ -0,0 +1,59 @@
+package com.glovoapp.backender.service;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordMatcherTest {
+    private static final KeywordMatcher BOXABLE_FOODS = new KeywordMatcher(ImmutableList.of("pizza", " cake", "flamingo "));
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "I want a pizza cut into very small slices",
+            "Cake for Mum",
+            "1 PINK FLAMINGO",
+            "2 pizzas",
+            "cheesecake",
+            "- 2 beers\n- 1 large pizza\n- napkins"
+    })
+    void matches_containsKeyword_true(String description) {
+        assertTrue(BOXABLE_FOODS.matches(description));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2 chairs", "piz za", "flamenco shoes, no flaming", "", "ca ke"})
+    void matches_noKeyword_false(String description) {
+        assertFalse(BOXABLE_FOODS.matches(description));
+    }
+
+    @Test
+    void matches_null_false() {
+        assertFalse(BOXABLE_FOODS.matches(null));
+    }
+
+    @Test
+    void matches_overlappingKeywords_followsFailureLinks() {
+        KeywordMatcher matcher = new KeywordMatcher(ImmutableList.of("abcd", "bce"));
+
+        assertTrue(matcher.matches("xabce"));
+        assertFalse(matcher.matches("xabcx"));
+    }
+
+    @Test
+    void matches_keywordInsideOtherKeyword_true() {
+        KeywordMatcher matcher = new KeywordMatcher(ImmutableList.of("cheesecake", "cheese"));
+
+        assertTrue(matcher.matches("some cheese please"));
+    }
+
+    @Test
+    void matches_blankKeywords_ignored() {
+        KeywordMatcher matcher = new KeywordMatcher(ImmutableList.of("", "  "));
+
+        assertFalse(matcher.matches("anything"));
+    }
+}
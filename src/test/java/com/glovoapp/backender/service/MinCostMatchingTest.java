@@ -0,0 +1,141 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.service.MinCostMatching.Edge;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class MinCostMatchingTest {
+    @Test
+    void solve_noEdges_empty() {
+        assertEquals(ImmutableMap.of(), MinCostMatching.solve(ImmutableList.of()));
+    }
+
+    @Test
+    void solve_twoCouriersOneOrder_closestWins() {
+        assertEquals(ImmutableMap.of("near", "order"), MinCostMatching.solve(ImmutableList.of(
+                new Edge("far", "order", 3),
+                new Edge("near", "order", 1))));
+    }
+
+    @Test
+    void solve_greedyChoiceWorse_globallyCheaper() {
+        // Greedily, "a" takes "x" and "b" is left with "y" (1 + 10), while "a" taking "y" costs 2 + 2
+        assertEquals(ImmutableMap.of("a", "y", "b", "x"), MinCostMatching.solve(ImmutableList.of(
+                new Edge("a", "x", 1),
+                new Edge("a", "y", 2),
+                new Edge("b", "x", 2),
+                new Edge("b", "y", 10))));
+    }
+
+    @Test
+    void solve_moreMatchesAvailable_preferredOverCheaper() {
+        assertEquals(ImmutableMap.of("a", "y", "b", "x"), MinCostMatching.solve(ImmutableList.of(
+                new Edge("a", "x", 0),
+                new Edge("a", "y", 4),
+                new Edge("b", "x", 4))));
+    }
+
+    @Test
+    void solve_sameCostOrdersMoreCouriers_fast() {
+        // Restaurants with 3 orders seen by 10 couriers each, then 100 orders seen by 200 couriers, all at one cost
+        List<Edge> edges = new ArrayList<>();
+        for (int courier = 0; courier < 1000; courier++) {
+            for (int order = 0; order < 300; order++) {
+                if (order % 100 == courier % 100) {
+                    edges.add(new Edge("c" + courier, "o" + order, 500));
+                }
+            }
+        }
+        for (int courier = 0; courier < 200; courier++) {
+            for (int order = 300; order < 400; order++) {
+                edges.add(new Edge("d" + courier, "o" + order, 500));
+            }
+        }
+
+        Map<String, String> assignments = assertTimeout(Duration.ofSeconds(2), () -> MinCostMatching.solve(edges));
+
+        assertEquals(400, assignments.size());
+        assertEquals(400, new HashSet<>(assignments.values()).size());
+    }
+
+    @Test
+    void solve_randomGraphs_optimal() {
+        Random random = new Random(7);
+        for (int graph = 0; graph < 200; graph++) {
+            int couriers = 1 + random.nextInt(5);
+            int orders = 1 + random.nextInt(5);
+            List<Edge> edges = new ArrayList<>();
+            for (int courier = 0; courier < couriers; courier++) {
+                for (int order = 0; order < orders; order++) {
+                    if (random.nextDouble() < 0.6) {
+                        edges.add(new Edge("c" + courier, "o" + order, random.nextDouble() * 10));
+                    }
+                }
+            }
+
+            Map<String, String> assignments = MinCostMatching.solve(edges);
+
+            assertEquals(maxMatched(edges, new HashSet<>(), 0), assignments.size(), "Graph " + graph + ": " + edges);
+            assertEquals(assignments.size(), new HashSet<>(assignments.values()).size());
+            assertEquals(bestBenefit(edges, new HashSet<>(), 0, 0), benefit(edges, assignments), 1e-9,
+                    "Graph " + graph + ": " + edges);
+        }
+    }
+
+    private static double matchBonus(List<Edge> edges) {
+        return edges.stream().mapToDouble(Edge::getCost).sum() + 1;
+    }
+
+    private static double benefit(List<Edge> edges, Map<String, String> assignments) {
+        double bonus = matchBonus(edges);
+        return edges.stream()
+                .filter(edge -> edge.getOrderId().equals(assignments.get(edge.getCourierId())))
+                .mapToDouble(edge -> bonus - edge.getCost())
+                .sum();
+    }
+
+    private static int maxMatched(List<Edge> edges, Set<String> taken, int from) {
+        int best = 0;
+        for (int e = from; e < edges.size(); e++) {
+            Edge edge = edges.get(e);
+            if (taken.add(edge.getCourierId())) {
+                if (taken.add("order:" + edge.getOrderId())) {
+                    best = Math.max(best, 1 + maxMatched(edges, taken, e + 1));
+                    taken.remove("order:" + edge.getOrderId());
+                }
+                taken.remove(edge.getCourierId());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Exhaustive search over the edges, from the given one on
+     */
+    private static double bestBenefit(List<Edge> edges, Set<String> taken, int from, double benefit) {
+        double best = benefit;
+        for (int e = from; e < edges.size(); e++) {
+            Edge edge = edges.get(e);
+            if (taken.add(edge.getCourierId())) {
+                if (taken.add("order:" + edge.getOrderId())) {
+                    best = Math.max(best, bestBenefit(edges, taken, e + 1, benefit + matchBonus(edges) - edge.getCost()));
+                    taken.remove("order:" + edge.getOrderId());
+                }
+                taken.remove(edge.getCourierId());
+            }
+        }
+        return best;
+    }
+}
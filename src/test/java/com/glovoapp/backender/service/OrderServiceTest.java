@@ -6,19 +6,31 @@ import com.glovoapp.backender.model.Order;
 import com.glovoapp.backender.model.Vehicle;
 import com.glovoapp.backender.repository.CourierRepository;
 import com.glovoapp.backender.repository.OrderRepository;
+import com.glovoapp.backender.service.OrderService.RankingDistance;
 import com.glovoapp.backender.service.OrderService.SlotPriority;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,13 +38,12 @@ class OrderServiceTest {
     private static final String EXCEPTION_MESSAGE = "An exception";
     private static final String COURIER_ID = "1";
     private static final Courier COURIER = Courier.builder().id(COURIER_ID).build();
-    private static final Location LOCATION_ORIGIN = new Location(1d, 1d);
-    private static final Location LOCATION_3KM = new Location(2d, 2d);
-    private static final Location LOCATION_10KM = new Location(3d, 3d);
-    private static final Location LOCATION_10_1KM = new Location(3d, 3d);
-    private static final Location LOCATION_10_2KM = new Location(3d, 4d);
-    private static final Location LOCATION_10_3KM = new Location(3d, 5d);
-    private static final Location LOCATION_15KM = new Location(4d, 4d);
+    private static final Location LOCATION_ORIGIN = new Location(0d, 0d);
+    private static final Location LOCATION_3KM = eastOfOrigin(3);
+    private static final Location LOCATION_10KM = eastOfOrigin(10);
+    private static final Location LOCATION_10_1KM = eastOfOrigin(10.1);
+    private static final Location LOCATION_10_2KM = eastOfOrigin(10.2);
+    private static final Location LOCATION_10_3KM = eastOfOrigin(10.3);
     private static final String LARGE_ORDER_ID = "1";
     private static final Order LARGE_ORDER = Order.builder().id(LARGE_ORDER_ID).description("1 LargeFood").pickup(LOCATION_3KM).build();
     private static final String SMALL_ORDER_ID = "2";
@@ -44,28 +55,13 @@ class OrderServiceTest {
     @Mock
     private CourierRepository courierRepository;
 
-    @Mock(lenient = true)
-    private DistanceCalculator distanceCalculator;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     private OrderService orderService;
 
     @BeforeEach
     void setUp() {
-        orderService = new OrderService(orderRepository,
-                courierRepository,
-                distanceCalculator,
-                ImmutableList.of("LargeFood"),
-                ImmutableMap.of(Vehicle.BICYCLE, 5d, Vehicle.MOTORCYCLE, 100d),
-                0.5,
-                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL));
-
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_ORIGIN)).thenReturn(0d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_3KM)).thenReturn(3d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_10KM)).thenReturn(10d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_10_1KM)).thenReturn(10.1d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_10_2KM)).thenReturn(10.2d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_10_3KM)).thenReturn(10.3d);
-        when(distanceCalculator.calculateDistance(LOCATION_ORIGIN, LOCATION_15KM)).thenReturn(15d);
+        orderService = serviceWith(orderRepository);
     }
 
     @Test
@@ -82,6 +78,27 @@ class OrderServiceTest {
         assertEquals(ImmutableList.of(LARGE_ORDER, SMALL_ORDER), orderService.orders());
     }
 
+    @Test
+    void orders_withLimit_pagedInPublicationOrder() {
+        givenOrders(LARGE_ORDER, SMALL_ORDER);
+
+        OrderPage first = orderService.orders(1, null);
+        OrderPage second = orderService.orders(1, first.getNextCursor());
+
+        assertEquals(ImmutableList.of(LARGE_ORDER), first.getOrders());
+        assertEquals(new OrderPage(ImmutableList.of(SMALL_ORDER), null), second);
+    }
+
+    @Test
+    void orders_invalidCursor_exception() {
+        assertThrows(InvalidRequestException.class, () -> orderService.orders(1, "not a cursor"));
+    }
+
+    @Test
+    void orders_nonPositiveLimit_exception() {
+        assertThrows(InvalidRequestException.class, () -> orderService.orders(0, null));
+    }
+
     @Test
     void orders_exception_bubbles() {
         when(orderRepository.findAll()).thenThrow(new RuntimeException(EXCEPTION_MESSAGE));
@@ -89,10 +106,50 @@ class OrderServiceTest {
         assertThrows(RuntimeException.class, () -> orderService.orders(), EXCEPTION_MESSAGE);
     }
 
+    @Test
+    void create_withId_saved() {
+        assertEquals(LARGE_ORDER, orderService.create(LARGE_ORDER));
+
+        verify(orderRepository).save(LARGE_ORDER);
+    }
+
+    @Test
+    void create_boxFood_classified() {
+        OrderRepository repository = new OrderRepository(ImmutableList.of());
+        orderService = serviceWith(repository);
+
+        orderService.create(LARGE_ORDER);
+
+        assertTrue(repository.needsBox(LARGE_ORDER_ID));
+    }
+
+    @Test
+    void create_withoutId_idAssigned() {
+        Order created = orderService.create(LARGE_ORDER.toBuilder().id(null).build());
+
+        assertNotNull(created.getId());
+        assertEquals(LARGE_ORDER.toBuilder().id(created.getId()).build(), created);
+        verify(orderRepository).save(created);
+    }
+
+    @Test
+    void cancel_existing_deleted() {
+        when(orderRepository.delete(LARGE_ORDER_ID)).thenReturn(Optional.of(LARGE_ORDER));
+
+        assertEquals(LARGE_ORDER, orderService.cancel(LARGE_ORDER_ID));
+    }
+
+    @Test
+    void cancel_notExisting_exception() {
+        when(orderRepository.delete(LARGE_ORDER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.cancel(LARGE_ORDER_ID));
+    }
+
     @Test
     void ordersForCourier_noCouriers_empty() {
         when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.of(COURIER));
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of());
+        givenOrders();
 
         assertEquals(ImmutableList.of(), orderService.ordersForCourier(COURIER_ID));
     }
@@ -101,7 +158,7 @@ class OrderServiceTest {
     void ordersForCourier_boxOrderNoBoxCourier_empty() {
         when(courierRepository.findById(COURIER_ID))
                 .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(LARGE_ORDER));
+        givenOrders(LARGE_ORDER);
 
         assertEquals(ImmutableList.of(), orderService.ordersForCourier(COURIER_ID));
     }
@@ -110,7 +167,7 @@ class OrderServiceTest {
     void ordersForCourier_boxOrderBoxCourier_returns() {
         when(courierRepository.findById(COURIER_ID))
                 .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, true)));
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(LARGE_ORDER));
+        givenOrders(LARGE_ORDER);
 
         assertEquals(ImmutableList.of(LARGE_ORDER), orderService.ordersForCourier(COURIER_ID));
     }
@@ -119,7 +176,7 @@ class OrderServiceTest {
     void ordersForCourier_farOrderBicycle_empty() {
         when(courierRepository.findById(COURIER_ID))
                 .thenReturn(Optional.of(courierFor(Vehicle.BICYCLE, false)));
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(Order.builder().description("").pickup(LOCATION_10KM).build()));
+        givenOrders(Order.builder().id("1").description("").pickup(LOCATION_10KM).build());
 
         assertEquals(ImmutableList.of(), orderService.ordersForCourier(COURIER_ID));
     }
@@ -128,19 +185,104 @@ class OrderServiceTest {
     void ordersForCourier_nearOrder_returns() {
         when(courierRepository.findById(COURIER_ID))
                 .thenReturn(Optional.of(courierFor(Vehicle.BICYCLE, false)));
-        Order order = Order.builder().description("").pickup(LOCATION_3KM).build();
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(order));
+        Order order = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        givenOrders(order);
 
         assertEquals(ImmutableList.of(order), orderService.ordersForCourier(COURIER_ID));
     }
 
+    @Test
+    void ordersForCourier_unknownVehicle_empty() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.ELECTRIC_SCOOTER, true)));
+        givenOrders();
+
+        assertEquals(ImmutableList.of(), orderService.ordersForCourier(COURIER_ID));
+    }
+
+    @Test
+    void ordersForCourier_boxAndFarOrders_rejectionsCounted() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.BICYCLE, false)));
+        Order near = Order.builder().id("3").description("").pickup(LOCATION_3KM).build();
+        Order far = Order.builder().id("4").description("").pickup(eastOfOrigin(5.5)).build();
+        givenOrders(LARGE_ORDER, near, far);
+
+        orderService.ordersForCourier(COURIER_ID);
+
+        double scanned = meterRegistry.get("backender.ranking.scanned").counter().count();
+        assertEquals(1, meterRegistry.get("backender.ranking.returned").counter().count());
+        assertEquals(1, rejected("box"));
+        assertEquals(scanned, 2 + rejected("range"));
+        assertEquals(1, meterRegistry.get("backender.ranking.phase").tag("phase", "sort").timer().count());
+    }
+
+    @Test
+    void ordersForCourier_unknownVehicle_rejectionCounted() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.ELECTRIC_SCOOTER, true)));
+        givenOrders(LARGE_ORDER);
+
+        orderService.ordersForCourier(COURIER_ID);
+
+        assertEquals(1, rejected("unknown_vehicle"));
+        assertEquals(1, meterRegistry.get("backender.ranking.phase").tag("phase", "read").timer().count());
+    }
+
+    @Test
+    void couriersForOrder_couriersInRange_closestFirst() {
+        Courier near = courierAt("near", Vehicle.BICYCLE, false, LOCATION_10KM);
+        Courier nearer = courierAt("nearer", Vehicle.BICYCLE, false, LOCATION_10_1KM);
+        Courier farBicycle = courierAt("far-bicycle", Vehicle.BICYCLE, false, LOCATION_ORIGIN);
+        Courier farMotorcycle = courierAt("far-motorcycle", Vehicle.MOTORCYCLE, false, LOCATION_ORIGIN);
+        Courier scooter = courierAt("scooter", Vehicle.ELECTRIC_SCOOTER, true, LOCATION_10_2KM);
+        givenCouriers(near, nearer, farBicycle, farMotorcycle, scooter);
+        givenOrders(Order.builder().id("order").description("").pickup(LOCATION_10_3KM).build());
+
+        assertEquals(ImmutableList.of(nearer, near, farMotorcycle), orderService.couriersForOrder("order"));
+    }
+
+    @Test
+    void couriersForOrder_boxOrder_onlyCouriersWithBox() {
+        Courier withBox = courierAt("with-box", Vehicle.MOTORCYCLE, true, LOCATION_ORIGIN);
+        givenCouriers(withBox, courierAt("without-box", Vehicle.MOTORCYCLE, false, LOCATION_ORIGIN));
+        givenOrders(LARGE_ORDER);
+
+        assertEquals(ImmutableList.of(withBox), orderService.couriersForOrder(LARGE_ORDER_ID));
+    }
+
+    @Test
+    void couriersForOrder_sameDistance_tieBrokenById() {
+        Courier b = courierAt("b", Vehicle.MOTORCYCLE, true, LOCATION_ORIGIN);
+        Courier a = courierAt("a", Vehicle.MOTORCYCLE, false, LOCATION_ORIGIN);
+        givenCouriers(b, a);
+        givenOrders(SMALL_ORDER);
+
+        assertEquals(ImmutableList.of(a, b), orderService.couriersForOrder(SMALL_ORDER_ID));
+    }
+
+    @Test
+    void couriersForOrder_noPickup_empty() {
+        givenCouriers(courierAt("a", Vehicle.MOTORCYCLE, true, LOCATION_ORIGIN));
+        givenOrders(Order.builder().id("order").description("").build());
+
+        assertEquals(ImmutableList.of(), orderService.couriersForOrder("order"));
+    }
+
+    @Test
+    void couriersForOrder_notExisting_exception() {
+        when(orderRepository.findById("bad-order-id")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.couriersForOrder("bad-order-id"));
+    }
+
     @Test
     void ordersForCourier_twoGoodOrders_returnsBoth() {
         when(courierRepository.findById(COURIER_ID))
                 .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
         Order order1 = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
         Order order2 = Order.builder().id("2").description("").pickup(LOCATION_10KM).build();
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(order1, order2));
+        givenOrders(order1, order2);
 
         assertEquals(ImmutableList.of(order1, order2), orderService.ordersForCourier(COURIER_ID));
     }
@@ -151,15 +293,58 @@ class OrderServiceTest {
                 .thenReturn(Optional.of(courierFor(Vehicle.BICYCLE, false)));
         Order order1 = Order.builder().id("1").description("").pickup(LOCATION_10KM).build();
         Order order2 = Order.builder().id("2").description("").pickup(LOCATION_3KM).build();
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(order1, order2));
+        givenOrders(order1, order2);
 
         assertEquals(ImmutableList.of(order2), orderService.ordersForCourier(COURIER_ID));
     }
 
+    @Test
+    void ordersForCourier_totalTrip_shortTripsFirst() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order longTrip = Order.builder().id("1").description("").pickup(LOCATION_3KM).delivery(eastOfOrigin(30)).build();
+        Order shortTrip = Order.builder().id("2").description("").pickup(LOCATION_10KM).delivery(LOCATION_10_3KM).build();
+        Order noDelivery = Order.builder().id("3").description("").pickup(LOCATION_10_1KM).build();
+        orderService = serviceWith(new OrderRepository(ImmutableList.of(longTrip, shortTrip, noDelivery)),
+                RankingDistance.TOTAL_TRIP);
+
+        assertEquals(ImmutableList.of(noDelivery, shortTrip, longTrip), orderService.ordersForCourier(COURIER_ID));
+    }
+
+    @Test
+    void ordersForCourier_totalTripFarDelivery_visibleInPickupRange() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.BICYCLE, false)));
+        Order order = Order.builder().id("1").description("").pickup(LOCATION_3KM).delivery(eastOfOrigin(30)).build();
+        orderService = serviceWith(new OrderRepository(ImmutableList.of(order)), RankingDistance.TOTAL_TRIP);
+
+        assertEquals(ImmutableList.of(order), orderService.ordersForCourier(COURIER_ID));
+    }
+
+    @Test
+    void constructor_totalTrip_deliveryLegsMeasuredWithStrategy() {
+        Order order = Order.builder().id("1").description("").pickup(LOCATION_3KM).delivery(eastOfOrigin(6)).build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(order));
+        DistanceCalculator twiceTheStraightLine = new DistanceCalculator(
+                Optional.of((fromLat, fromLon, toLat, toLon, straightLine) -> 2 * straightLine));
+
+        new OrderService(repository,
+                courierRepository,
+                twiceTheStraightLine,
+                new CourierOrdersCache(repository, twiceTheStraightLine, 100, 60_000, 0.05),
+                new OrderMetrics(meterRegistry),
+                ImmutableMap.of(Vehicle.BICYCLE, 5d),
+                0.5,
+                ImmutableList.of(SlotPriority.ALL),
+                RankingDistance.TOTAL_TRIP);
+
+        assertEquals(6, repository.findNear(LOCATION_3KM, 1).get(0).getDeliveryLegs()[0], 1e-9);
+    }
+
     @Test
     void ordersForCourier_exception_bubbles() {
         when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.of(COURIER));
-        when(orderRepository.findAll()).thenThrow(new RuntimeException(EXCEPTION_MESSAGE));
+        when(orderRepository.findNear(null, -1d)).thenThrow(new RuntimeException(EXCEPTION_MESSAGE));
 
         assertThrows(RuntimeException.class, () -> orderService.ordersForCourier(COURIER_ID), EXCEPTION_MESSAGE);
     }
@@ -182,7 +367,7 @@ class OrderServiceTest {
         Order order2_1 = Order.builder().id("4").description("").vip(true).food(false).pickup(LOCATION_10KM).build();
         Order order2_2 = Order.builder().id("5").description("").vip(false).food(true).pickup(LOCATION_10KM).build();
         Order order2_3 = Order.builder().id("6").description("").vip(false).food(false).pickup(LOCATION_10KM).build();
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(order1_3, order1_2, order1_1, order2_1, order2_2, order2_3));
+        givenOrders(order1_3, order1_2, order1_1, order2_1, order2_2, order2_3);
 
         assertEquals(ImmutableList.of(order1_1, order1_2, order1_3, order2_1, order2_2, order2_3),
                 orderService.ordersForCourier(COURIER_ID));
@@ -199,12 +384,272 @@ class OrderServiceTest {
         Order order2_4 = Order.builder().id("4").description("").vip(true).food(false).pickup(LOCATION_10_3KM).build();
         Order order2_5 = Order.builder().id("5").description("").vip(false).food(true).pickup(LOCATION_10_1KM).build();
         Order order2_6 = Order.builder().id("6").description("").vip(false).food(true).pickup(LOCATION_10_2KM).build();
-        when(orderRepository.findAll()).thenReturn(ImmutableList.of(order2_6, order2_5, order2_4, order2_1, order2_2, order2_3));
+        givenOrders(order2_6, order2_5, order2_4, order2_1, order2_2, order2_3);
 
         assertEquals(ImmutableList.of(order2_1, order2_2, order2_3, order2_4, order2_5, order2_6),
                 orderService.ordersForCourier(COURIER_ID));
     }
 
+    @Test
+    void ordersForCourier_limit_firstPageWithCursor() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order order1 = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        Order order2 = Order.builder().id("2").description("").pickup(LOCATION_10KM).build();
+        givenOrders(order2, order1);
+
+        OrderPage page = orderService.ordersForCourier(COURIER_ID, 1, null);
+
+        assertEquals(ImmutableList.of(order1), page.getOrders());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void ordersForCourier_followingCursors_sameAsFullRanking() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        givenOrders(
+                Order.builder().id("1").description("").vip(true).pickup(LOCATION_10KM).build(),
+                Order.builder().id("2").description("").food(true).pickup(LOCATION_3KM).build(),
+                Order.builder().id("3").description("").pickup(LOCATION_3KM).build(),
+                Order.builder().id("4").description("").vip(true).pickup(LOCATION_3KM).build(),
+                Order.builder().id("5").description("").food(true).pickup(LOCATION_10_1KM).build());
+
+        List<Order> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderPage page = orderService.ordersForCourier(COURIER_ID, 2, cursor);
+            paged.addAll(page.getOrders());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(orderService.ordersForCourier(COURIER_ID), paged);
+    }
+
+    @Test
+    void ordersForCourier_lastPage_noCursor() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order order = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        givenOrders(order);
+
+        assertEquals(new OrderPage(ImmutableList.of(order), null), orderService.ordersForCourier(COURIER_ID, 1, null));
+    }
+
+    @Test
+    void ordersForCourier_cursorAfterCancelledOrder_continues() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order order1 = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        Order order2 = Order.builder().id("2").description("").pickup(LOCATION_10KM).build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(order1, order2));
+        orderService = serviceWith(repository);
+
+        String cursor = orderService.ordersForCourier(COURIER_ID, 1, null).getNextCursor();
+        repository.delete("1");
+
+        assertEquals(ImmutableList.of(order2), orderService.ordersForCourier(COURIER_ID, 1, cursor).getOrders());
+    }
+
+    @Test
+    void ordersForCourier_sameRankingKey_tieBrokenById() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order orderA = Order.builder().id("a").description("").pickup(LOCATION_3KM).build();
+        Order orderB = Order.builder().id("b").description("").pickup(LOCATION_3KM).build();
+        givenOrders(orderB, orderA);
+
+        assertEquals(ImmutableList.of(orderA, orderB), orderService.ordersForCourier(COURIER_ID));
+    }
+
+    @Test
+    void ordersForCourier_ordersInManyRegions_sameAsSingleRegion() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, true)));
+        Random random = new Random(42);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            orders.add(Order.builder()
+                    .id("order-" + i)
+                    .description(i % 7 == 0 ? "LargeFood" : "")
+                    .vip(i % 5 == 0)
+                    .food(i % 3 == 0)
+                    .pickup(new Location(random.nextDouble() * 1.6 - 0.8, random.nextDouble() * 1.6 - 0.8))
+                    .build());
+        }
+        List<Order> singleRegion = serviceWith(new OrderRepository(orders, false, 10))
+                .ordersForCourier(COURIER_ID, 100, null).getOrders();
+
+        orderService = serviceWith(new OrderRepository(orders, false, 0.1));
+        OrderPage first = orderService.ordersForCourier(COURIER_ID, 50, null);
+        OrderPage second = orderService.ordersForCourier(COURIER_ID, 50, first.getNextCursor());
+
+        List<Order> merged = new ArrayList<>(first.getOrders());
+        merged.addAll(second.getOrders());
+        assertEquals(singleRegion, merged);
+    }
+
+    @Test
+    void ordersForCourier_noMatchingPriority_rankedLastInSlot() {
+        when(courierRepository.findById(COURIER_ID))
+                .thenReturn(Optional.of(courierFor(Vehicle.MOTORCYCLE, false)));
+        Order plain = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        Order vip = Order.builder().id("2").description("").vip(true).pickup(LOCATION_3KM).build();
+        OrderRepository repository = new OrderRepository(ImmutableList.of(plain, vip));
+        new BoxRequirementClassifier(repository, ImmutableList.of("LargeFood"));
+        orderService = new OrderService(repository,
+                courierRepository,
+                new DistanceCalculator(),
+                new CourierOrdersCache(repository, new DistanceCalculator(), 100, 60_000, 0.05),
+                new OrderMetrics(meterRegistry),
+                ImmutableMap.of(Vehicle.MOTORCYCLE, 100d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP),
+                RankingDistance.PICKUP);
+
+        assertEquals(ImmutableList.of(vip, plain), orderService.ordersForCourier(COURIER_ID));
+    }
+
+    @Test
+    void ordersForCourier_nonPositiveLimit_exception() {
+        assertThrows(InvalidRequestException.class, () -> orderService.ordersForCourier(COURIER_ID, 0, null));
+    }
+
+    @Test
+    void ordersForCourier_invalidCursor_exception() {
+        assertThrows(InvalidRequestException.class, () -> orderService.ordersForCourier(COURIER_ID, 1, "not a cursor"));
+    }
+
+    @Test
+    void rankNear_cursorOfOrder_continuesAfterIt() {
+        Order order1 = Order.builder().id("1").description("").pickup(LOCATION_3KM).build();
+        Order order2 = Order.builder().id("2").description("").pickup(LOCATION_10KM).build();
+        Order order3 = Order.builder().id("3").description("").pickup(LOCATION_10_1KM).build();
+        givenOrders(order3, order2, order1);
+        Courier courier = courierFor(Vehicle.MOTORCYCLE, false);
+
+        List<RankedOrder> first = orderService.rankNear(courier, 2, null);
+        List<RankedOrder> second = orderService.rankNear(courier, 2, first.get(1).getCursor());
+
+        assertEquals(ImmutableList.of(order1, order2), ordersOf(first));
+        assertEquals(ImmutableList.of(order3), ordersOf(second));
+    }
+
+    @Test
+    void rankNear_nonPositiveLimit_exception() {
+        assertThrows(InvalidRequestException.class, () -> orderService.rankNear(COURIER, 0, null));
+    }
+
+    @Test
+    void ordersForCouriers_severalCouriers_sameAsOneByOne() {
+        Courier near = courierFor(Vehicle.BICYCLE, false).toBuilder().id("near").build();
+        Courier boxed = courierFor(Vehicle.MOTORCYCLE, true).toBuilder().id("boxed").build();
+        Courier far = courierFor(Vehicle.MOTORCYCLE, false).toBuilder().id("far").location(LOCATION_10KM).build();
+        Map<String, Courier> couriers = ImmutableMap.of("near", near, "boxed", boxed, "far", far);
+        when(courierRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(couriers.get(invocation.<String>getArgument(0))));
+        givenOrders(LARGE_ORDER, SMALL_ORDER,
+                Order.builder().id("3").description("").vip(true).pickup(LOCATION_10_1KM).build());
+
+        Map<String, OrderPage> pages = new ConcurrentHashMap<>();
+        orderService.ordersForCouriers(ImmutableList.of("near", "boxed", "far", "near"), 2).forEach(pages::put);
+
+        assertEquals(ImmutableMap.of(
+                "near", orderService.ordersForCourier("near", 2, null),
+                "boxed", orderService.ordersForCourier("boxed", 2, null),
+                "far", orderService.ordersForCourier("far", 2, null)), pages);
+    }
+
+    @Test
+    void ordersForCouriers_courierWithoutLocation_empty() {
+        when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.of(COURIER));
+        givenOrders(SMALL_ORDER);
+
+        Map<String, OrderPage> pages = new ConcurrentHashMap<>();
+        orderService.ordersForCouriers(ImmutableList.of(COURIER_ID), 10).forEach(pages::put);
+
+        assertEquals(ImmutableMap.of(COURIER_ID, new OrderPage(ImmutableList.of(), null)), pages);
+    }
+
+    @Test
+    void ordersForCouriers_unknownCourier_exceptionBeforeRanking() {
+        when(courierRepository.findById(COURIER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> orderService.ordersForCouriers(ImmutableList.of(COURIER_ID), 10));
+    }
+
+    /**
+     * Replaces the mocked order repository with a real one holding the orders, which are matched in columnar form
+     */
+    @Test
+    void eligibility_severalCouriers_bestOrdersOfEach() {
+        Courier boxed = courierFor(Vehicle.MOTORCYCLE, true).toBuilder().id("boxed").build();
+        Courier far = courierFor(Vehicle.MOTORCYCLE, false).toBuilder().id("far").location(LOCATION_10KM).build();
+        givenOrders(LARGE_ORDER, SMALL_ORDER);
+
+        List<Eligibility> eligibility = orderService.eligibility(ImmutableList.of(boxed, far), 1);
+
+        assertEquals(2, eligibility.size());
+        assertTrue(eligibility.stream().anyMatch(candidate ->
+                candidate.getCourier().equals(boxed) && candidate.getOrder().equals(LARGE_ORDER)
+                        && Math.abs(candidate.getDistance() - 3) < 1e-6));
+        assertTrue(eligibility.stream().anyMatch(candidate ->
+                candidate.getCourier().equals(far) && candidate.getOrder().equals(SMALL_ORDER)
+                        && candidate.getDistance() < 1e-6));
+    }
+
+    @Test
+    void eligibility_courierWithoutLocation_empty() {
+        givenOrders(SMALL_ORDER);
+
+        assertEquals(ImmutableList.of(), orderService.eligibility(ImmutableList.of(COURIER), 10));
+    }
+
+    private void givenCouriers(Courier... couriers) {
+        courierRepository = new CourierRepository(ImmutableList.copyOf(couriers));
+    }
+
+    private void givenOrders(Order... orders) {
+        orderService = serviceWith(new OrderRepository(ImmutableList.copyOf(orders)));
+    }
+
+    private static List<Order> ordersOf(List<RankedOrder> ranked) {
+        return ranked.stream().map(RankedOrder::getOrder).collect(Collectors.toList());
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("backender.ranking.rejected").tag("reason", reason).counter().count();
+    }
+
+    private OrderService serviceWith(OrderRepository repository) {
+        return serviceWith(repository, RankingDistance.PICKUP);
+    }
+
+    private OrderService serviceWith(OrderRepository repository, RankingDistance rankingDistance) {
+        new BoxRequirementClassifier(repository, ImmutableList.of("LargeFood"));
+        return new OrderService(repository,
+                courierRepository,
+                new DistanceCalculator(),
+                new CourierOrdersCache(repository, new DistanceCalculator(), 100, 60_000, 0.05),
+                new OrderMetrics(meterRegistry),
+                ImmutableMap.of(Vehicle.BICYCLE, 5d, Vehicle.MOTORCYCLE, 100d),
+                0.5,
+                ImmutableList.of(SlotPriority.VIP, SlotPriority.FOOD, SlotPriority.ALL),
+                rankingDistance);
+    }
+
+    /**
+     * Along the equator, distances are proportional to longitude differences
+     */
+    private static Location eastOfOrigin(double distance) {
+        return new Location(0d, Math.toDegrees(distance / 6371));
+    }
+
+    private static Courier courierAt(String id, Vehicle vehicle, boolean box, Location location) {
+        return Courier.builder().id(id).location(location).box(box).vehicle(vehicle).build();
+    }
+
     private Courier courierFor(Vehicle vehicle, boolean box) {
         return Courier.builder().location(LOCATION_ORIGIN).box(box).vehicle(vehicle).build();
     }
@@ -0,0 +1,34 @@
+package com.glovoapp.backender.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RankKeyTest {
+    @Test
+    void pack_lowerSlot_rankedFirst() {
+        assertTrue(RankKey.pack(0, 2, 0.49) < RankKey.pack(1, 0, 0.5));
+    }
+
+    @Test
+    void pack_sameSlotLowerPriority_rankedFirst() {
+        assertTrue(RankKey.pack(3, 0, 1.9) < RankKey.pack(3, 1, 1.5));
+    }
+
+    @Test
+    void pack_sameSlotAndPriority_closerFirst() {
+        assertTrue(RankKey.pack(3, 1, 1.5) < RankKey.pack(3, 1, 1.501));
+    }
+
+    @Test
+    void pack_outOfRange_saturates() {
+        assertEquals(RankKey.pack(RankKey.MAX_DISTANCE_SLOT, RankKey.MAX_PRIORITY, 1),
+                RankKey.pack(Integer.MAX_VALUE, Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    void pack_infiniteDistance_rankedLast() {
+        assertTrue(RankKey.pack(0, 0, 20000) < RankKey.pack(0, 0, Double.POSITIVE_INFINITY));
+    }
+}
@@ -0,0 +1,120 @@
+package com.glovoapp.backender.service;
+
+import com.glovoapp.backender.model.Location;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RoadDistanceMatrixTest {
+    private static final double ACCURACY = 1e-6;
+    private static final DistanceCalculator STRAIGHT_LINES = new DistanceCalculator();
+    // Cells of 0.01 degrees, one row and two columns
+    private static final Location WEST_CENTER = new Location(41.385, 2.165);
+    private static final Location EAST_CENTER = new Location(41.385, 2.175);
+    private static final Location WEST = new Location(41.386, 2.162);
+    private static final Location EAST = new Location(41.384, 2.178);
+    private static final Location WEST_NEIGHBOUR = new Location(41.382, 2.168);
+
+    @Test
+    void distance_acrossCells_detourOfCenters() {
+        DistanceCalculator calculator = roadsWithEastbound(3f);
+
+        double detour = 3 / STRAIGHT_LINES.calculateDistance(WEST_CENTER, EAST_CENTER);
+        assertEquals(STRAIGHT_LINES.calculateDistance(WEST, EAST) * detour, calculator.calculateDistance(WEST, EAST), ACCURACY);
+    }
+
+    @Test
+    void distance_noWay_infinite() {
+        assertEquals(Double.POSITIVE_INFINITY, roadsWithEastbound(3f).calculateDistance(EAST, WEST));
+    }
+
+    @Test
+    void distance_shorterThanStraightLine_straightLine() {
+        assertEquals(STRAIGHT_LINES.calculateDistance(WEST, EAST), roadsWithEastbound(0.1f).calculateDistance(WEST, EAST), ACCURACY);
+    }
+
+    @Test
+    void distance_sameCell_straightLine() {
+        assertEquals(STRAIGHT_LINES.calculateDistance(WEST, WEST_NEIGHBOUR),
+                roadsWithEastbound(3f).calculateDistance(WEST, WEST_NEIGHBOUR), ACCURACY);
+    }
+
+    @Test
+    void distance_outsideGrid_straightLine() {
+        Location outside = new Location(41.4, 2.2);
+
+        assertEquals(STRAIGHT_LINES.calculateDistance(WEST, outside), roadsWithEastbound(3f).calculateDistance(WEST, outside), ACCURACY);
+    }
+
+    @Test
+    void write_readBack_sameDistances() throws IOException {
+        Path file = Files.createTempFile("roads", ".bin");
+        file.toFile().deleteOnExit();
+        RoadDistanceMatrix.write(file, 0.01, 4138, 216, 1, 2, new float[]{0, 3, Float.NaN, 0});
+
+        DistanceCalculator calculator = new DistanceCalculator(Optional.of(new RoadDistanceMatrix(file.toString())));
+
+        assertEquals(roadsWithEastbound(3f).calculateDistance(WEST, EAST), calculator.calculateDistance(WEST, EAST));
+        assertEquals(Double.POSITIVE_INFINITY, calculator.calculateDistance(EAST, WEST));
+    }
+
+    @Test
+    void read_distancesVersion_detoursOfDistances() throws IOException {
+        Path file = Files.createTempFile("roads", ".bin");
+        file.toFile().deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x424b5244);
+            out.writeInt(1);
+            out.writeDouble(0.01);
+            out.writeInt(4138);
+            out.writeInt(216);
+            out.writeInt(1);
+            out.writeInt(2);
+            for (float distance : new float[]{0, 3, Float.NaN, 0}) {
+                out.writeFloat(distance);
+            }
+        }
+
+        DistanceCalculator calculator = new DistanceCalculator(Optional.of(new RoadDistanceMatrix(file.toString())));
+
+        assertEquals(roadsWithEastbound(3f).calculateDistance(WEST, EAST), calculator.calculateDistance(WEST, EAST));
+        assertEquals(Double.POSITIVE_INFINITY, calculator.calculateDistance(EAST, WEST));
+    }
+
+    @Test
+    void read_notRoadDistances_exception() throws IOException {
+        Path file = Files.createTempFile("roads", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, "[]".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalStateException.class, () -> new RoadDistanceMatrix(file.toString()));
+    }
+
+    @Test
+    void read_truncated_exception() throws IOException {
+        Path file = Files.createTempFile("roads", ".bin");
+        file.toFile().deleteOnExit();
+        RoadDistanceMatrix.write(file, 0.01, 4138, 216, 1, 2, new float[]{0, 3, Float.NaN, 0});
+        byte[] written = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(written, written.length - Float.BYTES));
+
+        assertThrows(IllegalStateException.class, () -> new RoadDistanceMatrix(file.toString()));
+    }
+
+    /**
+     * A one-way road from the west cell to the east cell, of the given length between their centers
+     */
+    private static DistanceCalculator roadsWithEastbound(float distance) {
+        return new DistanceCalculator(Optional.of(
+                new RoadDistanceMatrix(0.01, 4138, 216, 1, 2, new float[]{0, distance, Float.NaN, 0})));
+    }
+}